@@ -57,6 +57,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -122,6 +130,11 @@ public abstract class NanoHTTPD {
      * the socket reading thread forever (or as long the browser is open).
      */
     public static final int SOCKET_READ_TIMEOUT = 5000;
+    /**
+     * Interval (in milliseconds) at which an idle keep-alive connection checks
+     * whether it should give up its worker to a waiting connection.
+     */
+    private static final int KEEP_ALIVE_POLL_INTERVAL = 100;
     /**
      * Common mime type for dynamic content: plain text
      */
@@ -148,6 +161,11 @@ public abstract class NanoHTTPD {
      * Pluggable strategy for creating and cleaning up temporary files.
      */
     private TempFileManagerFactory tempFileManagerFactory;
+    /**
+     * Maximum time (in milliseconds) an idle keep-alive connection is held
+     * open waiting for the next request.
+     */
+    private int keepAliveTimeout = SOCKET_READ_TIMEOUT;
 
     /**
      * Constructs an HTTP server on given port.
@@ -210,7 +228,13 @@ public abstract class NanoHTTPD {
                         final Socket finalAccept = myServerSocket.accept();
                         registerConnection(finalAccept);
                         finalAccept.setSoTimeout(SOCKET_READ_TIMEOUT);
-                        final InputStream inputStream = finalAccept.getInputStream();
+                        finalAccept.setTcpNoDelay(true);
+                        // One pushback stream for the whole connection:
+                        // bytes of a pipelined request read ahead by a
+                        // session are pushed back here and seen by
+                        // awaitRequest and the next execute().
+                        final PushbackInputStream inputStream = new PushbackInputStream(finalAccept.getInputStream(),
+                                HTTPSession.BUFSIZE);
                         asyncRunner.exec(new Runnable() {
                             @Override public void run() {
                                 OutputStream outputStream = null;
@@ -219,7 +243,7 @@ public abstract class NanoHTTPD {
                                     TempFileManager tempFileManager = tempFileManagerFactory.create();
                                     HTTPSession session = new HTTPSession(tempFileManager, inputStream, outputStream,
                                             finalAccept.getInetAddress());
-                                    while (!finalAccept.isClosed()) {
+                                    while (!finalAccept.isClosed() && awaitRequest(finalAccept, inputStream)) {
                                         session.execute();
                                     }
                                 } catch (Exception e) {
@@ -247,6 +271,42 @@ public abstract class NanoHTTPD {
         myThread.start();
     }
 
+    /**
+     * Waits for the first byte of the next request on a keep-alive connection.
+     * Returns false when the client closed the connection, when the connection
+     * was idle for longer than the keep-alive timeout or when the async runner
+     * has connections waiting for a worker.
+     */
+    private boolean awaitRequest(Socket socket, PushbackInputStream inputStream) throws IOException {
+        int idle = 0;
+        socket.setSoTimeout(KEEP_ALIVE_POLL_INTERVAL);
+        try {
+            while (true) {
+                try {
+                    int b = inputStream.read();
+                    if (b == -1)
+                        return false;
+                    inputStream.unread(b);
+                    return true;
+                } catch (SocketTimeoutException e) {
+                    idle += KEEP_ALIVE_POLL_INTERVAL;
+                    if (idle >= keepAliveTimeout || hasWaitingConnections())
+                        return false;
+                } catch (IOException e) {
+                    // Closed by the client or by stop()
+                    return false;
+                }
+            }
+        } finally {
+            if (!socket.isClosed())
+                socket.setSoTimeout(SOCKET_READ_TIMEOUT);
+        }
+    }
+
+    private boolean hasWaitingConnections() {
+        return asyncRunner.getQueueDepth() > 0;
+    }
+
     private static ThreadGroup getThreadGroup() {
         ThreadGroup nuova = null;
         ThreadGroup orig = null;
@@ -445,6 +505,20 @@ public abstract class NanoHTTPD {
         this.asyncRunner = asyncRunner;
     }
 
+    public AsyncRunner getAsyncRunner() {
+        return asyncRunner;
+    }
+
+    /**
+     * Maximum time an idle keep-alive connection is held open.
+     *
+     * @param keepAliveTimeout
+     *            timeout in milliseconds.
+     */
+    public void setKeepAliveTimeout(int keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
     // -------------------------------------------------------------------------------
     // //
     //
@@ -485,6 +559,12 @@ public abstract class NanoHTTPD {
      */
     public interface AsyncRunner {
         void exec(Runnable code);
+
+        /**
+         * Number of connections waiting for a thread. Idle keep-alive
+         * connections give up their thread when this is not zero.
+         */
+        int getQueueDepth();
     }
 
     /**
@@ -546,6 +626,113 @@ public abstract class NanoHTTPD {
             t.setName("NanoHttpd Request Processor (#" + requestCount + ")");
             t.start();
         }
+
+        @Override public int getQueueDepth() {
+            return 0;
+        }
+    }
+
+    /**
+     * Threading strategy backed by a bounded pool of reusable workers.
+     * <p/>
+     * <p>
+     * Each connection is handled by one of at most <code>maxWorkers</code>
+     * named daemon threads. Connections that arrive while all workers are busy
+     * wait in a queue of at most <code>maxQueued</code> entries - idle
+     * keep-alive connections give up their worker when somebody is waiting.
+     * When the queue is full too, the connection is handed to one of at most
+     * <code>maxOverflow</code> extra threads. Beyond that the accepting thread
+     * waits for room in the queue.
+     * </p>
+     */
+    public static class PooledAsyncRunner implements AsyncRunner {
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong overflowCount = new AtomicLong();
+        private final Semaphore overflowThreads;
+
+        public PooledAsyncRunner(String name, int maxWorkers, int maxQueued) {
+            this(name, maxWorkers, maxQueued, maxWorkers);
+        }
+
+        public PooledAsyncRunner(final String name, int maxWorkers, int maxQueued, int maxOverflow) {
+            final ThreadGroup group = getThreadGroup();
+            overflowThreads = new Semaphore(maxOverflow);
+            executor = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(maxQueued), new ThreadFactory() {
+                        private final AtomicInteger workerCount = new AtomicInteger();
+
+                        @Override public Thread newThread(Runnable r) {
+                            Thread t = new Thread(group, r, name + " Worker (#" + workerCount.incrementAndGet() + ")");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    }, new RejectedExecutionHandler() {
+                        @Override public void rejectedExecution(final Runnable r, ThreadPoolExecutor executor) {
+                            if (!overflowThreads.tryAcquire()) {
+                                enqueue(executor, r);
+                                return;
+                            }
+                            Thread t = new Thread(group, new Runnable() {
+                                @Override public void run() {
+                                    try {
+                                        r.run();
+                                    } finally {
+                                        overflowThreads.release();
+                                    }
+                                }
+                            }, name + " Overflow (#" + overflowCount.incrementAndGet() + ")");
+                            t.setDaemon(true);
+                            t.start();
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        @Override public void exec(Runnable code) {
+            executor.execute(code);
+        }
+
+        private static void enqueue(ThreadPoolExecutor executor, Runnable r) {
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Number of connections waiting for a worker.
+         */
+        @Override public int getQueueDepth() {
+            return executor.getQueue().size();
+        }
+
+        /**
+         * Number of workers currently handling a connection.
+         */
+        public int getActiveWorkers() {
+            return executor.getActiveCount();
+        }
+
+        public int getPoolSize() {
+            return executor.getPoolSize();
+        }
+
+        public int getMaxWorkers() {
+            return executor.getMaximumPoolSize();
+        }
+
+        public long getCompletedConnections() {
+            return executor.getCompletedTaskCount();
+        }
+
+        /**
+         * Number of connections that were handed to a new thread because both
+         * the pool and the queue were full.
+         */
+        public long getOverflowCount() {
+            return overflowCount.get();
+        }
     }
 
     /**
@@ -731,7 +918,10 @@ public abstract class NanoHTTPD {
                 outputStream.flush();
                 safeClose(data);
             } catch (IOException ioe) {
-                // Couldn't write? No can do.
+                // Couldn't write or the data could not be read. Drop the
+                // connection so that a partial body is not taken as complete.
+                safeClose(data);
+                safeClose(outputStream);
             }
         }
 
@@ -930,6 +1120,7 @@ public abstract class NanoHTTPD {
         private Map<String, String> headers;
         private CookieHandler cookies;
         private String queryParameterString;
+        private String remoteIp;
 
         public HTTPSession(TempFileManager tempFileManager, InputStream inputStream, OutputStream outputStream) {
             this.tempFileManager = tempFileManager;
@@ -937,17 +1128,20 @@ public abstract class NanoHTTPD {
             this.outputStream = outputStream;
         }
 
+        /**
+         * When <code>inputStream</code> is a {@link PushbackInputStream} it is
+         * used as is, so that bytes pushed back after one request are there for
+         * the next request on the connection. Its pushback buffer must hold at
+         * least {@link #BUFSIZE} bytes.
+         */
         public HTTPSession(TempFileManager tempFileManager, InputStream inputStream, OutputStream outputStream,
                 InetAddress inetAddress) {
             this.tempFileManager = tempFileManager;
-            this.inputStream = new PushbackInputStream(inputStream, BUFSIZE);
+            this.inputStream = inputStream instanceof PushbackInputStream ? (PushbackInputStream) inputStream
+                    : new PushbackInputStream(inputStream, BUFSIZE);
             this.outputStream = outputStream;
-            String remoteIp = inetAddress.isLoopbackAddress() || inetAddress.isAnyLocalAddress() ? "127.0.0.1"
+            remoteIp = inetAddress.isLoopbackAddress() || inetAddress.isAnyLocalAddress() ? "127.0.0.1"
                     : inetAddress.getHostAddress().toString();
-            headers = new HashMap<String, String>();
-
-            headers.put("remote-addr", remoteIp);
-            headers.put("http-client-ip", remoteIp);
         }
 
         @Override public void execute() throws IOException {
@@ -963,7 +1157,11 @@ public abstract class NanoHTTPD {
                 {
                     int read = -1;
                     try {
-                        read = inputStream.read(buf, 0, BUFSIZE);
+                        // Take only what is there when a pipelined request
+                        // was pushed back - reading past it would block
+                        // on the socket.
+                        int available = inputStream.available();
+                        read = inputStream.read(buf, 0, available > 0 ? Math.min(available, BUFSIZE) : BUFSIZE);
                     } catch (Exception e) {
                         safeClose(inputStream);
                         safeClose(outputStream);
@@ -989,8 +1187,12 @@ public abstract class NanoHTTPD {
                 }
 
                 parms = new HashMap<String, String>();
-                if (null == headers) {
-                    headers = new HashMap<String, String>();
+                // Headers are per request - the session may serve many
+                // requests on a keep-alive connection.
+                headers = new HashMap<String, String>();
+                if (remoteIp != null) {
+                    headers.put("remote-addr", remoteIp);
+                    headers.put("http-client-ip", remoteIp);
                 }
 
                 // Create a BufferedReader for parsing the header.
@@ -1016,9 +1218,16 @@ public abstract class NanoHTTPD {
                     throw new ResponseException(Response.Status.INTERNAL_ERROR,
                             "SERVER INTERNAL ERROR: Serve() returned a null response.");
                 } else {
+                    boolean keepAlive = isKeepAlive(pre.get("protocol"));
                     cookies.unloadQueue(r);
                     r.setRequestMethod(method);
+                    if (!keepAlive) {
+                        r.addHeader("Connection", "close");
+                    }
                     r.send(outputStream);
+                    if (!keepAlive) {
+                        throw new SocketException("NanoHttpd Shutdown");
+                    }
                 }
             } catch (SocketException e) {
                 // throw it out to close socket object (finalAccept)
@@ -1046,22 +1255,28 @@ public abstract class NanoHTTPD {
 
                 randomAccessFile = getTmpBucket();
 
-                long size;
-                if (headers.containsKey("content-length")) {
-                    size = Integer.parseInt(headers.get("content-length"));
-                } else if (splitbyte < rlen) {
-                    size = rlen - splitbyte;
+                // Without a content length the body is empty unless it is
+                // chunked - the bytes after the header may be the next
+                // pipelined request.
+                String transferEncoding = headers.get("transfer-encoding");
+                if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+                    readChunkedBody(randomAccessFile);
                 } else {
-                    size = 0;
-                }
+                    long size;
+                    if (headers.containsKey("content-length")) {
+                        size = Integer.parseInt(headers.get("content-length"));
+                    } else {
+                        size = 0;
+                    }
 
-                // Now read all the body and write it to f
-                byte[] buf = new byte[512];
-                while (rlen >= 0 && size > 0) {
-                    rlen = inputStream.read(buf, 0, (int) Math.min(size, 512));
-                    size -= rlen;
-                    if (rlen > 0) {
-                        randomAccessFile.write(buf, 0, rlen);
+                    // Now read all the body and write it to f
+                    byte[] buf = new byte[512];
+                    while (rlen >= 0 && size > 0) {
+                        rlen = inputStream.read(buf, 0, (int) Math.min(size, 512));
+                        size -= rlen;
+                        if (rlen > 0) {
+                            randomAccessFile.write(buf, 0, rlen);
+                        }
                     }
                 }
 
@@ -1132,6 +1347,17 @@ public abstract class NanoHTTPD {
             }
         }
 
+        /**
+         * HTTP/1.1 connections are persistent unless the client asks to close
+         * it. HTTP/1.0 connections are persistent only when asked for.
+         */
+        private boolean isKeepAlive(String protocol) {
+            String connection = headers.get("connection");
+            if ("HTTP/1.1".equalsIgnoreCase(protocol))
+                return connection == null || !connection.equalsIgnoreCase("close");
+            return connection != null && connection.equalsIgnoreCase("keep-alive");
+        }
+
         /**
          * Decodes the sent headers and loads the data into Key/value pairs
          */
@@ -1173,6 +1399,7 @@ public abstract class NanoHTTPD {
                 // NOTE: this now forces header names lowercase since they are
                 // case insensitive and vary by client.
                 if (st.hasMoreTokens()) {
+                    pre.put("protocol", st.nextToken());
                     String line = in.readLine();
                     while (line != null && line.trim().length() > 0) {
                         int p = line.indexOf(':');
@@ -1270,6 +1497,51 @@ public abstract class NanoHTTPD {
          * Find byte index separating header from body. It must be the last byte
          * of the first two sequential new lines.
          */
+        /**
+         * Reads a chunked request body. Chunk extensions and trailers are
+         * skipped.
+         */
+        private void readChunkedBody(RandomAccessFile randomAccessFile) throws IOException, ResponseException {
+            byte[] buf = new byte[512];
+            while (true) {
+                String line = readLine();
+                int semi = line.indexOf(';');
+                long size;
+                try {
+                    size = Long.parseLong((semi < 0 ? line : line.substring(0, semi)).trim(), 16);
+                } catch (NumberFormatException e) {
+                    throw new ResponseException(Response.Status.BAD_REQUEST, "BAD REQUEST: Invalid chunk size.");
+                }
+                if (size == 0)
+                    break;
+                while (size > 0) {
+                    int read = inputStream.read(buf, 0, (int) Math.min(size, buf.length));
+                    if (read < 0)
+                        throw new ResponseException(Response.Status.BAD_REQUEST, "BAD REQUEST: Incomplete chunked body.");
+                    randomAccessFile.write(buf, 0, read);
+                    size -= read;
+                }
+                readLine();
+            }
+            while (readLine().length() > 0)
+                ;
+        }
+
+        /**
+         * Reads a CRLF terminated line of the request body.
+         */
+        private String readLine() throws IOException, ResponseException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = inputStream.read()) != '\n') {
+                if (c < 0)
+                    throw new ResponseException(Response.Status.BAD_REQUEST, "BAD REQUEST: Incomplete chunked body.");
+                if (c != '\r')
+                    sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
         private int findHeaderEnd(final byte[] buf, int rlen) {
             int splitbyte = 0;
             while (splitbyte + 3 < rlen) {
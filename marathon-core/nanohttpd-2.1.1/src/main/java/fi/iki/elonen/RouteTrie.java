@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package fi.iki.elonen;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD.Method;
+
+/**
+ * A route table compiled into a path trie keyed by HTTP method and URI
+ * segment.
+ *
+ * Patterns are of the form <code>/session/:sessionId/element/:id</code>. A
+ * segment starting with ':' matches any single segment and the matched value
+ * is captured under the given name. Literal segments are preferred over
+ * parameters while matching.
+ *
+ * @param <T>
+ *            the value bound to each route
+ */
+public class RouteTrie<T> {
+
+    private static class Node<T> {
+        private final Map<String, Node<T>> literals = new HashMap<String, Node<T>>();
+        private Node<T> param;
+        private Entry<T> entry;
+    }
+
+    public static class Entry<T> {
+        private final Method method;
+        private final String pattern;
+        private final String[] names;
+        private final T value;
+
+        private Entry(Method method, String pattern, String[] names, T value) {
+            this.method = method;
+            this.pattern = pattern;
+            this.names = names;
+            this.value = value;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+
+    public static class Match<T> {
+        private final Entry<T> entry;
+        private final String[] values;
+
+        private Match(Entry<T> entry, String[] values) {
+            this.entry = entry;
+            this.values = values;
+        }
+
+        public Entry<T> getEntry() {
+            return entry;
+        }
+
+        public T getValue() {
+            return entry.value;
+        }
+
+        public int getParamCount() {
+            return entry.names.length;
+        }
+
+        public String getParamName(int index) {
+            return entry.names[index];
+        }
+
+        public String getParamValue(int index) {
+            return values[index];
+        }
+    }
+
+    private final Map<Method, Node<T>> roots = new EnumMap<Method, Node<T>>(Method.class);
+    private int maxParams;
+
+    /**
+     * Adds a route. When the same method and pattern are added more than once,
+     * the first one wins - same as a linear scan of the route list.
+     */
+    public void add(Method method, String pattern, T value) {
+        Node<T> node = roots.get(method);
+        if (node == null) {
+            node = new Node<T>();
+            roots.put(method, node);
+        }
+        List<String> names = new ArrayList<String>();
+        for (String segment : split(pattern)) {
+            Node<T> next;
+            if (segment.startsWith(":")) {
+                names.add(segment.substring(1));
+                next = node.param;
+                if (next == null)
+                    next = node.param = new Node<T>();
+            } else {
+                next = node.literals.get(segment);
+                if (next == null) {
+                    next = new Node<T>();
+                    node.literals.put(segment, next);
+                }
+            }
+            node = next;
+        }
+        if (node.entry == null)
+            node.entry = new Entry<T>(method, pattern, names.toArray(new String[names.size()]), value);
+        maxParams = Math.max(maxParams, names.size());
+    }
+
+    public Match<T> find(Method method, String uri) {
+        Node<T> root = roots.get(method);
+        if (root == null)
+            return null;
+        String[] segments = split(uri);
+        String[] values = new String[maxParams];
+        Entry<T> entry = find(root, segments, 0, values, 0);
+        if (entry == null)
+            return null;
+        return new Match<T>(entry, values);
+    }
+
+    /**
+     * Whether the path matches a route for any method. Used to tell a method
+     * that is not allowed (405) from an unknown path (404).
+     */
+    public boolean hasPath(String uri) {
+        String[] segments = split(uri);
+        String[] values = new String[maxParams];
+        for (Node<T> root : roots.values()) {
+            if (find(root, segments, 0, values, 0) != null)
+                return true;
+        }
+        return false;
+    }
+
+    private Entry<T> find(Node<T> node, String[] segments, int index, String[] values, int nparams) {
+        if (index == segments.length)
+            return node.entry;
+        Node<T> literal = node.literals.get(segments[index]);
+        if (literal != null) {
+            Entry<T> entry = find(literal, segments, index + 1, values, nparams);
+            if (entry != null)
+                return entry;
+        }
+        if (node.param != null) {
+            values[nparams] = segments[index];
+            return find(node.param, segments, index + 1, values, nparams + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Splits the path on '/' with the same semantics as
+     * <code>String.split("/")</code> (trailing empty segments are dropped).
+     */
+    private static String[] split(String path) {
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == '/')
+            end--;
+        if (end == 0)
+            return new String[] { "" };
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (path.charAt(i) == '/')
+                count++;
+        }
+        String[] segments = new String[count];
+        int start = 0;
+        int n = 0;
+        for (int i = 0; i < end; i++) {
+            if (path.charAt(i) == '/') {
+                segments[n++] = path.substring(start, i);
+                start = i + 1;
+            }
+        }
+        segments[n] = path.substring(start, end);
+        return segments;
+    }
+}
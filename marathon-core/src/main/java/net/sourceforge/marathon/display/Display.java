@@ -498,8 +498,8 @@ public class Display implements IPlaybackListener, IScriptListener, IExceptionRe
     }
 
     /** Implementation of IScriptListener **/
-    public void setScript(String script) {
-        displayView.insertScript(script);
+    public void updateScript(int offset, int length, String text) {
+        displayView.insertScript(offset, length, text);
     }
 
     public void abortRecording() {
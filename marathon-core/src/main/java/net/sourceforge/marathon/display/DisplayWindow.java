@@ -518,10 +518,10 @@ public class DisplayWindow extends JFrame implements IOSXApplicationListener, Pr
             }
         }
 
-        public void insertScript(String script) {
+        public void insertScript(int offset, int length, String text) {
             if (controller.isVisible())
-                controller.insertScript(script);
-            editor.insertScript(script);
+                controller.insertScript(text);
+            editor.insertScript(offset, length, text);
         }
 
         public void trackProgress() {
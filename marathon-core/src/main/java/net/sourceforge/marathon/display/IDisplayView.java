@@ -33,7 +33,7 @@ public interface IDisplayView {
 
     String getFilePath();
 
-    void insertScript(String script);
+    void insertScript(int offset, int length, String text);
 
     void trackProgress();
 
@@ -45,7 +45,7 @@ public interface IEditor {
 
     public void stopInserting();
 
-    public void insertScript(String script);
+    public void insertScript(int offset, int length, String text);
 
     public void addKeyBinding(String keyBinding, ActionListener action);
 
@@ -208,14 +208,14 @@ public class RSTAEditor extends RSyntaxTextArea implements IEditor, DocumentList
         insert = null;
     }
 
-    public void insertScript(String script) {
+    public void insertScript(int offset, int length, String text) {
         if (insert == null) {
             return;
         }
         boolean b = isBracketMatchingEnabled();
         setBracketMatchingEnabled(false);
-        replaceRange(script, insert.soff, insert.eoff);
-        insert.eoff = insert.soff + script.length();
+        replaceRange(text, insert.soff + offset, insert.soff + offset + length);
+        insert.eoff += text.length() - length;
         setCaretPosition(insert.eoff);
         setBracketMatchingEnabled(b);
     }
@@ -68,6 +68,8 @@ public class OMapComponent implements TreeNode, Serializable {
 
     public void setComponentRecognitionProperties(List<OMapRecognitionProperty> componentRecognitionProperties) {
         this.componentRecognitionProperties = componentRecognitionProperties;
+        if (parent instanceof OMapContainer)
+            ((OMapContainer) parent).componentChanged(this);
     }
 
     public List<OMapProperty> getGeneralProperties() {
@@ -150,6 +152,8 @@ public class OMapComponent implements TreeNode, Serializable {
 
     public void addComponentRecognitionProperty(OMapRecognitionProperty property) {
         componentRecognitionProperties.add(property);
+        if (parent instanceof OMapContainer)
+            ((OMapContainer) parent).componentChanged(this);
     }
 
     public boolean withLastResortProperties() {
@@ -56,6 +56,7 @@ public class OMapContainer implements TreeNode {
     private List<OMapComponent> components;
 
     private Map<String, OMapComponent> nameComponentMap;
+    private RecognitionIndex<OMapComponent> componentIndex;
     private TreeNode parent;
     private boolean loaded;
 
@@ -66,6 +67,7 @@ public class OMapContainer implements TreeNode {
         containerTitles = new ArrayList<String>();
         components = new ArrayList<OMapComponent>();
         nameComponentMap = new HashMap<String, OMapComponent>();
+        componentIndex = new RecognitionIndex<OMapComponent>();
         if (parent != null) {
             fileName = createFileName(title);
             loaded = true;
@@ -159,6 +161,8 @@ public class OMapContainer implements TreeNode {
 
     public void setContainerRecognitionProperties(List<OMapRecognitionProperty> toplevelContainer) {
         this.containerRecognitionProperties = toplevelContainer;
+        if (parent instanceof ObjectMapModel)
+            ((ObjectMapModel) parent).containerChanged(this);
     }
 
     public void setContainerGeneralProperties(List<OMapProperty> containerGeneralProperties) {
@@ -177,11 +181,28 @@ public class OMapContainer implements TreeNode {
 
     private void createMap() {
         nameComponentMap = new HashMap<String, OMapComponent>();
+        componentIndex.clear();
         for (OMapComponent omapComponent : components) {
             nameComponentMap.put(omapComponent.getName(), omapComponent);
+            componentIndex.add(omapComponent, omapComponent.getComponentRecognitionProperties());
         }
     }
 
+    void componentChanged(OMapComponent omapComponent) {
+        componentIndex.update(omapComponent, omapComponent.getComponentRecognitionProperties());
+    }
+
+    private void addComponent(OMapComponent omapComponent) {
+        OMapComponent existing = nameComponentMap.get(omapComponent.getName());
+        if (existing != null) {
+            components.remove(existing);
+            componentIndex.remove(existing);
+        }
+        components.add(omapComponent);
+        nameComponentMap.put(omapComponent.getName(), omapComponent);
+        componentIndex.add(omapComponent, omapComponent.getComponentRecognitionProperties());
+    }
+
     public boolean isMatched(IPropertyAccessor pa) {
         for (OMapRecognitionProperty rp : containerRecognitionProperties) {
             if (!rp.isMatch(pa))
@@ -215,15 +236,7 @@ public class OMapContainer implements TreeNode {
             }
         }
         omapComponent.setGeneralProperties(others);
-        OMapComponent existing = nameComponentMap.get(name);
-        if (existing == null) {
-            components.add(omapComponent);
-            nameComponentMap.put(name, omapComponent);
-        } else {
-            components.remove(existing);
-            components.add(omapComponent);
-            nameComponentMap.put(name, omapComponent);
-        }
+        addComponent(omapComponent);
         return omapComponent;
     }
 
@@ -277,7 +290,7 @@ public class OMapContainer implements TreeNode {
 
     public List<OMapComponent> findComponentsByProperties(IPropertyAccessor w) {
         List<OMapComponent> matched = new ArrayList<OMapComponent>();
-        for (OMapComponent omapComponent : components) {
+        for (OMapComponent omapComponent : componentIndex.find(w)) {
             if (omapComponent.isMatched(w))
                 matched.add(omapComponent);
         }
@@ -344,6 +357,8 @@ public class OMapContainer implements TreeNode {
 
     public void addContainerRecognitionProperty(OMapRecognitionProperty property) {
         containerRecognitionProperties.add(property);
+        if (parent instanceof ObjectMapModel)
+            ((ObjectMapModel) parent).containerChanged(this);
     }
 
     public void setFileName(String fileName) {
@@ -475,11 +490,14 @@ public class OMapContainer implements TreeNode {
             return;
         }
         components.remove(omapComponent);
+        nameComponentMap.remove(name);
+        componentIndex.remove(omapComponent);
     }
 
     public void add(OMapComponent oc) {
         components.add(oc);
         nameComponentMap.put(oc.getName(), oc);
+        componentIndex.add(oc, oc.getComponentRecognitionProperties());
     }
 
     public List<String> getUsedRecognitionProperties() {
@@ -519,15 +537,7 @@ public class OMapContainer implements TreeNode {
             }
         }
         omapComponent.setGeneralProperties(others);
-        OMapComponent existing = nameComponentMap.get(name);
-        if (existing == null) {
-            components.add(omapComponent);
-            nameComponentMap.put(name, omapComponent);
-        } else {
-            components.remove(existing);
-            components.add(omapComponent);
-            nameComponentMap.put(name, omapComponent);
-        }
+        addComponent(omapComponent);
         return omapComponent;
     }
 
@@ -535,8 +545,12 @@ public class OMapContainer implements TreeNode {
         Iterator<OMapComponent> iterator = components.iterator();
         while (iterator.hasNext()) {
             OMapComponent component = iterator.next();
-            if (!component.isUsed())
+            if (!component.isUsed()) {
                 iterator.remove();
+                if (nameComponentMap.get(component.getName()) == component)
+                    nameComponentMap.remove(component.getName());
+                componentIndex.remove(component);
+            }
         }
     }
 
@@ -40,11 +40,7 @@ public class ObjectMap extends ObjectMapModel {
     public OMapContainer getTopLevelComponent(IPropertyAccessor pa, List<List<String>> rproperties, List<String> gproperties,
             String title, boolean createIfNeeded) throws ObjectMapException {
         OMapContainer currentContainer;
-        List<OMapContainer> matched = new ArrayList<OMapContainer>();
-        for (OMapContainer com : data) {
-            if (com.isMatched(pa))
-                matched.add(com);
-        }
+        List<OMapContainer> matched = findContainers(pa);
         if (matched.size() == 1) {
             currentContainer = matched.get(0);
             try {
@@ -52,7 +48,7 @@ public class ObjectMap extends ObjectMapModel {
                 logger.info(MODULE, "Setting current container to: " + currentContainer);
             } catch (FileNotFoundException e) {
                 logger.warning(MODULE, "File not found for container: " + title + ". Recreating object map file for container.");
-                data.remove(currentContainer);
+                removeContainer(currentContainer);
                 currentContainer = createNewContainer(pa, rproperties, gproperties, title);
             }
         } else if (matched.size() == 0) {
@@ -68,11 +64,7 @@ public class ObjectMap extends ObjectMapModel {
 
     public OMapContainer getTopLevelComponent(IPropertyAccessor pa, String title) throws ObjectMapException {
         OMapContainer currentContainer;
-        List<OMapContainer> matched = new ArrayList<OMapContainer>();
-        for (OMapContainer com : data) {
-            if (com.isMatched(pa))
-                matched.add(com);
-        }
+        List<OMapContainer> matched = findContainers(pa);
         if (matched.size() == 1) {
             currentContainer = matched.get(0);
             try {
@@ -81,7 +73,7 @@ public class ObjectMap extends ObjectMapModel {
             } catch (FileNotFoundException e) {
                 logger.error(MODULE,
                         "File not found for container: " + currentContainer + ". Recreating object map file for container.");
-                data.remove(currentContainer);
+                removeContainer(currentContainer);
                 throw new ObjectMapException(
                         "File not found for container: " + currentContainer + ". Recreating object map file for container.");
             }
@@ -273,11 +265,7 @@ public class ObjectMap extends ObjectMapModel {
     public OMapContainer getTopLevelComponent(Properties attributes, Properties urp) throws ObjectMapException {
         IPropertyAccessor pa = new PropertiesPropertyAccessor(attributes);
         OMapContainer currentContainer;
-        List<OMapContainer> matched = new ArrayList<OMapContainer>();
-        for (OMapContainer com : data) {
-            if (com.isMatched(pa))
-                matched.add(com);
-        }
+        List<OMapContainer> matched = findContainers(pa);
         String title = getTitle(attributes);
         if (matched.size() == 1) {
             currentContainer = matched.get(0);
@@ -286,7 +274,7 @@ public class ObjectMap extends ObjectMapModel {
                 logger.info(MODULE, "Setting current container to: " + currentContainer);
             } catch (FileNotFoundException e) {
                 logger.warning(MODULE, "File not found for container: " + title + ". Recreating object map file for container.");
-                data.remove(currentContainer);
+                removeContainer(currentContainer);
                 currentContainer = createNewContainer(attributes, urp);
             }
         } else if (matched.size() == 0) {
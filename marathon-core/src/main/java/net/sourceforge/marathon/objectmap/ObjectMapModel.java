@@ -30,6 +30,7 @@ import java.util.logging.Logger;
 import javax.swing.tree.TreeNode;
 
 import net.sourceforge.marathon.runtime.api.Constants;
+import net.sourceforge.marathon.runtime.api.IPropertyAccessor;
 
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.DumperOptions.FlowStyle;
@@ -44,6 +45,7 @@ public class ObjectMapModel implements TreeNode {
 
     protected List<OMapContainer> data;
     private transient List<OMapContainer> deletedContainers = new ArrayList<OMapContainer>();
+    private transient RecognitionIndex<OMapContainer> containerIndex = new RecognitionIndex<OMapContainer>();
 
     private boolean dirty = false;
 
@@ -58,6 +60,7 @@ public class ObjectMapModel implements TreeNode {
             data = (List<OMapContainer>) loadYaml(getOMapFile());
             for (OMapContainer container : data) {
                 container.setParent(this);
+                containerIndex.add(container, container.getContainerRecognitionProperties());
             }
         } catch (FileNotFoundException e) {
             data = new ArrayList<OMapContainer>();
@@ -88,6 +91,29 @@ public class ObjectMapModel implements TreeNode {
 
     public void add(OMapContainer container) {
         data.add(container);
+        containerIndex.add(container, container.getContainerRecognitionProperties());
+    }
+
+    void containerChanged(OMapContainer container) {
+        containerIndex.update(container, container.getContainerRecognitionProperties());
+    }
+
+    /**
+     * Finds the containers whose recognition properties match the given
+     * property accessor.
+     */
+    protected List<OMapContainer> findContainers(IPropertyAccessor pa) {
+        List<OMapContainer> matched = new ArrayList<OMapContainer>();
+        for (OMapContainer container : containerIndex.find(pa)) {
+            if (container.isMatched(pa))
+                matched.add(container);
+        }
+        return matched;
+    }
+
+    protected void removeContainer(OMapContainer container) {
+        data.remove(container);
+        containerIndex.remove(container);
     }
 
     public TreeNode getChildAt(int childIndex) {
@@ -197,7 +223,7 @@ public class ObjectMapModel implements TreeNode {
                 container.load();
             } catch (FileNotFoundException e) {
                 logger.warning("Unable to find file for container: " + container + " Ignoring it.");
-                data.remove(container);
+                removeContainer(container);
             }
         }
     }
@@ -212,7 +238,7 @@ public class ObjectMapModel implements TreeNode {
     public void remove(OMapContainer oc) {
         if (data.contains(oc)) {
             deletedContainers.add(oc);
-            data.remove(oc);
+            removeContainer(oc);
         } else
             logger.warning("Container " + oc + " does not exist in the objectmap");
     }
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.objectmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.marathon.runtime.api.IPropertyAccessor;
+
+/**
+ * An index of object map entries by their recognition properties.
+ *
+ * Entries whose recognition properties all use the <code>equals</code> method
+ * are kept in a hash map keyed by the property values, grouped by the set of
+ * property names. Other entries are kept in a list and are always returned as
+ * candidates. The caller is expected to check the candidates with
+ * <code>isMatched</code>.
+ */
+class RecognitionIndex<T> {
+
+    private static class Entry {
+        long sequence;
+        List<String> names;
+        List<String> values;
+    }
+
+    private final Map<List<String>, Map<List<String>, List<T>>> index = new HashMap<List<String>, Map<List<String>, List<T>>>();
+    private final List<T> unindexed = new ArrayList<T>();
+    private final Map<T, Entry> entries = new IdentityHashMap<T, Entry>();
+    private long sequence;
+
+    private final Comparator<T> order = new Comparator<T>() {
+        @Override public int compare(T o1, T o2) {
+            long s1 = entries.get(o1).sequence;
+            long s2 = entries.get(o2).sequence;
+            return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+        }
+    };
+
+    public void add(T element, List<OMapRecognitionProperty> properties) {
+        if (entries.containsKey(element))
+            remove(element);
+        put(element, properties, sequence++);
+    }
+
+    /**
+     * Re-indexes an element after its recognition properties are changed. The
+     * element keeps its position in the order of the candidates.
+     */
+    public void update(T element, List<OMapRecognitionProperty> properties) {
+        Entry entry = entries.get(element);
+        if (entry == null)
+            return;
+        remove(element);
+        put(element, properties, entry.sequence);
+    }
+
+    public void remove(T element) {
+        Entry entry = entries.remove(element);
+        if (entry == null)
+            return;
+        if (entry.names == null) {
+            unindexed.remove(element);
+            return;
+        }
+        Map<List<String>, List<T>> byValues = index.get(entry.names);
+        List<T> elements = byValues.get(entry.values);
+        elements.remove(element);
+        if (elements.size() == 0)
+            byValues.remove(entry.values);
+        if (byValues.size() == 0)
+            index.remove(entry.names);
+    }
+
+    public void clear() {
+        index.clear();
+        unindexed.clear();
+        entries.clear();
+    }
+
+    /**
+     * Finds the elements that can match the given property accessor, in the
+     * order they were added.
+     */
+    public List<T> find(IPropertyAccessor pa) {
+        List<T> candidates = new ArrayList<T>(unindexed);
+        Map<String, String> properties = new HashMap<String, String>();
+        for (Map.Entry<List<String>, Map<List<String>, List<T>>> e : index.entrySet()) {
+            List<String> values = getValues(pa, e.getKey(), properties);
+            if (values == null)
+                continue;
+            List<T> elements = e.getValue().get(values);
+            if (elements != null)
+                candidates.addAll(elements);
+        }
+        if (candidates.size() > 1)
+            Collections.sort(candidates, order);
+        return candidates;
+    }
+
+    private List<String> getValues(IPropertyAccessor pa, List<String> names, Map<String, String> properties) {
+        List<String> values = new ArrayList<String>(names.size());
+        for (String name : names) {
+            String value;
+            if (properties.containsKey(name))
+                value = properties.get(name);
+            else {
+                value = pa.getProperty(name);
+                properties.put(name, value);
+            }
+            if (value == null)
+                return null;
+            values.add(value);
+        }
+        return values;
+    }
+
+    private void put(T element, List<OMapRecognitionProperty> properties, long sequence) {
+        Entry entry = new Entry();
+        entry.sequence = sequence;
+        entries.put(element, entry);
+        if (!isIndexable(properties)) {
+            unindexed.add(element);
+            return;
+        }
+        List<OMapRecognitionProperty> sorted = new ArrayList<OMapRecognitionProperty>(properties);
+        Collections.sort(sorted, new Comparator<OMapRecognitionProperty>() {
+            @Override public int compare(OMapRecognitionProperty o1, OMapRecognitionProperty o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        entry.names = new ArrayList<String>(sorted.size());
+        entry.values = new ArrayList<String>(sorted.size());
+        for (OMapRecognitionProperty p : sorted) {
+            entry.names.add(p.getName());
+            entry.values.add(p.getValue());
+        }
+        Map<List<String>, List<T>> byValues = index.get(entry.names);
+        if (byValues == null) {
+            byValues = new HashMap<List<String>, List<T>>();
+            index.put(entry.names, byValues);
+        }
+        List<T> elements = byValues.get(entry.values);
+        if (elements == null) {
+            elements = new ArrayList<T>(1);
+            byValues.put(entry.values, elements);
+        }
+        elements.add(element);
+    }
+
+    private boolean isIndexable(List<OMapRecognitionProperty> properties) {
+        if (properties == null)
+            return false;
+        for (OMapRecognitionProperty p : properties) {
+            if (p.getName() == null || !IPropertyAccessor.METHOD_EQUALS.equals(p.getMethod()))
+                return false;
+        }
+        return true;
+    }
+}
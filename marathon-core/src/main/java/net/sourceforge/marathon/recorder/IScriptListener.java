@@ -16,7 +16,11 @@
 package net.sourceforge.marathon.recorder;
 
 public interface IScriptListener {
-    void setScript(String script);
+    /**
+     * Replaces <code>length</code> characters at <code>offset</code> of the
+     * recorded script with <code>text</code>.
+     */
+    void updateScript(int offset, int length, String text);
 
     void abortRecording();
 
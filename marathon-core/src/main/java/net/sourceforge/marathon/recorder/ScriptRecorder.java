@@ -15,6 +15,8 @@
  *******************************************************************************/
 package net.sourceforge.marathon.recorder;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -22,6 +24,7 @@ import javax.swing.SwingUtilities;
 
 import net.sourceforge.marathon.runtime.api.IRecorder;
 import net.sourceforge.marathon.runtime.api.IScriptElement;
+import net.sourceforge.marathon.runtime.api.RecordableList;
 import net.sourceforge.marathon.runtime.api.TagInserter;
 import net.sourceforge.marathon.runtime.api.WindowId;
 
@@ -29,6 +32,14 @@ public class ScriptRecorder implements IRecorder {
     private IScriptListener scriptListener;
     private TagInserter tagInserter = new TagInserter();
 
+    /**
+     * The script text last sent to the listener, one entry for each top level
+     * element of the root tag (including the separating new lines). Recording
+     * only ever changes the last top level element or appends new ones, so the
+     * blocks before it need not be rendered again.
+     */
+    private final List<String> blocks = new ArrayList<String>();
+
     private final BlockingQueue<RecordEvent> recordEvents = new LinkedBlockingQueue<RecordEvent>();
 
     private static class RecordEvent {
@@ -55,8 +66,8 @@ public class ScriptRecorder implements IRecorder {
                 else {
                     windowId.addToTagInserter(tagInserter, recordable);
                 }
-                updateScript();
             }
+            updateScript();
         }
     };
 
@@ -72,15 +83,30 @@ public class ScriptRecorder implements IRecorder {
     }
 
     public void updateScript() {
-        if (scriptListener != null) {
-            synchronized (scriptListener) {
-                scriptListener.setScript(toScriptCode());
-            }
+        if (scriptListener == null)
+            return;
+        RecordableList children = tagInserter.getRootTag().getChildren();
+        int first = Math.max(0, Math.min(blocks.size(), children.size()) - 1);
+        int offset = 0;
+        for (int i = 0; i < first; i++)
+            offset += blocks.get(i).length();
+        StringBuilder old = new StringBuilder();
+        for (int i = first; i < blocks.size(); i++)
+            old.append(blocks.get(i));
+        List<String> changed = new ArrayList<String>();
+        StringBuilder text = new StringBuilder();
+        for (int i = first; i < children.size(); i++) {
+            String block = children.toScriptCode(i, offset + text.length() > 0);
+            changed.add(block);
+            text.append(block);
+        }
+        blocks.subList(first, blocks.size()).clear();
+        blocks.addAll(changed);
+        if (old.toString().equals(text.toString()))
+            return;
+        synchronized (scriptListener) {
+            scriptListener.updateScript(offset, old.length(), text.toString());
         }
-    }
-
-    private String toScriptCode() {
-        return tagInserter.getRootTag().toScriptCode();
     }
 
     public void abortRecording() {
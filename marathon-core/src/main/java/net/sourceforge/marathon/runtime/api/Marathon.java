@@ -367,6 +367,35 @@ public class Marathon {
 		}
 	}
 
+	/**
+	 * Checks the result of the agent's assert_content command. Gives the same
+	 * messages as {@link #assertContentJava(String[][], String)}.
+	 */
+	public void assertContentDiff(String[][] expected, String diff) {
+		JSONObject o = new JSONObject(diff);
+		int rowCount = o.getInt("rowCount");
+		if (expected.length != rowCount) {
+			throw new AssertionFailedError(
+					"Invalid Length " + Integer.valueOf(expected.length) + " : " + Integer.valueOf(rowCount));
+		}
+		if (o.getBoolean("equal"))
+			return;
+		JSONArray differences = o.getJSONArray("diff");
+		JSONObject first = differences.length() > 0 ? differences.getJSONObject(0) : null;
+		int lastRow = first == null ? rowCount - 1 : first.getInt("row");
+		int columnCount = o.getInt("columnCount");
+		for (int i = 0; i <= lastRow; i++) {
+			if (expected[i].length != columnCount) {
+				throw new AssertionFailedError("Invalid Length at index " + i + ", " + Integer.valueOf(expected[i].length)
+						+ " : " + Integer.valueOf(columnCount));
+			}
+		}
+		if (first != null) {
+			throw new AssertionFailedError("Data Mismatch at (" + first.getInt("row") + "," + first.getInt("column") + ") "
+					+ first.opt("expected") + " : " + first.opt("actual"));
+		}
+	}
+
 	public File getScreenCapture() {
 		try {
 			String imgDir = System.getProperty(Constants.PROP_REPORT_DIR);
@@ -37,14 +37,25 @@ public class RecordableList {
     public String toScriptCode() {
         StringBuffer buffer = new StringBuffer();
         for (int i = 0; i < impl.size(); i++) {
-            IScriptElement recordable = (IScriptElement) impl.get(i);
-            if (recordable instanceof CompositeScriptElement && buffer.length() > 0) {
-                buffer.append("\n");
-            }
-            buffer.append(recordable.toScriptCode());
-            if (recordable instanceof CompositeScriptElement && nextIsNotAContainer(i)) {
-                buffer.append("\n");
-            }
+            buffer.append(toScriptCode(i, buffer.length() > 0));
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Renders the element at the index along with the new lines separating it
+     * from its neighbours. <code>hasPrefix</code> tells whether any code comes
+     * before the element.
+     */
+    public String toScriptCode(int index, boolean hasPrefix) {
+        IScriptElement recordable = (IScriptElement) impl.get(index);
+        StringBuffer buffer = new StringBuffer();
+        if (recordable instanceof CompositeScriptElement && hasPrefix) {
+            buffer.append("\n");
+        }
+        buffer.append(recordable.toScriptCode());
+        if (recordable instanceof CompositeScriptElement && nextIsNotAContainer(index)) {
+            buffer.append("\n");
         }
         return buffer.toString();
     }
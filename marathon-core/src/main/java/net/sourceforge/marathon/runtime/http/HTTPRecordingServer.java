@@ -17,15 +17,11 @@ package net.sourceforge.marathon.runtime.http;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 import java.util.logging.Level;
 
 import org.json.JSONArray;
@@ -33,6 +29,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import fi.iki.elonen.NanoHTTPD;
+import fi.iki.elonen.RouteTrie;
 import fi.iki.elonen.NanoHTTPD.Response.Status;
 import net.sourceforge.marathon.api.INamingStrategy;
 import net.sourceforge.marathon.objectmap.ObjectMapConfiguration;
@@ -196,7 +193,7 @@ public class HTTPRecordingServer extends NanoHTTPD implements IRecordingServer {
     private static final String NULL_OBJECT = new String();
     public static final String MIME_JSON = "application/json;charset=UTF-8";
 
-    private final static ArrayList<net.sourceforge.marathon.runtime.http.RouteMap> routes;
+    private final static RouteTrie<RouteMap> routes = new RouteTrie<RouteMap>();
     private IRecorder recorder;
     private boolean rawRecording;
     private Session latestSession;
@@ -209,16 +206,55 @@ public class HTTPRecordingServer extends NanoHTTPD implements IRecordingServer {
     private WindowId focusedWindowId;
 
     static {
-        routes = new ArrayList<RouteMap>();
         // Custom
-        routes.add(new RouteMap(Method.POST, "/session", getMethod("createSession")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId", getMethod("getSession")));
-        routes.add(
-                new RouteMap(Method.GET, "/session/:sessionId/object_map_configuration", getMethod("getObjectMapConfiguration")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/context_menu_triggers", getMethod("getContextMenuTriggers")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/raw_recording", getMethod("isRawRecording")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/record", getMethod("record")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/focused_window", getMethod("focusedWindow")));
+        add(new RouteMap(Method.POST, "/session", new RouteHandler("createSession") {
+            @Override public Object invoke(HTTPRecordingServer server, JSONObject query, JSONObject uriParams, Session session,
+                    Object window, Object element) throws Exception {
+                return server.createSession(query, uriParams);
+            }
+        }));
+        add(new RouteMap(Method.GET, "/session/:sessionId", new RouteHandler("getSession") {
+            @Override public Object invoke(HTTPRecordingServer server, JSONObject query, JSONObject uriParams, Session session,
+                    Object window, Object element) throws Exception {
+                return server.getSession(query, uriParams, session);
+            }
+        }));
+        add(new RouteMap(Method.GET, "/session/:sessionId/object_map_configuration", new RouteHandler("getObjectMapConfiguration") {
+            @Override public Object invoke(HTTPRecordingServer server, JSONObject query, JSONObject uriParams, Session session,
+                    Object window, Object element) throws Exception {
+                return server.getObjectMapConfiguration(query, uriParams, session);
+            }
+        }));
+        add(new RouteMap(Method.GET, "/session/:sessionId/context_menu_triggers", new RouteHandler("getContextMenuTriggers") {
+            @Override public Object invoke(HTTPRecordingServer server, JSONObject query, JSONObject uriParams, Session session,
+                    Object window, Object element) throws Exception {
+                return server.getContextMenuTriggers(query, uriParams, session);
+            }
+        }));
+        add(new RouteMap(Method.GET, "/session/:sessionId/raw_recording", new RouteHandler("isRawRecording") {
+            @Override public Object invoke(HTTPRecordingServer server, JSONObject query, JSONObject uriParams, Session session,
+                    Object window, Object element) throws Exception {
+                return server.isRawRecording(query, uriParams, session);
+            }
+        }));
+        add(new RouteMap(Method.POST, "/session/:sessionId/record", new RouteHandler("record") {
+            @Override public Object invoke(HTTPRecordingServer server, JSONObject query, JSONObject uriParams, Session session,
+                    Object window, Object element) throws Exception {
+                return server.record(query, uriParams, session);
+            }
+        }));
+        add(new RouteMap(Method.POST, "/session/:sessionId/record_all", new RouteHandler("recordAll") {
+            @Override public Object invoke(HTTPRecordingServer server, JSONObject query, JSONObject uriParams, Session session,
+                    Object window, Object element) throws Exception {
+                return server.recordAll(query, uriParams, session);
+            }
+        }));
+        add(new RouteMap(Method.POST, "/session/:sessionId/focused_window", new RouteHandler("focusedWindow") {
+            @Override public Object invoke(HTTPRecordingServer server, JSONObject query, JSONObject uriParams, Session session,
+                    Object window, Object element) throws Exception {
+                return server.focusedWindow(query, uriParams, session);
+            }
+        }));
     }
 
     public HTTPRecordingServer(int port) {
@@ -292,44 +328,20 @@ public class HTTPRecordingServer extends NanoHTTPD implements IRecordingServer {
         return NanoHTTPDnewFixedLengthResponse(Status.BAD_REQUEST, MIME_HTML, "");
     }
 
-    public Route findRoute(Method method, String uri) {
-        JSONObject params = new JSONObject();
-        RouteMap map = findRouteMap(method, uri, params);
-        if (map == null)
-            return null;
-        return new Route(map.getProc(), params, map);
+    private static void add(RouteMap map) {
+        routes.add(map.getMethod(), map.getUri(), map);
     }
 
-    private RouteMap findRouteMap(Method method, String uri, JSONObject params) {
-        for (RouteMap route : HTTPRecordingServer.routes) {
-            if (!route.getMethod().equals(method)) {
-                continue;
-            }
-            String[] actualParts = uri.split("/");
-            String[] expectedParts = route.getUri().split("/");
-            if (actualParts.length != expectedParts.length)
-                continue;
-            Map<String, String> tParams = new HashMap<String, String>();
-            boolean found = true;
-            for (int i = 0; i < actualParts.length; i++) {
-                if (expectedParts[i].startsWith(":")) {
-                    tParams.put(expectedParts[i].substring(1), actualParts[i]);
-                } else if (expectedParts[i].equals(actualParts[i]))
-                    continue;
-                else {
-                    found = false;
-                    break;
-                }
-            }
-            if (found) {
-                Set<Entry<String, String>> entrySet = tParams.entrySet();
-                for (Entry<String, String> entry : entrySet) {
-                    params.put(entry.getKey(), entry.getValue());
-                }
-                return route;
-            }
+    public Route findRoute(Method method, String uri) {
+        RouteTrie.Match<RouteMap> match = routes.find(method, uri);
+        if (match == null)
+            return null;
+        JSONObject params = new JSONObject();
+        for (int i = 0; i < match.getParamCount(); i++) {
+            params.put(match.getParamName(i), match.getParamValue(i));
         }
-        return null;
+        RouteMap map = match.getValue();
+        return new Route(map.getProc(), params, map);
     }
 
     private Response handleRoute(Route route, JSONObject query) {
@@ -387,34 +399,13 @@ public class HTTPRecordingServer extends NanoHTTPD implements IRecordingServer {
     }
 
     public Object invoke(Route route, JSONObject query, JSONObject uriParams, Session session, Object window, Object element) {
-        Object result;
         try {
-            if (session == null)
-                result = route.getProc().invoke(this, query, uriParams);
-            else if (element != null)
-                result = route.getProc().invoke(this, query, uriParams, session, element);
-            else if (window != null)
-                result = route.getProc().invoke(this, query, uriParams, session, window);
-            else
-                result = route.getProc().invoke(this, query, uriParams, session);
-        } catch (InvocationTargetException e) {
-            Throwable cause = e.getCause();
-            throw new RuntimeException(cause.getMessage(), cause);
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        } catch (IllegalAccessException e) {
+            return route.getProc().invoke(this, query, uriParams, session, window, element);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
-        return result;
-    }
-
-    private static java.lang.reflect.Method getMethod(String name) {
-        java.lang.reflect.Method[] methods = HTTPRecordingServer.class.getMethods();
-        for (java.lang.reflect.Method method : methods) {
-            if (method.getName().equals(name))
-                return method;
-        }
-        return null;
     }
 
     public Response createSession(JSONObject query, JSONObject uriParams) {
@@ -461,40 +452,73 @@ public class HTTPRecordingServer extends NanoHTTPD implements IRecordingServer {
     }
 
     public JSONObject record(JSONObject query, JSONObject uriParams, Session session) throws IOException {
-        if (paused || recorder == null)
-            return new JSONObject();
         try {
-            String name = null;
-            try {
-                name = query.getJSONObject("attributes").getString("suggestedName");
-            } catch (JSONException e) {
-            }
-            JSONObject jsonObject = query.getJSONObject("event");
-            String type = jsonObject.getString("type");
-            if (type.equals("select_file_chooser") || type.equals("select_folder_chooser")) {
-                recorder.record(new ChooserScriptElement(query.getJSONObject("event")));
-                return new JSONObject();
-            } else if (type.equals("select_fx_menu")) {
-                recorder.record(
-                        new MenuItemScriptElement(query.getJSONObject("event"), createWindowId(query.getJSONObject("container"))));
-                return new JSONObject();
-            }
-            if (type.equals("window_closing_with_title")) {
-                recorder.record(new WindowClosingScriptElement(query.getJSONObject("event")));
-                return new JSONObject();
-            }
-            if (type.equals("window_state_with_title")) {
-                recorder.record(new WindowStateScriptElement(query.getJSONObject("event")));
-                return new JSONObject();
-            }
-            recorder.record(new JSONScriptElement(createWindowId(query.getJSONObject("container")), ns.getName(query, name),
-                    query.getJSONObject("event")));
+            recordEvent(query);
         } catch (Throwable t) {
             t.printStackTrace();
         }
         return new JSONObject();
     }
 
+    private void recordEvent(JSONObject query) throws JSONException, ObjectMapException {
+        if (paused || recorder == null)
+            return;
+        String name = null;
+        try {
+            name = query.getJSONObject("attributes").getString("suggestedName");
+        } catch (JSONException e) {
+        }
+        JSONObject jsonObject = query.getJSONObject("event");
+        String type = jsonObject.getString("type");
+        if (type.equals("select_file_chooser") || type.equals("select_folder_chooser")) {
+            recorder.record(new ChooserScriptElement(query.getJSONObject("event")));
+            return;
+        } else if (type.equals("select_fx_menu")) {
+            recorder.record(
+                    new MenuItemScriptElement(query.getJSONObject("event"), createWindowId(query.getJSONObject("container"))));
+            return;
+        }
+        if (type.equals("window_closing_with_title")) {
+            recorder.record(new WindowClosingScriptElement(query.getJSONObject("event")));
+            return;
+        }
+        if (type.equals("window_state_with_title")) {
+            recorder.record(new WindowStateScriptElement(query.getJSONObject("event")));
+            return;
+        }
+        recorder.record(new JSONScriptElement(createWindowId(query.getJSONObject("container")), ns.getName(query, name),
+                query.getJSONObject("event")));
+    }
+
+    /**
+     * Records a batch of messages in order. Each message is either a record
+     * request or a focused window notification (<code>request</code> is
+     * <code>focused-window</code>). A message that fails does not stop the
+     * rest of the batch. The failures are returned in <code>errors</code> as
+     * <code>{index, message}</code>.
+     */
+    public JSONObject recordAll(JSONObject query, JSONObject uriParams, Session session)
+            throws IOException, JSONException, ObjectMapException {
+        JSONArray events = query.getJSONArray("events");
+        JSONArray errors = new JSONArray();
+        for (int i = 0; i < events.length(); i++) {
+            try {
+                JSONObject message = events.getJSONObject(i);
+                if ("focused-window".equals(message.optString("request")))
+                    focusedWindow(message, uriParams, session);
+                else
+                    recordEvent(message);
+            } catch (Throwable t) {
+                t.printStackTrace();
+                errors.put(new JSONObject().put("index", i).put("message", t.getClass().getName() + ":" + t.getMessage()));
+            }
+        }
+        JSONObject r = new JSONObject();
+        if (errors.length() > 0)
+            r.put("errors", errors);
+        return r;
+    }
+
     public JSONObject focusedWindow(JSONObject query, JSONObject uriParams, Session session)
             throws IOException, JSONException, ObjectMapException {
         focusedWindowId = createWindowId(query.getJSONObject("container"));
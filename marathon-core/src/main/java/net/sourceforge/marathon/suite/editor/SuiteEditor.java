@@ -123,7 +123,7 @@ import net.sourceforge.marathon.runtime.api.UIUtils;
     public void stopInserting() {
     }
 
-    public void insertScript(String script) {
+    public void insertScript(int offset, int length, String text) {
     }
 
     public void addKeyBinding(String keyBinding, ActionListener action) {
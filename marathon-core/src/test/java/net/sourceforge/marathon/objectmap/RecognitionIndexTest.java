@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.objectmap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.sourceforge.marathon.runtime.api.Constants;
+import net.sourceforge.marathon.runtime.api.IPropertyAccessor;
+
+@Test public class RecognitionIndexTest {
+
+    private static class PropertyAccessor implements IPropertyAccessor {
+        private final Map<String, String> properties = new HashMap<String, String>();
+
+        public PropertyAccessor(String... nameValues) {
+            for (int i = 0; i < nameValues.length; i += 2)
+                properties.put(nameValues[i], nameValues[i + 1]);
+        }
+
+        @Override public String getProperty(String name) {
+            return properties.get(name);
+        }
+
+        @Override public boolean isMatched(String method, String name, String value) {
+            String actual = properties.get(name);
+            if (actual == null)
+                return false;
+            if (METHOD_EQUALS.equals(method))
+                return actual.equals(value);
+            if (METHOD_STARTS_WITH.equals(method))
+                return actual.startsWith(value);
+            throw new UnsupportedOperationException(method);
+        }
+    }
+
+    private File projectDir;
+    private String savedProjectDir;
+
+    @BeforeMethod public void createProjectDir() throws Exception {
+        projectDir = File.createTempFile("omap", "");
+        projectDir.delete();
+        projectDir.mkdirs();
+        savedProjectDir = System.getProperty(Constants.PROP_PROJECT_DIR);
+        System.setProperty(Constants.PROP_PROJECT_DIR, projectDir.getAbsolutePath());
+    }
+
+    @AfterMethod public void deleteProjectDir() {
+        if (savedProjectDir == null)
+            System.clearProperty(Constants.PROP_PROJECT_DIR);
+        else
+            System.setProperty(Constants.PROP_PROJECT_DIR, savedProjectDir);
+        projectDir.delete();
+    }
+
+    private static OMapRecognitionProperty rp(String name, String method, String value) {
+        OMapRecognitionProperty p = new OMapRecognitionProperty();
+        p.setName(name);
+        p.setMethod(method);
+        p.setValue(value);
+        return p;
+    }
+
+    private static List<OMapRecognitionProperty> equals(String... nameValues) {
+        List<OMapRecognitionProperty> properties = new ArrayList<OMapRecognitionProperty>();
+        for (int i = 0; i < nameValues.length; i += 2)
+            properties.add(rp(nameValues[i], IPropertyAccessor.METHOD_EQUALS, nameValues[i + 1]));
+        return properties;
+    }
+
+    private static OMapComponent component(OMapContainer container, String name, List<OMapRecognitionProperty> properties) {
+        OMapComponent component = new OMapComponent(container);
+        component.setName(name);
+        component.setComponentRecognitionProperties(properties);
+        container.add(component);
+        return component;
+    }
+
+    /*
+     * What OMapContainer.findComponentsByProperties did before the index.
+     */
+    private static List<OMapComponent> scan(OMapContainer container, IPropertyAccessor pa) {
+        List<OMapComponent> matched = new ArrayList<OMapComponent>();
+        for (int i = 0; i < container.getChildCount(); i++) {
+            OMapComponent component = (OMapComponent) container.getChildAt(i);
+            if (component.isMatched(pa))
+                matched.add(component);
+        }
+        return matched;
+    }
+
+    public void findsByPropertiesInAnyOrder() {
+        RecognitionIndex<String> index = new RecognitionIndex<String>();
+        index.add("ok", equals("name", "ok"));
+        index.add("button", equals("type", "JButton", "text", "OK"));
+        index.add("cancel", equals("name", "cancel"));
+        AssertJUnit.assertEquals(Arrays.asList("ok"), index.find(new PropertyAccessor("name", "ok", "text", "Yes")));
+        AssertJUnit.assertEquals(Arrays.asList("ok", "button"),
+                index.find(new PropertyAccessor("name", "ok", "text", "OK", "type", "JButton")));
+        AssertJUnit.assertEquals(new ArrayList<String>(), index.find(new PropertyAccessor("text", "OK")));
+    }
+
+    public void updateAndRemove() {
+        RecognitionIndex<String> index = new RecognitionIndex<String>();
+        index.add("ok", equals("name", "ok"));
+        index.add("cancel", equals("name", "cancel"));
+        index.update("ok", equals("name", "yes"));
+        AssertJUnit.assertEquals(new ArrayList<String>(), index.find(new PropertyAccessor("name", "ok")));
+        AssertJUnit.assertEquals(Arrays.asList("ok"), index.find(new PropertyAccessor("name", "yes")));
+        index.remove("ok");
+        AssertJUnit.assertEquals(new ArrayList<String>(), index.find(new PropertyAccessor("name", "yes")));
+        AssertJUnit.assertEquals(Arrays.asList("cancel"), index.find(new PropertyAccessor("name", "cancel")));
+        // Updating an element that is not in the index does not add it
+        index.update("ok", equals("name", "ok"));
+        AssertJUnit.assertEquals(new ArrayList<String>(), index.find(new PropertyAccessor("name", "ok")));
+    }
+
+    public void otherMethodsAreNotIndexed() {
+        RecognitionIndex<String> index = new RecognitionIndex<String>();
+        List<OMapRecognitionProperty> startsWith = equals("type", "JButton");
+        startsWith.add(rp("text", IPropertyAccessor.METHOD_STARTS_WITH, "O"));
+        index.add("startsWith", startsWith);
+        index.add("ok", equals("name", "ok"));
+        AssertJUnit.assertEquals(Arrays.asList("startsWith"), index.find(new PropertyAccessor("name", "cancel")));
+        AssertJUnit.assertEquals(Arrays.asList("startsWith", "ok"), index.find(new PropertyAccessor("name", "ok")));
+    }
+
+    public void setComponentRecognitionPropertiesRekeysTheComponent() {
+        OMapContainer container = new OMapContainer();
+        OMapComponent ok = component(container, "ok", equals("name", "ok"));
+        ok.setComponentRecognitionProperties(equals("name", "yes"));
+        AssertJUnit.assertEquals(0, container.findComponentsByProperties(new PropertyAccessor("name", "ok")).size());
+        AssertJUnit.assertEquals(Arrays.asList(ok), container.findComponentsByProperties(new PropertyAccessor("name", "yes")));
+    }
+
+    public void insertUpdateAndRemoveComponents() {
+        OMapContainer container = new OMapContainer();
+        OMapComponent ok = container.insertNameForComponent("ok", properties("name", "ok"), properties("name", "ok", "text", "OK"));
+        OMapComponent cancel = container.insertNameForComponent("cancel", properties("name", "cancel"),
+                properties("name", "cancel", "text", "Cancel"));
+        AssertJUnit.assertEquals(Arrays.asList(ok), container.findComponentsByProperties(new PropertyAccessor("name", "ok")));
+        // Inserting the same name replaces the component
+        OMapComponent yes = container.insertNameForComponent("ok", properties("name", "yes"), properties("name", "yes"));
+        AssertJUnit.assertEquals(0, container.findComponentsByProperties(new PropertyAccessor("name", "ok")).size());
+        AssertJUnit.assertEquals(Arrays.asList(yes), container.findComponentsByProperties(new PropertyAccessor("name", "yes")));
+        container.updateComponent(cancel, Arrays.asList("text"));
+        AssertJUnit.assertEquals(0, container.findComponentsByProperties(new PropertyAccessor("name", "cancel")).size());
+        AssertJUnit.assertEquals(Arrays.asList(cancel),
+                container.findComponentsByProperties(new PropertyAccessor("text", "Cancel")));
+        container.removeComponent(yes);
+        AssertJUnit.assertEquals(0, container.findComponentsByProperties(new PropertyAccessor("name", "yes")).size());
+    }
+
+    private static Properties properties(String... nameValues) {
+        Properties properties = new Properties();
+        for (int i = 0; i < nameValues.length; i += 2)
+            properties.setProperty(nameValues[i], nameValues[i + 1]);
+        return properties;
+    }
+
+    public void removeUnusedDropsComponents() {
+        OMapContainer container = new OMapContainer();
+        OMapComponent used = component(container, "used", equals("name", "same"));
+        component(container, "unused", equals("name", "same")).setUsed(false);
+        AssertJUnit.assertEquals(2, container.findComponentsByProperties(new PropertyAccessor("name", "same")).size());
+        container.removeUnused();
+        AssertJUnit.assertEquals(Arrays.asList(used), container.findComponentsByProperties(new PropertyAccessor("name", "same")));
+    }
+
+    public void resultsAreInMapOrder() {
+        OMapContainer container = new OMapContainer();
+        List<OMapRecognitionProperty> startsWith = new ArrayList<OMapRecognitionProperty>();
+        startsWith.add(rp("text", IPropertyAccessor.METHOD_STARTS_WITH, "O"));
+        component(container, "byText", equals("text", "OK"));
+        component(container, "startsWith", startsWith);
+        component(container, "byName", equals("name", "ok"));
+        component(container, "byTypeAndText", equals("type", "JButton", "text", "OK"));
+        OMapComponent last = component(container, "last", equals("name", "other"));
+        PropertyAccessor pa = new PropertyAccessor("name", "ok", "text", "OK", "type", "JButton");
+        AssertJUnit.assertEquals(4, scan(container, pa).size());
+        AssertJUnit.assertEquals(scan(container, pa), container.findComponentsByProperties(pa));
+        // A re-keyed component keeps its place
+        last.setComponentRecognitionProperties(equals("name", "ok"));
+        AssertJUnit.assertEquals(5, scan(container, pa).size());
+        AssertJUnit.assertEquals(scan(container, pa), container.findComponentsByProperties(pa));
+        container.findComponentByName("byText").setComponentRecognitionProperties(equals("text", "OK", "name", "ok"));
+        AssertJUnit.assertEquals(scan(container, pa), container.findComponentsByProperties(pa));
+    }
+
+    public void containersAreIndexed() {
+        ObjectMapModel model = new ObjectMapModel();
+        OMapContainer main = container(model, "Main");
+        OMapContainer dialog = container(model, "Dialog");
+        AssertJUnit.assertEquals(Arrays.asList(main), model.findContainers(new PropertyAccessor("title", "Main")));
+        dialog.setContainerRecognitionProperties(equals("title", "Main"));
+        AssertJUnit.assertEquals(Arrays.asList(main, dialog), model.findContainers(new PropertyAccessor("title", "Main")));
+        model.remove(main);
+        AssertJUnit.assertEquals(Arrays.asList(dialog), model.findContainers(new PropertyAccessor("title", "Main")));
+    }
+
+    private static OMapContainer container(ObjectMapModel model, String title) {
+        OMapContainer container = new OMapContainer();
+        container.setContainerRecognitionProperties(equals("title", title));
+        container.setParent(model);
+        model.add(container);
+        return container;
+    }
+}
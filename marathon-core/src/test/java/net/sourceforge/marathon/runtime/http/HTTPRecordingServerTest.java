@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.runtime.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.AssertJUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import fi.iki.elonen.NanoHTTPD.Method;
+import fi.iki.elonen.NanoHTTPD.Response;
+import fi.iki.elonen.NanoHTTPD.Response.Status;
+import net.sourceforge.marathon.api.INamingStrategy;
+import net.sourceforge.marathon.objectmap.ObjectMapNamingStrategy;
+import net.sourceforge.marathon.runtime.NamingStrategyFactory;
+import net.sourceforge.marathon.runtime.api.ComponentId;
+import net.sourceforge.marathon.runtime.api.IPropertyAccessor;
+import net.sourceforge.marathon.runtime.api.IRecorder;
+import net.sourceforge.marathon.runtime.api.IScriptElement;
+import net.sourceforge.marathon.runtime.api.WindowId;
+
+@Test public class HTTPRecordingServerTest {
+
+    public static class TestNamingStrategy implements INamingStrategy {
+        @Override public void save() {
+        }
+
+        @Override public String getName(JSONObject query, String name) {
+            return name;
+        }
+
+        @Override public String getContainerName(JSONObject container) {
+            return container.getJSONObject("attributes").getString("title");
+        }
+
+        @Override public void setTopLevelComponent(IPropertyAccessor driver) {
+        }
+
+        @Override public String[] toCSS(ComponentId componentId, boolean visibility) {
+            return null;
+        }
+
+        @Override public void setDirty() {
+        }
+
+        @Override public String[] getComponentNames() {
+            return new String[0];
+        }
+    }
+
+    private final List<IScriptElement> recorded = new ArrayList<IScriptElement>();
+    private HTTPRecordingServer server;
+
+    private final IRecorder recorder = new IRecorder() {
+        @Override public void record(IScriptElement element) {
+            recorded.add(element);
+        }
+
+        @Override public void abortRecording() {
+        }
+
+        @Override public void insertChecklist(String name) {
+        }
+
+        @Override public String recordInsertScriptElement(WindowId windowId, String script) {
+            return null;
+        }
+
+        @Override public void recordInsertChecklistElement(WindowId windowId, String fileName) {
+        }
+
+        @Override public void recordShowChecklistElement(WindowId windowId, String fileName) {
+        }
+
+        @Override public boolean isCreatingObjectMap() {
+            return false;
+        }
+
+        @Override public void updateScript() {
+        }
+    };
+
+    @BeforeMethod public void createServer() {
+        NamingStrategyFactory.nsClass = TestNamingStrategy.class;
+        server = new HTTPRecordingServer(0);
+        server.startRecording(recorder);
+        recorded.clear();
+    }
+
+    @AfterMethod public void resetNamingStrategy() {
+        NamingStrategyFactory.nsClass = ObjectMapNamingStrategy.class;
+    }
+
+    private JSONObject window(String title) {
+        return new JSONObject().put("is_window", true).put("urp", new JSONObject().put("title", title));
+    }
+
+    private JSONObject click(String name, String window) {
+        return new JSONObject().put("container", window(window)).put("attributes", new JSONObject().put("suggestedName", name))
+                .put("event", new JSONObject().put("type", "click"));
+    }
+
+    private JSONObject focusedWindow(String window) {
+        return new JSONObject().put("request", "focused-window").put("container", window(window));
+    }
+
+    private JSONObject windowClosing(String window) {
+        return new JSONObject().put("event", new JSONObject().put("type", "window_closing_with_title").put("value", window));
+    }
+
+    private Response recordAll(JSONObject... messages) {
+        JSONArray events = new JSONArray();
+        for (JSONObject message : messages)
+            events.put(message);
+        return server.serve_internal("/session/SESSION-ID/record_all", Method.POST, new JSONObject().put("events", events));
+    }
+
+    public void recordAllRecordsInOrder() {
+        Response response = recordAll(click("ok", "Main"), focusedWindow("Dialog"), click("cancel", "Dialog"),
+                windowClosing("Dialog"));
+        AssertJUnit.assertEquals(Status.OK, response.getStatus());
+        AssertJUnit.assertEquals(3, recorded.size());
+        AssertJUnit.assertTrue(recorded.get(0).toString().contains("name=ok"));
+        AssertJUnit.assertEquals("Main", recorded.get(0).getWindowId().getTitle());
+        AssertJUnit.assertTrue(recorded.get(1).toString().contains("name=cancel"));
+        AssertJUnit.assertEquals("Dialog", recorded.get(1).getWindowId().getTitle());
+        AssertJUnit.assertNull(recorded.get(2).getWindowId());
+        AssertJUnit.assertEquals("Dialog", server.getFocusedWindowId().getTitle());
+    }
+
+    public void recordAllContinuesAfterAFailingMessage() throws Exception {
+        Response response = recordAll(click("ok", "Main"), new JSONObject().put("container", window("Main")),
+                click("cancel", "Main"));
+        AssertJUnit.assertEquals(Status.OK, response.getStatus());
+        AssertJUnit.assertEquals(2, recorded.size());
+        AssertJUnit.assertTrue(recorded.get(0).toString().contains("name=ok"));
+        AssertJUnit.assertTrue(recorded.get(1).toString().contains("name=cancel"));
+        JSONObject result = new JSONObject(read(response));
+        AssertJUnit.assertEquals(0, result.getInt("status"));
+        JSONArray errors = result.getJSONObject("value").getJSONArray("errors");
+        AssertJUnit.assertEquals(1, errors.length());
+        AssertJUnit.assertEquals(1, errors.getJSONObject(0).getInt("index"));
+    }
+
+    private String read(Response response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = response.getData();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) != -1)
+            out.write(buffer, 0, n);
+        return out.toString("UTF-8");
+    }
+
+    public void recordAllWhilePausedOnlyTracksTheFocusedWindow() {
+        server.pauseRecording();
+        recordAll(click("ok", "Main"), focusedWindow("Dialog"));
+        AssertJUnit.assertTrue(recorded.isEmpty());
+        AssertJUnit.assertEquals("Dialog", server.getFocusedWindowId().getTitle());
+    }
+}
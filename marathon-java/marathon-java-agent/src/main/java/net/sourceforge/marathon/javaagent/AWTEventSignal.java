@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import java.awt.AWTEvent;
+import java.awt.KeyboardFocusManager;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Signals changes in the UI that can affect the outcome of a {@link Wait}.
+ *
+ * An {@link AWTEventListener} listens to hierarchy, container, component,
+ * window and focus events and the focus manager properties. Every such event
+ * increments a version. Waiters remember the version before checking their
+ * condition and block till the version changes or a timeout.
+ */
+public class AWTEventSignal {
+
+    private static final Logger logger = Logger.getLogger(AWTEventSignal.class.getName());
+
+    private static final long EVENT_MASK = AWTEvent.HIERARCHY_EVENT_MASK | AWTEvent.CONTAINER_EVENT_MASK
+            | AWTEvent.COMPONENT_EVENT_MASK | AWTEvent.WINDOW_EVENT_MASK | AWTEvent.WINDOW_FOCUS_EVENT_MASK
+            | AWTEvent.WINDOW_STATE_EVENT_MASK | AWTEvent.FOCUS_EVENT_MASK;
+
+    private static final Object lock = new Object();
+    private static long version;
+    private static boolean installed;
+    private static boolean listening;
+
+    private static synchronized void install() {
+        if (installed)
+            return;
+        installed = true;
+        try {
+            AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                @Override public Object run() {
+                    Toolkit.getDefaultToolkit().addAWTEventListener(new AWTEventListener() {
+                        @Override public void eventDispatched(AWTEvent event) {
+                            signal();
+                        }
+                    }, EVENT_MASK);
+                    KeyboardFocusManager.getCurrentKeyboardFocusManager().addPropertyChangeListener(new PropertyChangeListener() {
+                        @Override public void propertyChange(PropertyChangeEvent evt) {
+                            signal();
+                        }
+                    });
+                    return null;
+                }
+            });
+            listening = true;
+        } catch (SecurityException e) {
+            logger.log(Level.WARNING, "Unable to listen for AWT events. Waits fall back to polling", e);
+        }
+    }
+
+    private static void signal() {
+        synchronized (lock) {
+            version++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * The current version. Pass it to {@link #awaitChange(long, long)} after
+     * checking a condition.
+     */
+    public static long getVersion() {
+        install();
+        synchronized (lock) {
+            return version;
+        }
+    }
+
+    /**
+     * Blocks till a relevant event arrives after the given version was read or
+     * the timeout expires. Without an event listener this is a plain sleep.
+     *
+     * @return true if an event arrived
+     */
+    public static boolean awaitChange(long since, long timeoutInMilliseconds) throws InterruptedException {
+        if (!listening) {
+            Thread.sleep(timeoutInMilliseconds);
+            return false;
+        }
+        long end = System.currentTimeMillis() + timeoutInMilliseconds;
+        synchronized (lock) {
+            while (version == since) {
+                long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0)
+                    return false;
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+}
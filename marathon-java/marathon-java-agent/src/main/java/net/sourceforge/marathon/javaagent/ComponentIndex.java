@@ -0,0 +1,435 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ContainerEvent;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.Field;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An index of the components of a window by tag name, class, name and field
+ * name.
+ *
+ * The index of a window is built when it is first used. From then on it is
+ * kept up to date from container events (components added or removed) and
+ * changes to the name property, and it is dropped when the window is
+ * disposed. Field names are resolved when the component, or the container
+ * declaring the field, is added to the window. A field assigned later is
+ * picked up when a lookup by that field name finds nothing.
+ *
+ * Lookups return components in the order a walk of the tree through
+ * {@link IJavaElement#getComponents()} visits them.
+ */
+public class ComponentIndex {
+
+    private static final Logger logger = Logger.getLogger(ComponentIndex.class.getName());
+
+    public static enum Key {
+        TAG, CLASS, NAME, FIELD_NAME
+    }
+
+    private static final Map<Window, ComponentIndex> indexes = new HashMap<Window, ComponentIndex>();
+    private static final Map<Class<?>, String> tags = new HashMap<Class<?>, String>();
+    private static boolean installed;
+    private static boolean listening;
+
+    private static final PropertyChangeListener nameListener = new PropertyChangeListener() {
+        @Override public void propertyChange(PropertyChangeEvent evt) {
+            Component c = (Component) evt.getSource();
+            synchronized (ComponentIndex.class) {
+                ComponentIndex index = indexes.get(getWindow(c));
+                if (index != null)
+                    index.rename(c, (String) evt.getNewValue());
+            }
+        }
+    };
+
+    private static final AWTEventListener eventListener = new AWTEventListener() {
+        @Override public void eventDispatched(AWTEvent event) {
+            if (event instanceof ContainerEvent) {
+                ContainerEvent e = (ContainerEvent) event;
+                synchronized (ComponentIndex.class) {
+                    ComponentIndex index = indexes.get(getWindow(e.getContainer()));
+                    if (index == null)
+                        return;
+                    index.removeTree(e.getChild());
+                    if (e.getID() == ContainerEvent.COMPONENT_ADDED)
+                        index.addTree(e.getChild());
+                }
+            } else if (event.getID() == WindowEvent.WINDOW_CLOSED) {
+                drop(((WindowEvent) event).getWindow());
+            } else if (event instanceof HierarchyEvent) {
+                HierarchyEvent e = (HierarchyEvent) event;
+                // Dispatched to every descendant, only the window itself is
+                // of interest
+                if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && e.getComponent() == e.getChanged()
+                        && e.getChanged() instanceof Window && !e.getChanged().isDisplayable())
+                    drop((Window) e.getChanged());
+            }
+        }
+    };
+
+    private static synchronized void drop(Window window) {
+        ComponentIndex index = indexes.remove(window);
+        if (index != null)
+            index.dispose();
+    }
+
+    private static synchronized boolean install() {
+        if (installed)
+            return listening;
+        installed = true;
+        try {
+            AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                @Override public Object run() {
+                    Toolkit.getDefaultToolkit().addAWTEventListener(eventListener,
+                            AWTEvent.CONTAINER_EVENT_MASK | AWTEvent.WINDOW_EVENT_MASK | AWTEvent.HIERARCHY_EVENT_MASK);
+                    return null;
+                }
+            });
+            listening = true;
+        } catch (SecurityException e) {
+            logger.log(Level.WARNING, "Unable to listen for container events. Component lookups walk the tree", e);
+        }
+        return listening;
+    }
+
+    /**
+     * Finds the components below root with the given key.
+     *
+     * @param root
+     *            the component to search in. The root itself is not part of
+     *            the result.
+     * @param value
+     *            the tag name, component class, name or field name
+     * @return the matching components in walk order or null if root is not
+     *         part of a displayable window.
+     */
+    public static synchronized List<Component> find(Component root, Key key, Object value) {
+        Window window = getWindow(root);
+        if (window == null || !window.isDisplayable() || !install())
+            return null;
+        List<Component> found = lookup(window, root, key, value);
+        if (found.isEmpty() && key == Key.FIELD_NAME) {
+            getIndex(window).resolveFieldNames();
+            if (root instanceof Window)
+                resolveFieldNamesInOwnedWindows((Window) root);
+            found = lookup(window, root, key, value);
+        }
+        sort(root, found);
+        return found;
+    }
+
+    private static List<Component> lookup(Window window, Component root, Key key, Object value) {
+        List<Component> found = new ArrayList<Component>();
+        for (Component c : getIndex(window).get(key, value)) {
+            if (isDescendant(c, root))
+                found.add(c);
+        }
+        if (root instanceof Window)
+            findInOwnedWindows((Window) root, key, value, found);
+        return found;
+    }
+
+    public static synchronized int getIndexedWindowCount() {
+        return indexes.size();
+    }
+
+    private static void findInOwnedWindows(Window window, Key key, Object value, List<Component> found) {
+        for (Window owned : window.getOwnedWindows()) {
+            ComponentIndex index = owned.isDisplayable() ? getIndex(owned) : new ComponentIndex(owned, false);
+            found.addAll(index.get(key, value));
+            findInOwnedWindows(owned, key, value, found);
+        }
+    }
+
+    private static void resolveFieldNamesInOwnedWindows(Window window) {
+        for (Window owned : window.getOwnedWindows()) {
+            if (owned.isDisplayable())
+                getIndex(owned).resolveFieldNames();
+            resolveFieldNamesInOwnedWindows(owned);
+        }
+    }
+
+    private static ComponentIndex getIndex(Window window) {
+        ComponentIndex index = indexes.get(window);
+        if (index == null) {
+            prune();
+            index = new ComponentIndex(window, true);
+            indexes.put(window, index);
+        }
+        return index;
+    }
+
+    /*
+     * Drops the indexes of windows that are no longer displayable in case
+     * the event telling so was missed.
+     */
+    private static void prune() {
+        for (Iterator<Map.Entry<Window, ComponentIndex>> it = indexes.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Window, ComponentIndex> e = it.next();
+            if (!e.getKey().isDisplayable()) {
+                it.remove();
+                e.getValue().dispose();
+            }
+        }
+    }
+
+    private static Window getWindow(Component c) {
+        while (c != null && !(c instanceof Window))
+            c = c.getParent();
+        return (Window) c;
+    }
+
+    private static boolean isDescendant(Component c, Component root) {
+        for (Container p = c.getParent(); p != null; p = p.getParent()) {
+            if (p == root)
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Sorts in walk order: the components of a container followed by the
+     * windows it owns.
+     */
+    private static void sort(final Component root, List<Component> found) {
+        if (found.size() < 2)
+            return;
+        final Map<Component, int[]> paths = new IdentityHashMap<Component, int[]>();
+        for (Component c : found) {
+            paths.put(c, getPath(c, root));
+        }
+        Collections.sort(found, new Comparator<Component>() {
+            @Override public int compare(Component o1, Component o2) {
+                int[] p1 = paths.get(o1);
+                int[] p2 = paths.get(o2);
+                for (int i = 0; i < p1.length && i < p2.length; i++) {
+                    if (p1[i] != p2[i])
+                        return p1[i] < p2[i] ? -1 : 1;
+                }
+                return p1.length - p2.length;
+            }
+        });
+    }
+
+    private static int[] getPath(Component c, Component root) {
+        List<Integer> path = new ArrayList<Integer>();
+        while (c != root) {
+            Container parent = c.getParent();
+            if (c instanceof Window) {
+                Window[] owned = ((Window) parent).getOwnedWindows();
+                int index = 0;
+                while (index < owned.length && owned[index] != c)
+                    index++;
+                path.add(parent.getComponentCount() + index);
+            } else
+                path.add(parent.getComponentZOrder(c));
+            c = parent;
+        }
+        int[] r = new int[path.size()];
+        for (int i = 0; i < r.length; i++)
+            r[i] = path.get(r.length - i - 1);
+        return r;
+    }
+
+    private static String getTag(Class<?> klass) {
+        String tag = tags.get(klass);
+        if (tag == null) {
+            tag = JavaElementPropertyAccessor.getTagName(klass);
+            tags.put(klass, tag);
+        }
+        return tag;
+    }
+
+    private static class Entry {
+        private String name;
+        private final Set<String> fieldNames = new LinkedHashSet<String>();
+    }
+
+    private final Window window;
+    private final boolean listen;
+    private final Map<Component, Entry> entries = new IdentityHashMap<Component, Entry>();
+    private final Map<Key, Map<Object, Set<Component>>> buckets = new EnumMap<Key, Map<Object, Set<Component>>>(Key.class);
+
+    private ComponentIndex(Window window, boolean listen) {
+        this.window = window;
+        this.listen = listen;
+        for (Key key : Key.values())
+            buckets.put(key, new HashMap<Object, Set<Component>>());
+        addTree(window);
+    }
+
+    private Set<Component> get(Key key, Object value) {
+        Set<Component> bucket = buckets.get(key).get(value);
+        if (bucket == null)
+            return Collections.emptySet();
+        return bucket;
+    }
+
+    private void addTree(Component root) {
+        List<Component> added = new ArrayList<Component>();
+        collect(root, added);
+        Map<Component, Boolean> addedSet = new IdentityHashMap<Component, Boolean>();
+        for (Component c : added) {
+            Entry entry = new Entry();
+            entry.name = c.getName();
+            entries.put(c, entry);
+            addedSet.put(c, Boolean.TRUE);
+            put(Key.TAG, getTag(c.getClass()), c);
+            put(Key.CLASS, c.getClass(), c);
+            if (entry.name != null)
+                put(Key.NAME, entry.name, c);
+            if (listen)
+                c.addPropertyChangeListener("name", nameListener);
+        }
+        for (Component c : added) {
+            if (c instanceof Container)
+                addFieldNames((Container) c, addedSet);
+        }
+        if (root != window) {
+            for (Container p = root.getParent(); p != null; p = p.getParent()) {
+                addFieldNames(p, addedSet);
+                if (p == window)
+                    break;
+            }
+        }
+    }
+
+    private void resolveFieldNames() {
+        for (Component c : new ArrayList<Component>(entries.keySet())) {
+            if (c instanceof Container)
+                addFieldNames((Container) c, entries);
+        }
+    }
+
+    private void collect(Component c, List<Component> added) {
+        added.add(c);
+        if (c instanceof Container) {
+            for (Component child : ((Container) c).getComponents())
+                collect(child, added);
+        }
+    }
+
+    /*
+     * Same as JavaElementPropertyAccessor#getFieldNames - only the fields
+     * declared by the container class are considered.
+     */
+    private void addFieldNames(Container container, Map<Component, ?> added) {
+        Field[] declaredFields;
+        try {
+            declaredFields = container.getClass().getDeclaredFields();
+        } catch (Throwable t) {
+            return;
+        }
+        for (Field field : declaredFields) {
+            if (!Component.class.isAssignableFrom(field.getType()))
+                continue;
+            boolean accessible = field.isAccessible();
+            try {
+                field.setAccessible(true);
+                Object o = field.get(container);
+                if (o != container && added.containsKey(o) && isDescendant((Component) o, container)) {
+                    entries.get(o).fieldNames.add(field.getName());
+                    put(Key.FIELD_NAME, field.getName(), (Component) o);
+                }
+            } catch (Throwable t) {
+            } finally {
+                try {
+                    field.setAccessible(accessible);
+                } catch (Throwable t) {
+                }
+            }
+        }
+    }
+
+    private void removeTree(Component root) {
+        Entry entry = entries.remove(root);
+        if (entry == null)
+            return;
+        remove(Key.TAG, getTag(root.getClass()), root);
+        remove(Key.CLASS, root.getClass(), root);
+        if (entry.name != null)
+            remove(Key.NAME, entry.name, root);
+        for (String fieldName : entry.fieldNames)
+            remove(Key.FIELD_NAME, fieldName, root);
+        if (listen)
+            root.removePropertyChangeListener("name", nameListener);
+        if (root instanceof Container) {
+            for (Component child : ((Container) root).getComponents())
+                removeTree(child);
+        }
+    }
+
+    private void rename(Component c, String newName) {
+        Entry entry = entries.get(c);
+        if (entry == null)
+            return;
+        if (entry.name != null)
+            remove(Key.NAME, entry.name, c);
+        entry.name = newName;
+        if (newName != null)
+            put(Key.NAME, newName, c);
+    }
+
+    private void dispose() {
+        for (Component c : entries.keySet())
+            c.removePropertyChangeListener("name", nameListener);
+        entries.clear();
+        buckets.clear();
+    }
+
+    private void put(Key key, Object value, Component c) {
+        Map<Object, Set<Component>> map = buckets.get(key);
+        Set<Component> bucket = map.get(value);
+        if (bucket == null) {
+            bucket = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+            map.put(value, bucket);
+        }
+        bucket.add(c);
+    }
+
+    private void remove(Key key, Object value, Component c) {
+        Map<Object, Set<Component>> map = buckets.get(key);
+        Set<Component> bucket = map.get(value);
+        if (bucket != null && bucket.remove(c) && bucket.isEmpty())
+            map.remove(value);
+    }
+}
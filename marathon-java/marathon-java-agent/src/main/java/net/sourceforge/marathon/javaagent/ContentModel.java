@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The content of a component as a table of strings - the same table that the
+ * <code>content</code> attribute gives.
+ *
+ * Supports reading a part of the content and comparing the content with
+ * expected values cell by cell, without creating the whole table. Lists and
+ * trees have a single row with each item in a column.
+ */
+public abstract class ContentModel {
+
+    public static final int DIFF_LIMIT = Integer.parseInt(System.getProperty("marathon.content.diff.limit", "100"));
+
+    public abstract int getRowCount();
+
+    public abstract int getColumnCount();
+
+    public abstract String getValueAt(int row, int column);
+
+    /**
+     * Gets the values of the given columns of a row. Override when the value
+     * of a cell depends on the cells before it.
+     */
+    public String[] getRow(int row, int[] columns) {
+        String[] values = new String[columns.length];
+        for (int i = 0; i < columns.length; i++)
+            values[i] = getValueAt(row, columns[i]);
+        return values;
+    }
+
+    /**
+     * Whether the items of the component are rows (tables) or columns (lists
+     * and trees). Changes are tracked by item.
+     */
+    public boolean isRowMajor() {
+        return true;
+    }
+
+    /**
+     * Gets a part of the content.
+     *
+     * The query can have <code>rows</code> and <code>columns</code>, either
+     * an array of indices or <code>{from, to}</code> (to is exclusive). The
+     * whole range is used when missing.
+     *
+     * @param changed
+     *            when not null only the items with these indices are included
+     */
+    public JSONObject getContent(JSONObject query, long version, Set<Integer> changed) {
+        int[] rows = getIndices(query.opt("rows"), getRowCount());
+        int[] columns = getIndices(query.opt("columns"), getColumnCount());
+        if (changed != null) {
+            if (isRowMajor())
+                rows = retain(rows, changed);
+            else
+                columns = retain(columns, changed);
+        }
+        JSONArray values = new JSONArray();
+        if (columns.length > 0) {
+            for (int row : rows)
+                values.put(new JSONArray(getRow(row, columns)));
+        }
+        JSONObject r = new JSONObject();
+        r.put("version", version).put("rowCount", getRowCount()).put("columnCount", getColumnCount());
+        r.put("rows", new JSONArray(rows)).put("columns", new JSONArray(columns)).put("values", values);
+        return r;
+    }
+
+    /**
+     * Compares the content with the expected values. A <code>null</code> in
+     * the expected values matches any value of a cell that exists. A cell
+     * that is only in the expected values or only in the content is always a
+     * difference, as is a row that is missing on either side.
+     *
+     * @return an object with <code>equal</code>, the number of
+     *         <code>differences</code> and at most <code>limit</code> of them
+     *         in <code>diff</code> as <code>{row, column, expected, actual}</code>
+     */
+    public JSONObject diff(JSONArray expected, int limit) {
+        int rowCount = getRowCount();
+        int columnCount = getColumnCount();
+        int[] all = getIndices(null, columnCount);
+        JSONArray diff = new JSONArray();
+        int differences = 0;
+        for (int row = 0; row < Math.max(rowCount, expected.length()); row++) {
+            JSONArray expectedRow = row < expected.length() ? expected.optJSONArray(row) : null;
+            int expectedColumns = expectedRow == null ? 0 : expectedRow.length();
+            String[] actualRow = row < rowCount ? getRow(row, all) : new String[0];
+            int columns = Math.max(actualRow.length, expectedColumns);
+            if (columns == 0 && (row >= rowCount || row >= expected.length())) {
+                if (differences++ < limit)
+                    diff.put(new JSONObject().put("row", row).put("column", 0).put("expected", JSONObject.NULL).put("actual",
+                            JSONObject.NULL));
+                continue;
+            }
+            for (int column = 0; column < columns; column++) {
+                boolean inBounds = column < expectedColumns && column < actualRow.length;
+                if (inBounds && expectedRow.isNull(column))
+                    continue;
+                String e = column < expectedColumns && !expectedRow.isNull(column) ? expectedRow.get(column).toString() : null;
+                String a = column < actualRow.length ? actualRow[column] : null;
+                if (inBounds && e.equals(a))
+                    continue;
+                if (differences++ < limit)
+                    diff.put(new JSONObject().put("row", row).put("column", column).put("expected", e == null ? JSONObject.NULL : e)
+                            .put("actual", a == null ? JSONObject.NULL : a));
+            }
+        }
+        JSONObject r = new JSONObject();
+        r.put("equal", differences == 0).put("rowCount", rowCount).put("columnCount", columnCount);
+        return r.put("differences", differences).put("diff", diff);
+    }
+
+    private static int[] getIndices(Object spec, int size) {
+        List<Integer> indices = new ArrayList<Integer>();
+        if (spec instanceof JSONArray) {
+            JSONArray a = (JSONArray) spec;
+            for (int i = 0; i < a.length(); i++) {
+                int index = a.getInt(i);
+                if (index >= 0 && index < size)
+                    indices.add(index);
+            }
+        } else {
+            int from = 0;
+            int to = size;
+            if (spec instanceof JSONObject) {
+                from = Math.max(0, ((JSONObject) spec).optInt("from", 0));
+                to = Math.min(size, ((JSONObject) spec).optInt("to", size));
+            }
+            for (int i = from; i < to; i++)
+                indices.add(i);
+        }
+        return toArray(indices);
+    }
+
+    private static int[] retain(int[] indices, Set<Integer> retain) {
+        List<Integer> retained = new ArrayList<Integer>();
+        for (int index : indices) {
+            if (retain.contains(index))
+                retained.add(index);
+        }
+        return toArray(retained);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] a = new int[list.size()];
+        for (int i = 0; i < a.length; i++)
+            a[i] = list.get(i);
+        return a;
+    }
+
+    /**
+     * Creates a model from the value of a <code>content</code> attribute.
+     */
+    public static ContentModel create(final JSONArray content) {
+        return new ContentModel() {
+            @Override public int getRowCount() {
+                return content.length();
+            }
+
+            @Override public int getColumnCount() {
+                int columns = 0;
+                for (int i = 0; i < content.length(); i++)
+                    columns = Math.max(columns, content.getJSONArray(i).length());
+                return columns;
+            }
+
+            @Override public String getValueAt(int row, int column) {
+                JSONArray r = content.getJSONArray(row);
+                if (column >= r.length() || r.isNull(column))
+                    return null;
+                return r.get(column).toString();
+            }
+        };
+    }
+}
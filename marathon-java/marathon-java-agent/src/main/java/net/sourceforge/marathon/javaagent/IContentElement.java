@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import org.json.JSONObject;
+
+/**
+ * An element with a large content that can be read in parts.
+ */
+public interface IContentElement {
+
+    /**
+     * Gets a part of the content as given by
+     * {@link ContentModel#getContent(JSONObject, long, java.util.Set)}. When
+     * the query has <code>since</code> (a version returned by an earlier call)
+     * only the items changed after that version are included. If the changes
+     * are not known, the requested range is returned with <code>reset</code>
+     * set.
+     */
+    public JSONObject getContent(JSONObject query);
+
+    /**
+     * Compares the content with <code>expected</code> in the query and returns
+     * the differences as given by {@link ContentModel#diff(org.json.JSONArray, int)}.
+     */
+    public JSONObject assertContent(JSONObject query);
+
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+import sun.awt.AppContext;
+
+/**
+ * Waits for the application to become idle after an action.
+ *
+ * The application is idle when the event queue is empty, no
+ * {@link SwingWorker} is running or queued, and no one-shot {@link Timer} is
+ * due within {@link #TIMER_HORIZON} milliseconds. Repeating timers (caret
+ * blink, animations) are ignored. The wait is bounded by {@link #IDLE_TIMEOUT}
+ * - after that the action is considered done anyway and the workers still
+ * running are not waited for again. Workers started later are.
+ */
+public class IdleDetector {
+
+    private static final Logger logger = Logger.getLogger(IdleDetector.class.getName());
+
+    public static final long IDLE_TIMEOUT = Long.parseLong(System.getProperty("marathon.idle.timeout", "2000"));
+    public static final long TIMER_HORIZON = Long.parseLong(System.getProperty("marathon.idle.timer.horizon", "200"));
+    private static final long POLL_INTERVAL = 10;
+
+    private static boolean timerQueueInitialized;
+    private static Method sharedInstance;
+    private static Field queueField;
+    private static Method getTimer;
+
+    // Number of tasks of each SwingWorker executor that were still running
+    // when a wait timed out
+    private static final Map<ThreadPoolExecutor, Long> abandoned = new WeakHashMap<ThreadPoolExecutor, Long>();
+
+    public static void waitTillIdle() {
+        long end = System.currentTimeMillis() + IDLE_TIMEOUT;
+        EventQueueWait.empty();
+        while (isBusy()) {
+            if (System.currentTimeMillis() >= end) {
+                abandonWorkers();
+                return;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            EventQueueWait.empty();
+        }
+    }
+
+    private static boolean isBusy() {
+        return hasRunningWorkers() || hasPendingTimers();
+    }
+
+    private static boolean hasRunningWorkers() {
+        Set<AppContext> appContexts = AppContext.getAppContexts();
+        for (AppContext appContext : appContexts) {
+            Object executor = appContext.get(SwingWorker.class);
+            if (executor instanceof ThreadPoolExecutor) {
+                ThreadPoolExecutor tpe = (ThreadPoolExecutor) executor;
+                long outstanding = getOutstanding(tpe);
+                if (outstanding > getAbandoned(tpe, outstanding))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getOutstanding(ThreadPoolExecutor tpe) {
+        return tpe.getTaskCount() - tpe.getCompletedTaskCount();
+    }
+
+    /**
+     * Returns how many of the outstanding tasks are ones that were given up
+     * on. Once fewer tasks are outstanding, those that finished can only have
+     * been abandoned ones, so the count shrinks with them. The executor
+     * doesn't tell which task finished, so a new task that starts as an
+     * abandoned one finishes between two checks is not waited for.
+     */
+    private static synchronized long getAbandoned(ThreadPoolExecutor tpe, long outstanding) {
+        Long count = abandoned.get(tpe);
+        if (count == null)
+            return 0;
+        if (outstanding < count) {
+            if (outstanding == 0)
+                abandoned.remove(tpe);
+            else
+                abandoned.put(tpe, outstanding);
+            return outstanding;
+        }
+        return count;
+    }
+
+    private static synchronized void abandonWorkers() {
+        Set<AppContext> appContexts = AppContext.getAppContexts();
+        for (AppContext appContext : appContexts) {
+            Object executor = appContext.get(SwingWorker.class);
+            if (executor instanceof ThreadPoolExecutor) {
+                ThreadPoolExecutor tpe = (ThreadPoolExecutor) executor;
+                long outstanding = getOutstanding(tpe);
+                if (outstanding > 0) {
+                    logger.info("Not waiting for " + outstanding + " SwingWorker task(s) that are still running after "
+                            + IDLE_TIMEOUT + "ms");
+                    abandoned.put(tpe, outstanding);
+                }
+            }
+        }
+    }
+
+    private static boolean hasPendingTimers() {
+        if (!initTimerQueue())
+            return false;
+        try {
+            Object timerQueue = sharedInstance.invoke(null);
+            Iterable<?> queue = (Iterable<?>) queueField.get(timerQueue);
+            for (Object delayedTimer : queue) {
+                Timer timer = (Timer) getTimer.invoke(delayedTimer);
+                if (!timer.isRepeats() && ((Delayed) delayedTimer).getDelay(TimeUnit.MILLISECONDS) <= TIMER_HORIZON)
+                    return true;
+            }
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Unable to inspect the Swing timer queue", e);
+            sharedInstance = null;
+        }
+        return false;
+    }
+
+    /**
+     * The timer queue is internal to Swing (javax.swing.TimerQueue, Java 7
+     * onwards). If it can't be accessed, timers are not watched.
+     */
+    private static synchronized boolean initTimerQueue() {
+        if (!timerQueueInitialized) {
+            timerQueueInitialized = true;
+            try {
+                Class<?> timerQueueClass = Class.forName("javax.swing.TimerQueue");
+                Method m = timerQueueClass.getDeclaredMethod("sharedInstance");
+                m.setAccessible(true);
+                queueField = timerQueueClass.getDeclaredField("queue");
+                queueField.setAccessible(true);
+                getTimer = Class.forName("javax.swing.TimerQueue$DelayedTimer").getDeclaredMethod("getTimer");
+                getTimer.setAccessible(true);
+                sharedInstance = m;
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Swing timers will not be watched for idle detection", e);
+            }
+        }
+        return sharedInstance != null;
+    }
+}
@@ -15,14 +15,8 @@
  *******************************************************************************/
 package net.sourceforge.marathon.javaagent;
 
-import java.awt.AWTException;
 import java.awt.Component;
-import java.awt.Dimension;
-import java.awt.Rectangle;
-import java.awt.Robot;
 import java.awt.Window;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -31,8 +25,6 @@ import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 
-import javax.imageio.ImageIO;
-
 import net.sourceforge.marathon.javaagent.Device.Type;
 import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
 import net.sourceforge.marathon.javaagent.css.FindByCssSelector;
@@ -340,21 +332,8 @@ public class JavaAgent implements IJavaAgent {
      * @see net.sourceforge.marathon.javaagent.IJavaAgent#getScreenShot()
      */
     @Override public byte[] getScreenShot() throws IOException {
-        BufferedImage bufferedImage;
         Window window = targetLocator.getTopContainer().getWindow();
-        try {
-            Dimension windowSize = window.getSize();
-            Robot robot = new Robot();
-            bufferedImage = robot
-                    .createScreenCapture(new Rectangle(window.getX(), window.getY(), windowSize.width, windowSize.height));
-        } catch (AWTException e) {
-            Rectangle rec = window.getBounds();
-            bufferedImage = new BufferedImage(rec.width, rec.height, BufferedImage.TYPE_INT_ARGB);
-            window.paint(bufferedImage.getGraphics());
-        }
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(bufferedImage, "png", baos);
-        return baos.toByteArray();
+        return ScreenCapture.encode(ScreenCapture.capture(window, null), "png");
     }
 
     /*
@@ -17,7 +17,11 @@ package net.sourceforge.marathon.javaagent;
 
 import java.awt.Component;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.JColorChooser;
 import javax.swing.JComboBox;
@@ -71,9 +75,7 @@ public class JavaElementFactory {
         if (klass == null)
             return new JavaElement(component, driver, window);
         try {
-            Constructor<? extends IJavaElement> constructor = klass.getConstructor(Component.class, IJavaAgent.class,
-                    JWindow.class);
-            IJavaElement newInstance = constructor.newInstance(component, driver, window);
+            IJavaElement newInstance = getConstructor(klass).newInstance(component, driver, window);
             return newInstance;
         } catch (Exception e) {
             throw new RuntimeException("createElement failed", e);
@@ -105,6 +107,14 @@ public class JavaElementFactory {
 
     private static LinkedList<IJavaElementFinder> entries = new LinkedList<IJavaElementFinder>();
 
+    /*
+     * The finders that can match a component class, in the order they are
+     * tried. Cleared whenever a finder is added.
+     */
+    private static final Map<Class<?>, IJavaElementFinder[]> finders = new ConcurrentHashMap<Class<?>, IJavaElementFinder[]>();
+
+    private static final Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
     static {
         reset();
     }
@@ -134,7 +144,7 @@ public class JavaElementFactory {
     }
 
     public static Class<? extends IJavaElement> get(Component component) {
-        for (IJavaElementFinder entry : entries) {
+        for (IJavaElementFinder entry : getFinders(component.getClass())) {
             Class<? extends IJavaElement> k = entry.get(component);
             if (k != null)
                 return k;
@@ -147,6 +157,40 @@ public class JavaElementFactory {
     }
 
     public static void add(IJavaElementFinder e) {
-        entries.addFirst(e);
+        synchronized (entries) {
+            entries.addFirst(e);
+            finders.clear();
+        }
+    }
+
+    /*
+     * Instance checks are resolved once per component class. Other finders
+     * are always tried since they may look at the component itself.
+     */
+    private static IJavaElementFinder[] getFinders(Class<?> componentKlass) {
+        IJavaElementFinder[] r = finders.get(componentKlass);
+        if (r != null)
+            return r;
+        synchronized (entries) {
+            List<IJavaElementFinder> matching = new ArrayList<IJavaElementFinder>();
+            for (IJavaElementFinder entry : entries) {
+                if (!(entry instanceof InstanceCheckFinder)
+                        || ((InstanceCheckFinder) entry).componentKlass.isAssignableFrom(componentKlass))
+                    matching.add(entry);
+            }
+            r = matching.toArray(new IJavaElementFinder[matching.size()]);
+            finders.put(componentKlass, r);
+        }
+        return r;
+    }
+
+    @SuppressWarnings("unchecked") private static Constructor<? extends IJavaElement> getConstructor(
+            Class<? extends IJavaElement> klass) throws NoSuchMethodException {
+        Constructor<? extends IJavaElement> constructor = (Constructor<? extends IJavaElement>) constructors.get(klass);
+        if (constructor == null) {
+            constructor = klass.getConstructor(Component.class, IJavaAgent.class, JWindow.class);
+            constructors.put(klass, constructor);
+        }
+        return constructor;
     }
 }
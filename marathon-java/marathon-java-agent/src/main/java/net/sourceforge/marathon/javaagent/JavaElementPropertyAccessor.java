@@ -46,6 +46,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.AbstractButton;
 import javax.swing.Box.Filler;
@@ -65,6 +66,7 @@ import javax.swing.JTabbedPane;
 import javax.swing.JTable;
 import javax.swing.JToggleButton;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
 import javax.swing.table.JTableHeader;
 
@@ -146,31 +148,38 @@ public class JavaElementPropertyAccessor {
      * net.sourceforge.marathon.javaagent.IJavaElement#getAttributeObject(java
      * .lang.String)
      */
-    public Object getAttributeObject(Object component, String name) {
-        String isMethod = getIsMethod(name);
+    public Object getAttributeObject(final Object component, final String name) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return EventQueueWait.exec(new Callable<Object>() {
+                @Override public Object call() throws Exception {
+                    return getAttributeObject(component, name);
+                }
+            });
+        }
+        Accessor accessor = Accessor.get(component.getClass(), name);
         Object o = null;
-        try {
-            o = EventQueueWait.call(component, isMethod);
-        } catch (Throwable e) {
-            if (!(e instanceof NoSuchMethodException))
+        if (accessor.isMethod != null) {
+            try {
+                o = accessor.isMethod.invoke(component);
+            } catch (Throwable e) {
                 return null;
+            }
         }
         try {
-            if (o == null) {
-                String getMethod = getGetMethod(name);
-                o = EventQueueWait.call(component, getMethod);
+            if (o == null && accessor.getMethod != null) {
+                o = accessor.getMethod.invoke(component);
             }
         } catch (Throwable e) {
         }
         try {
-            if (o == null) {
-                o = EventQueueWait.call(component, name);
+            if (o == null && accessor.method != null) {
+                o = accessor.method.invoke(component);
             }
         } catch (Throwable e) {
         }
         try {
-            if (o == null) {
-                o = getFieldValue(component, name);
+            if (o == null && accessor.field != null) {
+                o = accessor.field.get(component);
             }
         } catch (Throwable e) {
         }
@@ -193,37 +202,70 @@ public class JavaElementPropertyAccessor {
         return o;
     }
 
-    private Object getFieldValue(Object component, String name) {
-        Field f = null;
-        Class<? extends Object> klass = component.getClass();
-        while (f == null && klass != null) {
+    /**
+     * The ways to read an attribute from objects of a class: the is/get
+     * methods, a method with the attribute name and a field. Resolved once per
+     * class and attribute name - a null member means there is no such member.
+     */
+    private static class Accessor {
+
+        private static final Map<Class<?>, Map<String, Accessor>> cache = new ConcurrentHashMap<Class<?>, Map<String, Accessor>>();
+
+        private final Method isMethod;
+        private final Method getMethod;
+        private final Method method;
+        private final Field field;
+
+        private Accessor(Class<?> klass, String name) {
+            isMethod = findMethod(klass, getIsMethod(name));
+            getMethod = findMethod(klass, getGetMethod(name));
+            method = findMethod(klass, name);
+            field = findField(klass, name);
+        }
+
+        public static Accessor get(Class<?> klass, String name) {
+            Map<String, Accessor> byName = cache.get(klass);
+            if (byName == null) {
+                byName = new ConcurrentHashMap<String, Accessor>();
+                cache.put(klass, byName);
+            }
+            Accessor accessor = byName.get(name);
+            if (accessor == null) {
+                accessor = new Accessor(klass, name);
+                byName.put(name, accessor);
+            }
+            return accessor;
+        }
+
+        private static Method findMethod(Class<?> klass, String name) {
             try {
-                f = klass.getDeclaredField(name);
-            } catch (SecurityException e) {
+                return klass.getMethod(name);
+            } catch (Throwable e) {
                 return null;
-            } catch (NoSuchFieldException e) {
-                klass = klass.getSuperclass();
             }
         }
-        if (f == null)
+
+        private static Field findField(Class<?> klass, String name) {
+            while (klass != null) {
+                try {
+                    Field f = klass.getDeclaredField(name);
+                    f.setAccessible(true);
+                    return f;
+                } catch (NoSuchFieldException e) {
+                    klass = klass.getSuperclass();
+                } catch (Throwable e) {
+                    return null;
+                }
+            }
             return null;
-        boolean accessible = f.isAccessible();
-        try {
-            f.setAccessible(true);
-            return f.get(component);
-        } catch (IllegalArgumentException e) {
-        } catch (IllegalAccessException e) {
-        } finally {
-            f.setAccessible(accessible);
         }
-        return null;
     }
 
-    private String getIsMethod(String name) {
+    private static String getIsMethod(String name) {
         return "is" + name.substring(0, 1).toUpperCase() + name.substring(1);
     }
 
-    private String getGetMethod(String name) {
+    private static String getGetMethod(String name) {
         return "get" + name.substring(0, 1).toUpperCase() + name.substring(1);
     }
 
@@ -235,17 +277,8 @@ public class JavaElementPropertyAccessor {
      * .String)
      */
     public boolean hasAttribue(String name) {
-        return hasMethod(getIsMethod(name)) || hasMethod(getGetMethod(name));
-    }
-
-    private boolean hasMethod(String name) {
-        try {
-            component.getClass().getMethod(name);
-            return true;
-        } catch (SecurityException e) {
-        } catch (NoSuchMethodException e) {
-        }
-        return false;
+        Accessor accessor = Accessor.get(component.getClass(), name);
+        return accessor.isMethod != null || accessor.getMethod != null;
     }
 
     /*
@@ -358,8 +391,14 @@ public class JavaElementPropertyAccessor {
      * @see net.sourceforge.marathon.javaagent.IJavaElement#getTagName()
      */
     public String getTagName() {
-        Class<?> javaClass = findJavaClass();
-        Class<?> c = javaClass;
+        Class<?> c = component.getClass();
+        if (this instanceof IPseudoElement)
+            c = ((IPseudoElement) this).getPseudoComponent().getClass();
+        return getTagName(c);
+    }
+
+    public static String getTagName(Class<?> componentClass) {
+        Class<?> c = findJavaClass(componentClass);
         String simpleName = c.getSimpleName();
         while ("".equals(simpleName)) {
             c = c.getSuperclass();
@@ -368,7 +407,7 @@ public class JavaElementPropertyAccessor {
         return hyphenated(c);
     }
 
-    private String hyphenated(Class<?> klass) {
+    private static String hyphenated(Class<?> klass) {
         String r = klass.getSimpleName();
         if ((klass.getPackage().getName().equals("javax.swing") || klass.getPackage().getName().startsWith("javax.swing."))
                 && r.charAt(0) == 'J') {
@@ -377,10 +416,7 @@ public class JavaElementPropertyAccessor {
         return r.substring(0, 1).toLowerCase() + r.substring(1).replaceAll("[A-Z][A-Z]*", "-$0").toLowerCase();
     }
 
-    private Class<?> findJavaClass() {
-        Class<?> c = component.getClass();
-        if (this instanceof IPseudoElement)
-            c = ((IPseudoElement) this).getPseudoComponent().getClass();
+    private static Class<?> findJavaClass(Class<?> c) {
         while (c.getPackage() == null
                 || (!c.getPackage().getName().startsWith("java.awt") && !c.getPackage().getName().startsWith("javax.swing")))
             c = c.getSuperclass();
@@ -454,8 +490,12 @@ public class JavaElementPropertyAccessor {
         return allComponents;
     }
 
+    private static boolean isShowing(Component c) {
+        return c.isVisible() && c.isShowing();
+    }
+
     private void fillUp(List<Component> allComponents, Component c) {
-        if (!c.isVisible() || !c.isShowing())
+        if (!isShowing(c))
             return;
         allComponents.add(c);
         if (c instanceof Container) {
@@ -532,6 +572,22 @@ public class JavaElementPropertyAccessor {
     }
 
     public int getIndexOfType() {
+        Component top = getTopWindow(component);
+        List<Component> sameType = top == null ? null : ComponentIndex.find(top, ComponentIndex.Key.CLASS, component.getClass());
+        if (sameType != null) {
+            if (!isShowing(top))
+                return -1;
+            if (top == component)
+                return 0;
+            int index = top.getClass().equals(component.getClass()) ? 1 : 0;
+            for (Component c : sameType) {
+                if (c == component)
+                    return index;
+                if (isShowing(c))
+                    index++;
+            }
+            return -1;
+        }
         List<Component> allComponents = findAllComponents();
         int index = 0;
         Class<? extends Component> klass = component.getClass();
@@ -701,18 +757,54 @@ public class JavaElementPropertyAccessor {
     }
 
     public Map<String, String> findURP(List<List<String>> rp) {
-        List<Component> allComponents = findAllComponents();
-        allComponents.remove(this.component);
+        List<Component> allComponents = null;
         for (List<String> list : rp) {
             Map<String, String> rpValues = findValues(list);
             if (rpValues == null)
                 continue;
-            if (!hasAComponentsByRP(allComponents, rpValues))
+            List<Component> candidates = findCandidates(rpValues);
+            if (candidates == null) {
+                if (allComponents == null) {
+                    allComponents = findAllComponents();
+                    allComponents.remove(this.component);
+                }
+                candidates = allComponents;
+            }
+            if (!hasAComponentsByRP(candidates, rpValues))
                 return rpValues;
         }
         return findValues(LAST_RESORT_RECOGNITION_PROPERTIES);
     }
 
+    /*
+     * The other showing components that share an indexed property with the
+     * given values. Null if none of the properties is indexed.
+     */
+    private List<Component> findCandidates(Map<String, String> rpValues) {
+        Component top = getTopWindow(component);
+        if (top == null)
+            return null;
+        List<Component> found;
+        if (rpValues.containsKey("name"))
+            found = ComponentIndex.find(top, ComponentIndex.Key.NAME, rpValues.get("name"));
+        else if (rpValues.containsKey("fieldName"))
+            found = ComponentIndex.find(top, ComponentIndex.Key.FIELD_NAME, rpValues.get("fieldName"));
+        else if (rpValues.containsKey("tagName"))
+            found = ComponentIndex.find(top, ComponentIndex.Key.TAG, rpValues.get("tagName"));
+        else
+            return null;
+        if (found == null)
+            return null;
+        List<Component> candidates = new ArrayList<Component>();
+        if (top != component && isShowing(top))
+            candidates.add(top);
+        for (Component c : found) {
+            if (c != component && isShowing(c))
+                candidates.add(c);
+        }
+        return candidates;
+    }
+
     private Map<String, String> findValues(List<String> list) {
         Map<String, String> rpValues = new HashMap<String, String>();
         for (String attribute : list) {
@@ -16,24 +16,28 @@
 package net.sourceforge.marathon.javaagent;
 
 import java.awt.Component;
-import java.awt.Container;
 import java.awt.Dialog;
 import java.awt.Dimension;
 import java.awt.Frame;
 import java.awt.KeyboardFocusManager;
 import java.awt.Point;
 import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.UnsupportedEncodingException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.net.URLDecoder;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.Vector;
+import java.util.UUID;
+import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
 
 import javax.swing.JDialog;
@@ -44,37 +48,132 @@ import javax.swing.JOptionPane;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import sun.awt.AppContext;
-
 public class JavaTargetLocator {
 
+    /**
+     * The element handles given out for a window.
+     *
+     * Components and elements are held through weak references, so a handle
+     * does not keep a discarded component tree alive. Entries of collected
+     * components are reclaimed on every access. Each entry records the
+     * generation of the map when it was created - invalidating the map bumps
+     * the generation and makes all existing handles stale.
+     */
     public static class ElementMap {
-        private Map<String, IJavaElement> elements = new HashMap<String, IJavaElement>();
+        private static final int MAX_COLLECTED = 1024;
+
+        private static class Entry extends WeakReference<Component> {
+            private final UUID id;
+            private final int generation;
+            private WeakReference<IJavaElement> element;
+
+            public Entry(UUID id, Component component, IJavaElement element, int generation, ReferenceQueue<Component> queue) {
+                super(component, queue);
+                this.id = id;
+                this.generation = generation;
+                this.element = new WeakReference<IJavaElement>(element);
+            }
+        }
+
+        private final Map<String, Entry> elements = new HashMap<String, Entry>();
+        private final Map<Component, Entry> components = new WeakHashMap<Component, Entry>();
+        private final ReferenceQueue<Component> queue = new ReferenceQueue<Component>();
+        private int generation;
+
+        /**
+         * Handles of the collected components. Lets a lookup of such a handle
+         * fail as stale instead of as unknown. Only the latest ones are kept.
+         */
+        @SuppressWarnings("serial") private final Map<String, Boolean> collected = new LinkedHashMap<String, Boolean>() {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_COLLECTED;
+            }
+        };
+
+        public synchronized void put(Component component, IJavaElement je) {
+            expunge();
+            Entry entry = new Entry(je.getId(), component, je, generation, queue);
+            elements.put(entry.id.toString(), entry);
+            components.put(component, entry);
+        }
+
+        public synchronized UUID getId(Component component) {
+            Entry entry = components.get(component);
+            return entry == null ? null : entry.id;
+        }
+
+        public synchronized IJavaElement getElement(Component component) {
+            Entry entry = components.get(component);
+            return entry == null ? null : entry.element.get();
+        }
+
+        public synchronized void setElement(Component component, IJavaElement je) {
+            Entry entry = components.get(component);
+            if (entry != null)
+                entry.element = new WeakReference<IJavaElement>(je);
+        }
+
+        /**
+         * Returns the component for the given handle or null if the handle is
+         * not known.
+         *
+         * @throws StaleElementReferenceException
+         *             if the handle belongs to an earlier generation, the
+         *             component is collected or no longer displayable.
+         */
+        public synchronized Component getComponent(String id) {
+            Entry entry = elements.get(id);
+            if (entry == null) {
+                expunge();
+                if (collected.containsKey(id))
+                    throw new StaleElementReferenceException("Element is no longer attached to the window", null);
+                return null;
+            }
+            Component component = entry.get();
+            if (entry.generation != generation || component == null || !component.isDisplayable())
+                throw new StaleElementReferenceException("Element is no longer attached to the window", null);
+            return component;
+        }
+
+        public synchronized void invalidate() {
+            generation++;
+            components.clear();
+        }
 
-        public void put(String id, IJavaElement je) {
-            elements.put(id, je);
+        public synchronized int size() {
+            expunge();
+            return elements.size();
         }
 
-        public IJavaElement get(String id) {
-            return elements.get(id);
+        private void expunge() {
+            Reference<? extends Component> ref;
+            while ((ref = queue.poll()) != null) {
+                Entry entry = (Entry) ref;
+                if (elements.get(entry.id.toString()) == entry) {
+                    elements.remove(entry.id.toString());
+                    collected.put(entry.id.toString(), Boolean.TRUE);
+                }
+            }
         }
     }
 
     public class JWindow {
 
         private String currentWindowHandle;
-        private Window currentWindow;
+        private WeakReference<Window> currentWindow;
 
         private ElementMap elements = new ElementMap();
-        private Map<Component, IJavaElement> components = new HashMap<Component, IJavaElement>();
 
         private JWindow(Window window) {
-            currentWindow = window;
+            currentWindow = new WeakReference<Window>(window);
             currentWindowHandle = JavaTargetLocator.getWindowHandle(window);
         }
 
         public Window getWindow() {
-            return currentWindow;
+            Window window = currentWindow.get();
+            if (window == null)
+                throw new NoSuchWindowException("The window " + currentWindowHandle + " is no longer available", null);
+            return window;
         }
 
         public String getHandle() {
@@ -84,51 +183,53 @@ public class JavaTargetLocator {
         public String getTitle() {
             return EventQueueWait.exec(new Callable<String>() {
                 @Override public String call() throws Exception {
-                    return new WindowTitle(currentWindow).getTitle();
+                    return WindowRegistry.getTitle(getWindow());
                 }
             });
         }
 
         public void deleteWindow() {
-            EventQueueWait.call_noexc(currentWindow, "dispose");
+            EventQueueWait.call_noexc(getWindow(), "dispose");
         }
 
         public Dimension getSize() {
-            return EventQueueWait.call_noexc(currentWindow, "getSize");
+            return EventQueueWait.call_noexc(getWindow(), "getSize");
         }
 
         public Point getLocation() {
-            return EventQueueWait.call_noexc(currentWindow, "getLocation");
+            return EventQueueWait.call_noexc(getWindow(), "getLocation");
         }
 
         public void setSize(int width, int height) {
-            EventQueueWait.call_noexc(currentWindow, "setSize", width, height);
+            EventQueueWait.call_noexc(getWindow(), "setSize", width, height);
         }
 
         public void setLocation(int x, int y) {
-            EventQueueWait.call_noexc(currentWindow, "setLocation", x, y);
+            EventQueueWait.call_noexc(getWindow(), "setLocation", x, y);
         }
 
         public void maximize() {
-            if (currentWindow instanceof JFrame) {
-                EventQueueWait.call_noexc(currentWindow, "setExtendedState", JFrame.MAXIMIZED_BOTH);
+            if (getWindow() instanceof JFrame) {
+                EventQueueWait.call_noexc(getWindow(), "setExtendedState", JFrame.MAXIMIZED_BOTH);
             }
         }
 
         public IJavaElement addElement(IJavaElement je) {
             Component active = je instanceof IPseudoElement ? ((IPseudoElement) je).getParent().getComponent() : je.getComponent();
-            IJavaElement found = components.get(active);
-            if (found != null) {
-                je.setId(found.getId());
+            UUID id = elements.getId(active);
+            if (id != null) {
+                je.setId(id);
                 return je;
             }
             if (je instanceof IPseudoElement) {
-                elements.put(((IPseudoElement) je).getParent().createId(), ((IPseudoElement) je).getParent());
-                je.setId(((IPseudoElement) je).getParent().getId());
+                IJavaElement parent = ((IPseudoElement) je).getParent();
+                parent.createId();
+                elements.put(active, parent);
+                je.setId(parent.getId());
             } else {
-                elements.put(je.createId(), je);
+                je.createId();
+                elements.put(active, je);
             }
-            components.put(active, je instanceof IPseudoElement ? ((IPseudoElement) je).getParent() : je);
             return je;
         }
 
@@ -145,9 +246,15 @@ public class JavaTargetLocator {
                 info = id.substring(indexOf + 1);
                 id = idPart;
             }
-            IJavaElement e = elements.get(id);
-            if (e == null)
+            Component component = elements.getComponent(id);
+            if (component == null)
                 throw new NoSuchElementException("Could not find element for the given id in the topmost window", null);
+            IJavaElement e = elements.getElement(component);
+            if (e == null) {
+                e = JavaElementFactory.createElement(component, driver, this);
+                e.setId(UUID.fromString(id));
+                elements.setElement(component, e);
+            }
             if (info == null) {
                 return e;
             }
@@ -162,23 +269,39 @@ public class JavaTargetLocator {
         }
 
         public IJavaElement findElement(Component active) {
-            IJavaElement found = components.get(active);
+            IJavaElement found = elements.getElement(active);
             if (found == null) {
-                IJavaElement e = JavaElementFactory.createElement(active, driver, this);
-                elements.put(e.createId(), e);
-                components.put(active, e);
-                found = e;
+                found = JavaElementFactory.createElement(active, driver, this);
+                UUID id = elements.getId(active);
+                if (id != null) {
+                    found.setId(id);
+                    elements.setElement(active, found);
+                } else {
+                    found.createId();
+                    elements.put(active, found);
+                }
             }
             return found;
         }
 
         public IJavaElement findElementFromMap(Component active) {
-            return components.get(active);
+            return elements.getElement(active);
+        }
+
+        /**
+         * Makes all element handles of this window stale.
+         */
+        public void invalidate() {
+            elements.invalidate();
+        }
+
+        public int getElementCount() {
+            return elements.size();
         }
 
         public JSONObject getWindowProperties() {
             String title = getTitle();
-            String componentClassName = currentWindow.getClass().getName();
+            String componentClassName = getWindow().getClass().getName();
             String omapClassName = getOMapClassName();
             JSONObject object = new JSONObject();
             object.put("title", title).put("component.class.name", componentClassName).put("oMapClassName", omapClassName)
@@ -187,6 +310,7 @@ public class JavaTargetLocator {
         }
 
         public String getOMapClassName() {
+            Window currentWindow = getWindow();
             if (currentWindow instanceof Frame || currentWindow instanceof Window || currentWindow instanceof Dialog) {
                 String className = currentWindow.getClass().getName();
                 Package pkg = currentWindow.getClass().getPackage();
@@ -214,7 +338,7 @@ public class JavaTargetLocator {
 
     private IJavaAgent driver;
     private JWindow currentWindow;
-    private Map<Window, JWindow> windows = new HashMap<Window, JavaTargetLocator.JWindow>();
+    private Map<Window, JWindow> windows = Collections.synchronizedMap(new WeakHashMap<Window, JavaTargetLocator.JWindow>());
 
     public JavaTargetLocator(IJavaAgent driver) {
         this.driver = driver;
@@ -246,94 +370,32 @@ public class JavaTargetLocator {
     }
 
     private IJavaAgent window_internal(String nameOrHandleOrTitle) {
-        Window[] windows = getValidWindows();
-        for (Window window : windows) {
-            if (window.getName().equals(nameOrHandleOrTitle)) {
-                setCurrentWindow(window);
-                return driver;
-            }
-        }
-        for (Window window : windows) {
-            JWindow jw = new JWindow(window);
-            String title = jw.getTitle();
-            if (nameOrHandleOrTitle.startsWith("/") && !nameOrHandleOrTitle.startsWith("//")) {
-                if (title != null && title.matches(nameOrHandleOrTitle.substring(1))) {
-                    setCurrentWindow(window);
-                    return driver;
-                }
-            } else {
-                if (nameOrHandleOrTitle.startsWith("//")) {
-                    if (title != null && title.equals(nameOrHandleOrTitle.substring(1))) {
-                        setCurrentWindow(window);
-                        return driver;
-                    }
-                } else {
-                    if (title != null && title.equals(nameOrHandleOrTitle)) {
-                        setCurrentWindow(window);
-                        return driver;
-                    }
-                }
-            }
+        Window window = WindowRegistry.findByName(nameOrHandleOrTitle);
+        if (window == null) {
+            if (nameOrHandleOrTitle.startsWith("/") && !nameOrHandleOrTitle.startsWith("//"))
+                window = WindowRegistry.findByTitlePattern(nameOrHandleOrTitle.substring(1));
+            else if (nameOrHandleOrTitle.startsWith("//"))
+                window = WindowRegistry.findByTitle(nameOrHandleOrTitle.substring(1));
+            else
+                window = WindowRegistry.findByTitle(nameOrHandleOrTitle);
         }
-        for (Window window : windows) {
-            String handle = getWindowHandle(window);
-            if (nameOrHandleOrTitle.equals(handle)) {
-                setCurrentWindow(window);
-                return driver;
-            }
-        }
-        throw new NoSuchWindowException("Cannot find window: " + nameOrHandleOrTitle, null);
+        if (window == null)
+            window = WindowRegistry.findByHandle(nameOrHandleOrTitle);
+        if (window == null)
+            throw new NoSuchWindowException("Cannot find window: " + nameOrHandleOrTitle, null);
+        setCurrentWindow(window);
+        return driver;
     }
 
     public void deleteWindow() {
-        Window w = getTopContainer().getWindow();
-        windows.remove(w);
-        getTopContainer().deleteWindow();
+        JWindow top = getTopContainer();
+        windows.remove(top.getWindow());
+        top.invalidate();
+        top.deleteWindow();
     }
 
     private Window[] getValidWindows() {
-        List<Window> valid = new ArrayList<Window>();
-        Set<AppContext> appContexts = AppContext.getAppContexts();
-        for (AppContext appContext : appContexts) {
-            Window[] windows = getWindows(appContext);
-            for (Window window : windows) {
-                if (window.getClass().getName().equals("javax.swing.SwingUtilities$SharedOwnerFrame"))
-                    continue;
-                if (window.getClass().getName().equals("javax.swing.Popup$HeavyWeightWindow"))
-                    continue;
-                if (window.isVisible()) {
-                    valid.add(window);
-                }
-            }
-        }
-        return valid.toArray(new Window[valid.size()]);
-    }
-
-    private static Window[] getWindows(AppContext appContext) {
-        synchronized (Window.class) {
-            Window realCopy[];
-            @SuppressWarnings("unchecked")
-            Vector<WeakReference<Window>> windowList = (Vector<WeakReference<Window>>) appContext.get(Window.class);
-            if (windowList != null) {
-                int fullSize = windowList.size();
-                int realSize = 0;
-                Window fullCopy[] = new Window[fullSize];
-                for (int i = 0; i < fullSize; i++) {
-                    Window w = windowList.get(i).get();
-                    if (w != null) {
-                        fullCopy[realSize++] = w;
-                    }
-                }
-                if (fullSize != realSize) {
-                    realCopy = Arrays.copyOf(fullCopy, realSize);
-                } else {
-                    realCopy = fullCopy;
-                }
-            } else {
-                realCopy = new Window[0];
-            }
-            return realCopy;
-        }
+        return WindowRegistry.getWindows();
     }
 
     private void setCurrentWindow(Window window) {
@@ -341,13 +403,22 @@ public class JavaTargetLocator {
         if (jw == null) {
             jw = new JWindow(window);
             windows.put(window, jw);
+            window.addWindowListener(new WindowAdapter() {
+                @Override public void windowClosed(WindowEvent e) {
+                    Window w = e.getWindow();
+                    w.removeWindowListener(this);
+                    JWindow closed = windows.remove(w);
+                    if (closed != null)
+                        closed.invalidate();
+                }
+            });
         }
         currentWindow = jw;
         EventQueueWait.call_noexc(window, "toFront");
     }
 
-    private static String getWindowHandle(Container topContainer) {
-        return Integer.toHexString(System.identityHashCode(topContainer));
+    private static String getWindowHandle(Window window) {
+        return WindowRegistry.getHandle(window);
     }
 
     public String getTitle() {
@@ -415,12 +486,11 @@ public class JavaTargetLocator {
     }
 
     public JWindow getWindowForHandle(String windowHandle) {
-        Window[] windows = getValidWindows();
-        for (Window window : windows) {
-            if (windowHandle.equals(getWindowHandle(window)))
-                return new JWindow(window);
-        }
-        throw new NoSuchWindowException("No window found corresponding to the given window Handle", null);
+        Window window = WindowRegistry.findByHandle(windowHandle);
+        if (window == null)
+            throw new NoSuchWindowException("No window found corresponding to the given window Handle", null);
+        JWindow jw = this.windows.get(window);
+        return jw != null ? jw : new JWindow(window);
     }
 
     public IJavaElement findElement(String id) {
@@ -444,4 +514,18 @@ public class JavaTargetLocator {
         return getTopContainer().getWindowProperties();
     }
 
+    /**
+     * The number of windows and element handles currently held.
+     */
+    public JSONObject getRegistryStatus() {
+        int nelements = 0;
+        int nwindows;
+        synchronized (windows) {
+            nwindows = windows.size();
+            for (JWindow jw : windows.values())
+                nelements += jw.getElementCount();
+        }
+        return new JSONObject().put("windows", nwindows).put("elements", nelements);
+    }
+
 }
@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import java.awt.AWTException;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Robot;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Captures images of components and encodes them.
+ *
+ * A single {@link Robot} is shared by all captures. Encoding is done on a
+ * background thread and the encoded bytes are streamed to the caller as they
+ * are produced.
+ */
+public class ScreenCapture {
+
+    private static final Logger logger = Logger.getLogger(ScreenCapture.class.getName());
+
+    private static final long STREAM_TIMEOUT = Long.parseLong(System.getProperty("marathon.screenshot.timeout", "10000"));
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final byte[] EOF = new byte[0];
+    private static final byte[] ERROR = new byte[0];
+
+    private static Robot robot;
+    private static boolean robotFailed;
+
+    private static final ExecutorService encoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Marathon Screenshot Encoder");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static synchronized Robot getRobot() {
+        if (robot == null && !robotFailed) {
+            try {
+                if (!GraphicsEnvironment.isHeadless())
+                    robot = new Robot();
+            } catch (AWTException e) {
+                logger.log(Level.WARNING, "Unable to create robot, falling back to paint for screenshots", e);
+            } catch (SecurityException e) {
+                logger.log(Level.WARNING, "Unable to create robot, falling back to paint for screenshots", e);
+            }
+            robotFailed = robot == null;
+        }
+        return robot;
+    }
+
+    /**
+     * Captures an image of the component.
+     *
+     * @param component
+     *            the component to capture
+     * @param region
+     *            the region to capture in the component coordinates. If null,
+     *            the whole component is captured.
+     */
+    public static BufferedImage capture(final Component component, Rectangle region) {
+        Rectangle bounds = new Rectangle(0, 0, component.getWidth(), component.getHeight());
+        if (region != null)
+            bounds = bounds.intersection(region);
+        if (bounds.isEmpty())
+            throw new InvalidElementStateException("Nothing to capture: the region " + region + " is outside the component", null);
+        Robot r = getRobot();
+        if (r != null && component.isShowing()) {
+            Point location = component.getLocationOnScreen();
+            return r.createScreenCapture(new Rectangle(location.x + bounds.x, location.y + bounds.y, bounds.width, bounds.height));
+        }
+        final BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_RGB);
+        final Rectangle paintBounds = bounds;
+        EventQueueWait.exec(new Runnable() {
+            @Override public void run() {
+                Graphics2D g = image.createGraphics();
+                try {
+                    g.translate(-paintBounds.x, -paintBounds.y);
+                    component.paint(g);
+                } finally {
+                    g.dispose();
+                }
+            }
+        });
+        return image;
+    }
+
+    /**
+     * Encodes the image in the given format. Supported formats are
+     * <code>png</code>, <code>jpeg</code> and <code>bmp</code> (raw).
+     *
+     * @param compression
+     *            PNG compression level (0-9), or -1 for the writer default.
+     *            Honored only when the installed PNG writer supports it.
+     * @param quality
+     *            JPEG quality (0.0-1.0), or a negative value for the writer
+     *            default.
+     */
+    public static void encode(BufferedImage image, String format, int compression, float quality, OutputStream out)
+            throws IOException {
+        ImageWriter writer = getWriter(format);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            float q = -1;
+            if (isPNG(format) && compression >= 0)
+                q = 1.0f - Math.min(compression, 9) / 9.0f;
+            else if (isJPEG(format) && quality >= 0)
+                q = Math.min(quality, 1.0f);
+            if (q >= 0) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(q);
+            }
+        }
+        MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(out);
+        try {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            ios.close();
+        }
+    }
+
+    public static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        encode(image, format, -1, -1, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Encodes the image on the encoder thread. The returned stream gives the
+     * encoded bytes as they are produced.
+     *
+     * The call waits for the first chunk, so a failure before any data is
+     * produced is thrown from here. A later failure makes the stream's
+     * <code>read</code> throw an IOException.
+     */
+    public static InputStream encodeAsync(final BufferedImage image, final String format, final int compression,
+            final float quality) throws IOException {
+        getWriter(format).dispose();
+        final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(16);
+        final ChunkOutputStream out = new ChunkOutputStream(chunks);
+        encoder.execute(new Runnable() {
+            @Override public void run() {
+                try {
+                    encode(image, format, compression, quality, out);
+                    out.finish();
+                } catch (Throwable t) {
+                    logger.log(Level.WARNING, "Screenshot encoding failed", t);
+                    out.fail(t);
+                }
+            }
+        });
+        ChunkInputStream in = new ChunkInputStream(chunks, out);
+        in.fill();
+        return in;
+    }
+
+    public static String getMimeType(String format) {
+        if (isJPEG(format))
+            return "image/jpeg";
+        return "image/" + format.toLowerCase();
+    }
+
+    private static ImageWriter getWriter(String format) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext())
+            throw new UnsupportedCommandException("Unsupported image format: " + format, null);
+        return writers.next();
+    }
+
+    private static boolean isPNG(String format) {
+        return "png".equalsIgnoreCase(format);
+    }
+
+    private static boolean isJPEG(String format) {
+        return "jpeg".equalsIgnoreCase(format) || "jpg".equalsIgnoreCase(format);
+    }
+
+    /*
+     * The JavaFX agent's ScreenCapture has a copy of ChunkOutputStream and
+     * ChunkInputStream. Keep the two copies identical.
+     */
+    static class ChunkOutputStream extends OutputStream {
+        private final BlockingQueue<byte[]> chunks;
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+        private boolean finished;
+        private volatile Throwable failure;
+
+        public ChunkOutputStream(BlockingQueue<byte[]> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override public void write(int b) throws IOException {
+            if (count == buffer.length)
+                flushChunk();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length)
+                    flushChunk();
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count == 0)
+                return;
+            byte[] chunk = new byte[count];
+            System.arraycopy(buffer, 0, chunk, 0, count);
+            count = 0;
+            put(chunk);
+        }
+
+        private void put(byte[] chunk) throws IOException {
+            try {
+                if (!chunks.offer(chunk, STREAM_TIMEOUT, TimeUnit.MILLISECONDS))
+                    throw new IOException("Screenshot reader is not consuming the data");
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+
+        public void finish() {
+            if (finished)
+                return;
+            finished = true;
+            try {
+                flushChunk();
+                put(EOF);
+            } catch (IOException e) {
+                // The reader is gone
+            }
+        }
+
+        /**
+         * Discards the pending data and tells the reader that encoding failed.
+         */
+        public void fail(Throwable t) {
+            if (finished)
+                return;
+            finished = true;
+            failure = t;
+            count = 0;
+            try {
+                put(ERROR);
+            } catch (IOException e) {
+                // The reader is gone
+            }
+        }
+    }
+
+    static class ChunkInputStream extends InputStream {
+        private final BlockingQueue<byte[]> chunks;
+        private final ChunkOutputStream out;
+        private byte[] current;
+        private int pos;
+        private boolean eof;
+        private IOException error;
+
+        public ChunkInputStream(BlockingQueue<byte[]> chunks, ChunkOutputStream out) {
+            this.chunks = chunks;
+            this.out = out;
+        }
+
+        @Override public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            if (!fill())
+                return -1;
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override public int available() throws IOException {
+            return current == null ? 0 : current.length - pos;
+        }
+
+        public boolean fill() throws IOException {
+            if (eof)
+                return false;
+            if (error != null)
+                throw error;
+            if (current != null && pos < current.length)
+                return true;
+            try {
+                current = chunks.poll(STREAM_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            if (current == null)
+                throw new IOException("Timed out waiting for the screenshot encoder");
+            pos = 0;
+            if (current == EOF) {
+                eof = true;
+                return false;
+            }
+            if (current == ERROR) {
+                current = null;
+                error = new IOException("Screenshot encoding failed: " + out.failure.getMessage(), out.failure);
+                throw error;
+            }
+            return true;
+        }
+    }
+}
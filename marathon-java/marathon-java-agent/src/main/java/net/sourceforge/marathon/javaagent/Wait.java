@@ -50,7 +50,9 @@ public abstract class Wait {
     public static final long DEFAULT_TIMEOUT = 30000l;
 
     /**
-     * The interval to pause between checking; the default is 500 milliseconds
+     * The maximum interval to pause between checking; the default is 500
+     * milliseconds. The condition is checked earlier when a relevant AWT event
+     * arrives (see {@link AWTEventSignal}).
      */
     public static final long DEFAULT_INTERVAL = 500l;
 
@@ -92,7 +94,7 @@ public abstract class Wait {
      * @param timeoutInMilliseconds
      *            the amount of time to wait before giving up
      * @param intervalInMilliseconds
-     *            the interval to pause between checking "until"
+     *            the maximum interval to pause between checking "until"
      * @throws WaitTimedOutException
      *             if "until" doesn't return true until the timeout
      * @see #until()
@@ -100,11 +102,15 @@ public abstract class Wait {
     public void wait(String message, long timeoutInMilliseconds, long intervalInMilliseconds) {
         long start = System.currentTimeMillis();
         long end = start + timeoutInMilliseconds;
-        while (System.currentTimeMillis() < end) {
+        while (true) {
+            long version = AWTEventSignal.getVersion();
             if (until())
                 return;
+            long remaining = end - System.currentTimeMillis();
+            if (remaining <= 0)
+                break;
             try {
-                Thread.sleep(intervalInMilliseconds);
+                AWTEventSignal.awaitChange(version, Math.min(intervalInMilliseconds, remaining));
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
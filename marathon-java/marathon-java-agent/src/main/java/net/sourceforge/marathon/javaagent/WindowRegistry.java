@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import java.awt.AWTEvent;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.WeakReference;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import sun.awt.AppContext;
+
+/**
+ * A registry of the visible top level windows of the application.
+ *
+ * Windows are registered when they are opened and dropped when they are
+ * disposed. The titles are cached and updated from changes to the title and
+ * name properties. The lookup tables are rebuilt only after a window is shown,
+ * hidden or renamed, so looking up a window by handle, name or title does not
+ * touch the windows themselves.
+ *
+ * Titles are the ones given by {@link WindowTitle}: a window with the same
+ * title as a window created before it gets a "(n)" suffix.
+ *
+ * When the event listener can't be installed, the tables are rebuilt from the
+ * window lists of the application contexts on every lookup.
+ */
+public class WindowRegistry {
+
+    private static final Logger logger = Logger.getLogger(WindowRegistry.class.getName());
+
+    private static final int PATTERN_CACHE_SIZE = 32;
+
+    private static final Map<Window, String> rawTitles = new WeakHashMap<Window, String>();
+    private static final Map<String, WeakReference<Window>> handles = new HashMap<String, WeakReference<Window>>();
+    private static final Map<String, WeakReference<Window>> names = new HashMap<String, WeakReference<Window>>();
+    private static final Map<String, WeakReference<Window>> titles = new HashMap<String, WeakReference<Window>>();
+    private static final Map<Window, String> windowTitles = new WeakHashMap<Window, String>();
+    private static List<WeakReference<Window>> visible = new ArrayList<WeakReference<Window>>();
+    private static boolean dirty = true;
+    private static boolean installed;
+    private static boolean listening;
+
+    @SuppressWarnings("serial") private static final Map<String, Pattern> patterns = new LinkedHashMap<String, Pattern>(16,
+            0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > PATTERN_CACHE_SIZE;
+        }
+    };
+
+    private static final PropertyChangeListener titleListener = new PropertyChangeListener() {
+        @Override public void propertyChange(PropertyChangeEvent evt) {
+            Window window = (Window) evt.getSource();
+            synchronized (WindowRegistry.class) {
+                if (rawTitles.containsKey(window)) {
+                    rawTitles.put(window, getRawTitle(window));
+                    dirty = true;
+                }
+            }
+        }
+    };
+
+    private static final ComponentListener visibilityListener = new ComponentAdapter() {
+        @Override public void componentShown(ComponentEvent e) {
+            invalidate();
+        }
+
+        @Override public void componentHidden(ComponentEvent e) {
+            invalidate();
+        }
+    };
+
+    private static final AWTEventListener eventListener = new AWTEventListener() {
+        @Override public void eventDispatched(AWTEvent event) {
+            Window window = ((WindowEvent) event).getWindow();
+            if (event.getID() == WindowEvent.WINDOW_OPENED) {
+                synchronized (WindowRegistry.class) {
+                    register(window);
+                    dirty = true;
+                }
+            } else if (event.getID() == WindowEvent.WINDOW_CLOSED) {
+                synchronized (WindowRegistry.class) {
+                    unregister(window);
+                    dirty = true;
+                }
+            }
+        }
+    };
+
+    private static synchronized boolean install() {
+        if (installed)
+            return listening;
+        installed = true;
+        try {
+            AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                @Override public Object run() {
+                    Toolkit.getDefaultToolkit().addAWTEventListener(eventListener, AWTEvent.WINDOW_EVENT_MASK);
+                    return null;
+                }
+            });
+            listening = true;
+        } catch (SecurityException e) {
+            logger.log(Level.WARNING, "Unable to listen for window events. Window lookups scan all windows", e);
+        }
+        return listening;
+    }
+
+    private static synchronized void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Gets the visible top level windows in the order they are created.
+     */
+    public static synchronized Window[] getWindows() {
+        List<Window> windows = new ArrayList<Window>();
+        for (WeakReference<Window> ref : refresh()) {
+            Window window = ref.get();
+            if (window != null)
+                windows.add(window);
+        }
+        return windows.toArray(new Window[windows.size()]);
+    }
+
+    public static synchronized Window findByHandle(String handle) {
+        refresh();
+        return get(handles, handle);
+    }
+
+    /**
+     * Finds the first visible window with the given name.
+     */
+    public static synchronized Window findByName(String name) {
+        refresh();
+        return get(names, name);
+    }
+
+    public static synchronized Window findByTitle(String title) {
+        refresh();
+        return get(titles, title);
+    }
+
+    /**
+     * Finds the first visible window whose title matches the regular
+     * expression.
+     */
+    public static synchronized Window findByTitlePattern(String regex) {
+        Pattern pattern = patterns.get(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            patterns.put(regex, pattern);
+        }
+        for (WeakReference<Window> ref : refresh()) {
+            Window window = ref.get();
+            if (window != null && pattern.matcher(windowTitles.get(window)).matches())
+                return window;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the title of the window. The title of a visible window is read from
+     * the cache, others are computed by {@link WindowTitle}.
+     */
+    public static synchronized String getTitle(Window window) {
+        refresh();
+        String title = windowTitles.get(window);
+        if (title != null)
+            return title;
+        return new WindowTitle(window).getTitle();
+    }
+
+    public static String getHandle(Window window) {
+        return Integer.toHexString(System.identityHashCode(window));
+    }
+
+    private static Window get(Map<String, WeakReference<Window>> map, String key) {
+        WeakReference<Window> ref = map.get(key);
+        return ref == null ? null : ref.get();
+    }
+
+    private static List<WeakReference<Window>> refresh() {
+        boolean listening = install();
+        if (!dirty && !isHidden(visible))
+            return visible;
+        handles.clear();
+        names.clear();
+        titles.clear();
+        windowTitles.clear();
+        List<WeakReference<Window>> valid = new ArrayList<WeakReference<Window>>();
+        for (AppContext appContext : AppContext.getAppContexts()) {
+            Map<String, Integer> counts = new HashMap<String, Integer>();
+            for (Window window : getWindows(appContext)) {
+                if (listening)
+                    register(window);
+                if (!window.isVisible())
+                    continue;
+                String rawTitle = listening ? rawTitles.get(window) : getRawTitle(window);
+                Integer count = counts.get(rawTitle);
+                counts.put(rawTitle, count == null ? 1 : count + 1);
+                if (isIgnored(window))
+                    continue;
+                String title = count == null ? rawTitle : rawTitle + "(" + count + ")";
+                WeakReference<Window> ref = new WeakReference<Window>(window);
+                valid.add(ref);
+                windowTitles.put(window, title);
+                handles.put(getHandle(window), ref);
+                if (window.getName() != null && !names.containsKey(window.getName()))
+                    names.put(window.getName(), ref);
+                if (!titles.containsKey(title))
+                    titles.put(title, ref);
+            }
+        }
+        visible = valid;
+        dirty = !listening;
+        return visible;
+    }
+
+    private static boolean isHidden(List<WeakReference<Window>> windows) {
+        for (WeakReference<Window> ref : windows) {
+            Window window = ref.get();
+            if (window == null || !window.isVisible())
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isIgnored(Window window) {
+        String className = window.getClass().getName();
+        return className.equals("javax.swing.SwingUtilities$SharedOwnerFrame")
+                || className.equals("javax.swing.Popup$HeavyWeightWindow");
+    }
+
+    private static void register(Window window) {
+        if (rawTitles.containsKey(window))
+            return;
+        rawTitles.put(window, getRawTitle(window));
+        window.addPropertyChangeListener("title", titleListener);
+        window.addPropertyChangeListener("name", titleListener);
+        window.addComponentListener(visibilityListener);
+    }
+
+    private static void unregister(Window window) {
+        if (rawTitles.remove(window) == null)
+            return;
+        window.removePropertyChangeListener("title", titleListener);
+        window.removePropertyChangeListener("name", titleListener);
+        window.removeComponentListener(visibilityListener);
+    }
+
+    private static String getRawTitle(Window window) {
+        return WindowTitle.getTitle(window);
+    }
+
+    static Window[] getWindows(AppContext appContext) {
+        synchronized (Window.class) {
+            @SuppressWarnings("unchecked")
+            Vector<WeakReference<Window>> windowList = (Vector<WeakReference<Window>>) appContext.get(Window.class);
+            if (windowList == null)
+                return new Window[0];
+            List<Window> windows = new ArrayList<Window>(windowList.size());
+            for (WeakReference<Window> ref : windowList) {
+                Window w = ref.get();
+                if (w != null)
+                    windows.add(w);
+            }
+            return windows.toArray(new Window[windows.size()]);
+        }
+    }
+
+    /**
+     * Gets the number of windows being tracked, visible or not.
+     */
+    static synchronized int getRegisteredWindowCount() {
+        return rawTitles.size();
+    }
+}
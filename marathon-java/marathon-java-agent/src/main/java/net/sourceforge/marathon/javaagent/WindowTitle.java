@@ -45,7 +45,7 @@ public class WindowTitle {
         return title;
     }
 
-    private String getTitle(Component component) {
+    static String getTitle(Component component) {
         String title = null;
         if (component instanceof Dialog) {
             title = ((Dialog) component).getTitle();
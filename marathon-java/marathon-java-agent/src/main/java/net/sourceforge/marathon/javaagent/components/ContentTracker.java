@@ -0,0 +1,480 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.components;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.JComponent;
+import javax.swing.JList;
+import javax.swing.JTable;
+import javax.swing.JTree;
+import javax.swing.ListModel;
+import javax.swing.RowSorter;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.RowSorterEvent;
+import javax.swing.event.RowSorterListener;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
+import javax.swing.tree.TreeModel;
+
+import net.sourceforge.marathon.javaagent.ContentModel;
+import net.sourceforge.marathon.javaagent.IContentElement;
+
+import org.json.JSONObject;
+
+/**
+ * Keeps a version of the content of a table, list or tree and the items
+ * changed in each version, from the model events.
+ *
+ * A tracker is attached to the component the first time its content is read
+ * and is kept as a client property. Changes that can't be mapped to items
+ * (structure changes, sorting, column moves) reset the tracker. Only the last
+ * <code>marathon.content.changes</code> changes are kept.
+ *
+ * The revision changes with the version and also when the way the items are
+ * rendered changes (renderer, tree expansion).
+ *
+ * All methods are called on the EDT.
+ */
+abstract class ContentTracker implements PropertyChangeListener {
+
+    private static final int MAX_CHANGES = Integer.parseInt(System.getProperty("marathon.content.changes", "1024"));
+    private static final String KEY = "marathon.content.tracker";
+
+    protected static final int END = Integer.MAX_VALUE;
+
+    private static class Change {
+        private final long version;
+        private final int first;
+        private final int last;
+        private final WeakReference<Object> node;
+
+        public Change(long version, int first, int last, Object node) {
+            this.version = version;
+            this.first = first;
+            this.last = last;
+            this.node = node == null ? null : new WeakReference<Object>(node);
+        }
+    }
+
+    private final LinkedList<Change> changes = new LinkedList<Change>();
+    private long version;
+    private long resetVersion;
+    private long revision;
+
+    public static ContentTracker get(JComponent component) {
+        ContentTracker tracker = (ContentTracker) component.getClientProperty(KEY);
+        if (tracker == null) {
+            if (component instanceof JTable)
+                tracker = new TableTracker((JTable) component);
+            else if (component instanceof JList)
+                tracker = new ListTracker((JList) component);
+            else
+                tracker = new TreeTracker((JTree) component);
+            component.putClientProperty(KEY, tracker);
+            component.addPropertyChangeListener(tracker);
+            tracker.install();
+        }
+        return tracker;
+    }
+
+    public static TextIndexedTracker get(JList list) {
+        return (TextIndexedTracker) get((JComponent) list);
+    }
+
+    public static TextIndexedTracker get(JTree tree) {
+        return (TextIndexedTracker) get((JComponent) tree);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the content as given by {@link IContentElement#getContent(JSONObject)}.
+     */
+    public JSONObject getContent(ContentModel model, JSONObject query) {
+        if (!query.has("since"))
+            return model.getContent(query, version, null);
+        Set<Integer> changed = getChanges(query.getLong("since"));
+        return model.getContent(query, version, changed).put("reset", changed == null);
+    }
+
+    public static JSONObject assertContent(ContentModel model, JSONObject query) {
+        return model.diff(query.getJSONArray("expected"), query.optInt("limit", ContentModel.DIFF_LIMIT));
+    }
+
+    /**
+     * Gets the indices of the items changed after the given version.
+     *
+     * @return the indices or null if the changes are not known
+     */
+    public Set<Integer> getChanges(long since) {
+        if (since < resetVersion || since > version)
+            return null;
+        Set<Integer> indices = new HashSet<Integer>();
+        Set<Object> nodes = null;
+        int count = getItemCount();
+        for (Change change : changes) {
+            if (change.version <= since)
+                continue;
+            if (change.node != null) {
+                Object node = change.node.get();
+                if (node != null) {
+                    if (nodes == null)
+                        nodes = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+                    nodes.add(node);
+                }
+                continue;
+            }
+            int last = Math.min(change.last, count - 1);
+            for (int i = change.first; i <= last; i++) {
+                int index = toView(i);
+                if (index >= 0)
+                    indices.add(index);
+            }
+        }
+        if (nodes != null)
+            indices.addAll(getIndices(nodes));
+        return indices;
+    }
+
+    protected long getRevision() {
+        return revision;
+    }
+
+    protected void changed(int first, int last) {
+        add(new Change(++version, first, last, null));
+    }
+
+    protected void changed(Object node) {
+        add(new Change(++version, -1, -1, node));
+    }
+
+    private void add(Change change) {
+        revision++;
+        changes.add(change);
+        if (changes.size() > MAX_CHANGES)
+            resetVersion = changes.removeFirst().version;
+    }
+
+    protected void reset() {
+        revision++;
+        changes.clear();
+        resetVersion = ++version;
+    }
+
+    protected void invalidate() {
+        revision++;
+    }
+
+    @Override public void propertyChange(PropertyChangeEvent evt) {
+        if (isModelProperty(evt.getPropertyName())) {
+            uninstall(evt);
+            install();
+            reset();
+        } else if (isRendererProperty(evt.getPropertyName()))
+            invalidate();
+    }
+
+    protected abstract boolean isModelProperty(String name);
+
+    protected boolean isRendererProperty(String name) {
+        return "cellRenderer".equals(name);
+    }
+
+    protected abstract void install();
+
+    protected abstract void uninstall(PropertyChangeEvent evt);
+
+    protected abstract int getItemCount();
+
+    protected int toView(int index) {
+        return index;
+    }
+
+    protected Set<Integer> getIndices(Set<Object> nodes) {
+        return new HashSet<Integer>();
+    }
+
+    /**
+     * A tracker that also keeps an index of the items by text, built once per
+     * revision. Used for lists and trees, where an item is looked up by its
+     * text.
+     */
+    static abstract class TextIndexedTracker extends ContentTracker {
+        private Map<String, List<Integer>> texts;
+        private long textsRevision;
+
+        /**
+         * Gets the indices of the items with the given text, as given by
+         * {@link #getItemTexts()}.
+         */
+        public List<Integer> getIndicesForText(String text) {
+            if (texts == null || textsRevision != getRevision()) {
+                texts = new HashMap<String, List<Integer>>();
+                String[] itemTexts = getItemTexts();
+                for (int i = 0; i < itemTexts.length; i++) {
+                    List<Integer> indices = texts.get(itemTexts[i]);
+                    if (indices == null) {
+                        indices = new ArrayList<Integer>(1);
+                        texts.put(itemTexts[i], indices);
+                    }
+                    indices.add(i);
+                }
+                textsRevision = getRevision();
+            }
+            List<Integer> indices = texts.get(text);
+            return indices == null ? Collections.<Integer> emptyList() : indices;
+        }
+
+        protected abstract String[] getItemTexts();
+    }
+
+    private static class TableTracker extends ContentTracker
+            implements TableModelListener, TableColumnModelListener, RowSorterListener {
+        private final JTable table;
+
+        public TableTracker(JTable table) {
+            this.table = table;
+        }
+
+        @Override protected boolean isModelProperty(String name) {
+            return "model".equals(name) || "columnModel".equals(name) || "rowSorter".equals(name);
+        }
+
+        @Override protected void install() {
+            table.getModel().addTableModelListener(this);
+            table.getColumnModel().addColumnModelListener(this);
+            if (table.getRowSorter() != null)
+                table.getRowSorter().addRowSorterListener(this);
+        }
+
+        @Override protected void uninstall(PropertyChangeEvent evt) {
+            table.getModel().removeTableModelListener(this);
+            table.getColumnModel().removeColumnModelListener(this);
+            if (table.getRowSorter() != null)
+                table.getRowSorter().removeRowSorterListener(this);
+            Object old = evt.getOldValue();
+            if (old instanceof TableModel)
+                ((TableModel) old).removeTableModelListener(this);
+            else if (old instanceof TableColumnModel)
+                ((TableColumnModel) old).removeColumnModelListener(this);
+            else if (old instanceof RowSorter)
+                ((RowSorter<?>) old).removeRowSorterListener(this);
+        }
+
+        @Override protected int getItemCount() {
+            return table.getModel().getRowCount();
+        }
+
+        @Override protected int toView(int index) {
+            if (table.getRowSorter() == null)
+                return index;
+            return table.convertRowIndexToView(index);
+        }
+
+        @Override public void tableChanged(TableModelEvent e) {
+            if (e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getFirstRow() < 0)
+                reset();
+            else if (e.getType() == TableModelEvent.UPDATE && e.getLastRow() != Integer.MAX_VALUE)
+                changed(e.getFirstRow(), e.getLastRow());
+            else if (e.getType() != TableModelEvent.UPDATE && table.getRowSorter() == null)
+                changed(e.getFirstRow(), END);
+            else
+                reset();
+        }
+
+        @Override public void sorterChanged(RowSorterEvent e) {
+            if (e.getType() == RowSorterEvent.Type.SORTED)
+                reset();
+        }
+
+        @Override public void columnAdded(TableColumnModelEvent e) {
+            reset();
+        }
+
+        @Override public void columnRemoved(TableColumnModelEvent e) {
+            reset();
+        }
+
+        @Override public void columnMoved(TableColumnModelEvent e) {
+            if (e.getFromIndex() != e.getToIndex())
+                reset();
+        }
+
+        @Override public void columnMarginChanged(ChangeEvent e) {
+        }
+
+        @Override public void columnSelectionChanged(ListSelectionEvent e) {
+        }
+    }
+
+    private static class ListTracker extends TextIndexedTracker implements ListDataListener {
+        private final JList list;
+
+        public ListTracker(JList list) {
+            this.list = list;
+        }
+
+        @Override protected boolean isModelProperty(String name) {
+            return "model".equals(name);
+        }
+
+        @Override protected void install() {
+            list.getModel().removeListDataListener(this);
+            list.getModel().addListDataListener(this);
+        }
+
+        @Override protected void uninstall(PropertyChangeEvent evt) {
+            if (evt.getOldValue() instanceof ListModel)
+                ((ListModel) evt.getOldValue()).removeListDataListener(this);
+        }
+
+        @Override protected int getItemCount() {
+            return list.getModel().getSize();
+        }
+
+        @Override protected String[] getItemTexts() {
+            return JListItemJavaElement.getTexts(list);
+        }
+
+        @Override public void intervalAdded(ListDataEvent e) {
+            changed(Math.min(e.getIndex0(), e.getIndex1()), END);
+        }
+
+        @Override public void intervalRemoved(ListDataEvent e) {
+            changed(Math.min(e.getIndex0(), e.getIndex1()), END);
+        }
+
+        @Override public void contentsChanged(ListDataEvent e) {
+            if (e.getIndex0() < 0 || e.getIndex1() < 0)
+                reset();
+            else
+                changed(Math.min(e.getIndex0(), e.getIndex1()), Math.max(e.getIndex0(), e.getIndex1()));
+        }
+    }
+
+    private static class TreeTracker extends TextIndexedTracker implements TreeModelListener, TreeExpansionListener {
+        private final JTree tree;
+
+        public TreeTracker(JTree tree) {
+            this.tree = tree;
+        }
+
+        @Override protected boolean isModelProperty(String name) {
+            return JTree.TREE_MODEL_PROPERTY.equals(name);
+        }
+
+        @Override protected boolean isRendererProperty(String name) {
+            return super.isRendererProperty(name) || JTree.ROOT_VISIBLE_PROPERTY.equals(name);
+        }
+
+        @Override protected void install() {
+            tree.removeTreeExpansionListener(this);
+            tree.addTreeExpansionListener(this);
+            if (tree.getModel() != null) {
+                tree.getModel().removeTreeModelListener(this);
+                tree.getModel().addTreeModelListener(this);
+            }
+        }
+
+        @Override protected void uninstall(PropertyChangeEvent evt) {
+            if (evt.getOldValue() instanceof TreeModel)
+                ((TreeModel) evt.getOldValue()).removeTreeModelListener(this);
+        }
+
+        @Override protected int getItemCount() {
+            return 0;
+        }
+
+        /**
+         * The texts of the rows of the tree - only the expanded nodes are
+         * included.
+         */
+        @Override protected String[] getItemTexts() {
+            return JTreeJavaElement.getRowTexts(tree);
+        }
+
+        @Override public void treeExpanded(TreeExpansionEvent event) {
+            invalidate();
+        }
+
+        @Override public void treeCollapsed(TreeExpansionEvent event) {
+            invalidate();
+        }
+
+        @Override protected Set<Integer> getIndices(Set<Object> nodes) {
+            Map<Object, Integer> indices = new IdentityHashMap<Object, Integer>();
+            TreeModel model = tree.getModel();
+            if (model != null && model.getRoot() != null)
+                collect(model, model.getRoot(), nodes, indices, new int[] { 0 });
+            return new HashSet<Integer>(indices.values());
+        }
+
+        private void collect(TreeModel model, Object node, Set<Object> nodes, Map<Object, Integer> indices, int[] index) {
+            if (nodes.contains(node))
+                indices.put(node, index[0]);
+            index[0]++;
+            for (int i = 0; i < model.getChildCount(node) && indices.size() < nodes.size(); i++)
+                collect(model, model.getChild(node, i), nodes, indices, index);
+        }
+
+        @Override public void treeNodesChanged(TreeModelEvent e) {
+            Object[] children = e.getChildren();
+            if (children == null)
+                changed(e.getTreePath().getLastPathComponent());
+            else {
+                for (Object child : children)
+                    changed(child);
+            }
+        }
+
+        @Override public void treeNodesInserted(TreeModelEvent e) {
+            reset();
+        }
+
+        @Override public void treeNodesRemoved(TreeModelEvent e) {
+            reset();
+        }
+
+        @Override public void treeStructureChanged(TreeModelEvent e) {
+            reset();
+        }
+    }
+}
@@ -18,6 +18,8 @@ package net.sourceforge.marathon.javaagent.components;
 import java.awt.Component;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import javax.swing.JList;
@@ -121,6 +123,27 @@ public class JListItemJavaElement extends AbstractJavaElement implements IPseudo
         return itemText;
     }
 
+    /**
+     * Gets the texts of all the items, same as {@link #getText(JList, int)}
+     * for each of them.
+     */
+    public static String[] getTexts(JList list) {
+        int size = list.getModel().getSize();
+        String[] texts = new String[size];
+        Map<String, Integer> counts = size > MAX_LIST_ITEMS ? null : new HashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            String original = getItemText(list, i);
+            texts[i] = original;
+            if (counts == null)
+                continue;
+            Integer count = counts.get(original);
+            if (count != null)
+                texts[i] = String.format("%s(%d)", original, count);
+            counts.put(original, count == null ? 1 : count + 1);
+        }
+        return texts;
+    }
+
     protected static String getItemText(JList listItem, int index) {
         Component renComponent = getRendererComponent(listItem, index);
         JavaElementPropertyAccessor pa = new JavaElementPropertyAccessor(renComponent);
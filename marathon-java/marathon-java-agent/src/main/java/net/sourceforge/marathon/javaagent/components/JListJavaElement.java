@@ -27,7 +27,9 @@ import java.util.concurrent.Callable;
 import javax.swing.JList;
 
 import net.sourceforge.marathon.javaagent.AbstractJavaElement;
+import net.sourceforge.marathon.javaagent.ContentModel;
 import net.sourceforge.marathon.javaagent.EventQueueWait;
+import net.sourceforge.marathon.javaagent.IContentElement;
 import net.sourceforge.marathon.javaagent.IJavaElement;
 import net.sourceforge.marathon.javaagent.IJavaAgent;
 import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
@@ -35,7 +37,7 @@ import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-public class JListJavaElement extends AbstractJavaElement {
+public class JListJavaElement extends AbstractJavaElement implements IContentElement {
 
     private interface Predicate {
         public boolean isValid(JListItemJavaElement e);
@@ -49,6 +51,43 @@ public class JListJavaElement extends AbstractJavaElement {
         return new JSONArray(getContent((JList) component)).toString();
     }
 
+    @Override public JSONObject getContent(final JSONObject query) {
+        return EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                JList list = (JList) component;
+                return ContentTracker.get(list).getContent(getContentModel(list), query);
+            }
+        });
+    }
+
+    @Override public JSONObject assertContent(final JSONObject query) {
+        return EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                return ContentTracker.assertContent(getContentModel((JList) component), query);
+            }
+        });
+    }
+
+    public static ContentModel getContentModel(final JList list) {
+        return new ContentModel() {
+            @Override public int getRowCount() {
+                return 1;
+            }
+
+            @Override public int getColumnCount() {
+                return list.getModel().getSize();
+            }
+
+            @Override public String getValueAt(int row, int column) {
+                return JListItemJavaElement.getText(list, column);
+            }
+
+            @Override public boolean isRowMajor() {
+                return false;
+            }
+        };
+    }
+
     public static String[][] getContent(JList component) {
         int nItems = ((JList) component).getModel().getSize();
         String[][] content = new String[1][nItems];
@@ -79,13 +118,18 @@ public class JListJavaElement extends AbstractJavaElement {
     private List<IJavaElement> findItemByProperties(JSONObject o) {
         if (!o.has("select"))
             return Collections.<IJavaElement> emptyList();
-        final String item = o.getString("select");
-        List<IJavaElement> r = new ArrayList<IJavaElement>();
-        return collectItems(r, new Predicate() {
-            @Override public boolean isValid(JListItemJavaElement e) {
-                return item.equals(e._getText());
+        return collectItems(new ArrayList<IJavaElement>(), o.getString("select"));
+    }
+
+    private List<IJavaElement> collectItems(List<IJavaElement> r, final String text) {
+        List<Integer> indices = EventQueueWait.exec(new Callable<List<Integer>>() {
+            @Override public List<Integer> call() {
+                return ContentTracker.get((JList) component).getIndicesForText(text);
             }
         });
+        for (Integer index : indices)
+            r.add(new JListItemJavaElement(this, index));
+        return r;
     }
 
     public List<IJavaElement> collectItems(List<IJavaElement> r, Predicate p) {
@@ -126,6 +170,10 @@ public class JListJavaElement extends AbstractJavaElement {
     private boolean setItemSelection(Properties[] pa) {
         List<IJavaElement> r = new ArrayList<IJavaElement>();
         for (final Properties properties : pa) {
+            if (properties.size() == 1 && properties.containsKey("text")) {
+                collectItems(r, properties.getProperty("text"));
+                continue;
+            }
             collectItems(r, new Predicate() {
                 @Override public boolean isValid(JListItemJavaElement e) {
                     Set<Object> keySet = properties.keySet();
@@ -30,7 +30,9 @@ import javax.swing.JTable;
 import javax.swing.table.TableModel;
 
 import net.sourceforge.marathon.javaagent.AbstractJavaElement;
+import net.sourceforge.marathon.javaagent.ContentModel;
 import net.sourceforge.marathon.javaagent.EventQueueWait;
+import net.sourceforge.marathon.javaagent.IContentElement;
 import net.sourceforge.marathon.javaagent.IJavaElement;
 import net.sourceforge.marathon.javaagent.IJavaAgent;
 import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
@@ -39,7 +41,7 @@ import net.sourceforge.marathon.javaagent.NoSuchElementException;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-public class JTableJavaElement extends AbstractJavaElement {
+public class JTableJavaElement extends AbstractJavaElement implements IContentElement {
 
     private static final class PropertyPredicate implements Predicate {
         private final Properties p;
@@ -111,7 +113,63 @@ public class JTableJavaElement extends AbstractJavaElement {
         } else {
             p = PropertyHelper.asProperties(o);
         }
-        return collectCells(r, new PropertyPredicate(p));
+        return collectCells(r, p);
+    }
+
+    /**
+     * Collects the cells matching the properties. When the properties name a
+     * row or a column only the cells in them are checked. The table is read
+     * in a single hop to the event dispatch thread.
+     */
+    private List<IJavaElement> collectCells(final List<IJavaElement> r, final Properties p) {
+        return EventQueueWait.exec(new Callable<List<IJavaElement>>() {
+            @Override public List<IJavaElement> call() throws Exception {
+                return _collectCells(r, p);
+            }
+        });
+    }
+
+    private List<IJavaElement> _collectCells(List<IJavaElement> r, Properties p) {
+        JTable table = (JTable) component;
+        int rows = table.getRowCount();
+        int cols = table.getColumnCount();
+        int[] rowIndices = null;
+        if (p.containsKey("row"))
+            rowIndices = getRowIndices(p.getProperty("row"), rows);
+        List<Integer> colIndices = null;
+        if (p.containsKey("column")) {
+            colIndices = new ArrayList<Integer>();
+            String column = p.getProperty("column");
+            for (int j = 0; j < cols; j++) {
+                String columnName = getColumnName(j);
+                if (column.equals(columnName == null ? "" + j : columnName))
+                    colIndices.add(j);
+            }
+        }
+        Properties rest = new Properties();
+        rest.putAll(p);
+        rest.remove("row");
+        rest.remove("column");
+        PropertyPredicate predicate = new PropertyPredicate(rest);
+        for (int i = 0; i < (rowIndices == null ? rows : rowIndices.length); i++) {
+            int row = rowIndices == null ? i : rowIndices[i];
+            for (int j = 0; j < (colIndices == null ? cols : colIndices.size()); j++) {
+                JTableCellJavaElement e = new JTableCellJavaElement(this, row, colIndices == null ? j : colIndices.get(j));
+                if (rest.isEmpty() || predicate.isValid(e))
+                    r.add(e);
+            }
+        }
+        return r;
+    }
+
+    private static int[] getRowIndices(String row, int rows) {
+        try {
+            int index = Integer.parseInt(row);
+            if (Integer.toString(index).equals(row) && index >= 0 && index < rows)
+                return new int[] { index };
+        } catch (NumberFormatException e) {
+        }
+        return new int[0];
     }
 
     public Component getEditor(final int viewRow, final int viewCol) {
@@ -166,6 +224,42 @@ public class JTableJavaElement extends AbstractJavaElement {
         return new JSONArray(getContent((JTable) component)).toString();
     }
 
+    @Override public JSONObject getContent(final JSONObject query) {
+        return EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                JTable table = (JTable) component;
+                return ContentTracker.get(table).getContent(getContentModel(table), query);
+            }
+        });
+    }
+
+    @Override public JSONObject assertContent(final JSONObject query) {
+        return EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                return ContentTracker.assertContent(getContentModel((JTable) component), query);
+            }
+        });
+    }
+
+    public static ContentModel getContentModel(final JTable table) {
+        return new ContentModel() {
+            @Override public int getRowCount() {
+                return table.getRowCount();
+            }
+
+            @Override public int getColumnCount() {
+                return table.getColumnCount();
+            }
+
+            @Override public String getValueAt(int row, int column) {
+                Object valueAt = table.getValueAt(row, column);
+                if (valueAt == null)
+                    return "";
+                return valueAt.toString();
+            }
+        };
+    }
+
     public static String[][] getContent(JTable component) {
         int rows = component.getRowCount();
         int cols = component.getColumnCount();
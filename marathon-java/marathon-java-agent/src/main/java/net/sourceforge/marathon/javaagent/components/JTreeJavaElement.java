@@ -32,15 +32,18 @@ import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 
 import net.sourceforge.marathon.javaagent.AbstractJavaElement;
+import net.sourceforge.marathon.javaagent.ContentModel;
 import net.sourceforge.marathon.javaagent.EventQueueWait;
+import net.sourceforge.marathon.javaagent.IContentElement;
 import net.sourceforge.marathon.javaagent.IJavaElement;
 import net.sourceforge.marathon.javaagent.IJavaAgent;
+import net.sourceforge.marathon.javaagent.JavaElementPropertyAccessor;
 import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-public class JTreeJavaElement extends AbstractJavaElement {
+public class JTreeJavaElement extends AbstractJavaElement implements IContentElement {
 
     private static interface Predicate {
         public boolean isValid(JTreeNodeJavaElement e);
@@ -113,6 +116,11 @@ public class JTreeJavaElement extends AbstractJavaElement {
         List<IJavaElement> nodes = new ArrayList<IJavaElement>();
         for (int index = 0; index < jsonArray.length(); index++) {
             final Properties p = PropertyHelper.asProperties(jsonArray.getJSONObject(index));
+            if (p.size() == 1 && p.containsKey("text")) {
+                for (Integer row : ContentTracker.get((JTree) component).getIndicesForText(p.getProperty("text")))
+                    nodes.add(new JTreeNodeJavaElement(this, row));
+                continue;
+            }
             collectNodes(nodes, new Predicate() {
                 @Override public boolean isValid(JTreeNodeJavaElement e) {
                     Enumeration<Object> keys = p.keys();
@@ -207,6 +215,21 @@ public class JTreeJavaElement extends AbstractJavaElement {
         return getTextForNodeObject(tree, lastPathComponent);
     }
 
+    /**
+     * Gets the texts of the rows, same as the text of the
+     * {@link JTreeNodeJavaElement} for each row.
+     */
+    public static String[] getRowTexts(JTree tree) {
+        String[] texts = new String[tree.getRowCount()];
+        TreeCellRenderer renderer = tree.getCellRenderer();
+        for (int row = 0; row < texts.length; row++) {
+            Object node = tree.getPathForRow(row).getLastPathComponent();
+            Component c = renderer.getTreeCellRendererComponent(tree, node, false, false, false, row, false);
+            texts[row] = new JavaElementPropertyAccessor(c)._getText();
+        }
+        return texts;
+    }
+
     private String getTextForNodeObject(JTree tree, Object lastPathComponent) {
         TreeCellRenderer renderer = tree.getCellRenderer();
         if (renderer == null)
@@ -222,6 +245,53 @@ public class JTreeJavaElement extends AbstractJavaElement {
         return new JSONArray(getContent((JTree) component)).toString();
     }
 
+    @Override public JSONObject getContent(final JSONObject query) {
+        return EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                JTree tree = (JTree) component;
+                return ContentTracker.get(tree).getContent(getContentModel(tree), query);
+            }
+        });
+    }
+
+    @Override public JSONObject assertContent(final JSONObject query) {
+        return EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                return ContentTracker.assertContent(getContentModel((JTree) component), query);
+            }
+        });
+    }
+
+    public static ContentModel getContentModel(JTree tree) {
+        final List<Object> nodes = new ArrayList<Object>();
+        TreeModel model = tree.getModel();
+        if (model != null && model.getRoot() != null)
+            getTreeNodes(model, model.getRoot(), nodes);
+        return new ContentModel() {
+            @Override public int getRowCount() {
+                return 1;
+            }
+
+            @Override public int getColumnCount() {
+                return nodes.size();
+            }
+
+            @Override public String getValueAt(int row, int column) {
+                return nodes.get(column).toString();
+            }
+
+            @Override public boolean isRowMajor() {
+                return false;
+            }
+        };
+    }
+
+    private static void getTreeNodes(TreeModel model, Object root, List<Object> nodes) {
+        nodes.add(root);
+        for (int i = 0; i < model.getChildCount(root); i++)
+            getTreeNodes(model, model.getChild(root, i), nodes);
+    }
+
     public static String[][] getContent(JTree component) {
         TreeModel model = ((JTree) component).getModel();
         int rowCount = getNodeCount(model, model.getRoot()) + 1;
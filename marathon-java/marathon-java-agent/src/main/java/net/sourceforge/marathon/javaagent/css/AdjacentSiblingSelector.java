@@ -18,28 +18,26 @@ package net.sourceforge.marathon.javaagent.css;
 import java.awt.Component;
 import java.awt.Container;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import net.sourceforge.marathon.javaagent.*;
 import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
 
 import org.json.JSONException;
 
-public class AdjacentSiblingSelector implements Selector {
-
-    private Selector parent;
-    private SimpleSelector sibling;
+public class AdjacentSiblingSelector extends CombinatorSelector {
 
     public AdjacentSiblingSelector(Selector parent, SimpleSelector sibling) {
-        this.parent = parent;
-        this.sibling = sibling;
+        super(parent, sibling, Combinator.ADJACENT_SIBLING);
     }
 
     @Override public String toString() {
-        return parent + " + " + sibling;
+        return parent + " + " + selector;
     }
 
-    @SuppressWarnings("unchecked") @Override public List<IJavaElement> findElements(final IJavaAgent driver,
+    @SuppressWarnings("unchecked") @Override protected List<IJavaElement> findElementsByParent(final IJavaAgent driver,
             final IJavaElement container, long implicitWait) {
         final List<IJavaElement> pElements = parent.findElements(driver, container, implicitWait);
         if (pElements.size() == 0)
@@ -91,6 +89,7 @@ public class AdjacentSiblingSelector implements Selector {
 
     protected List<IJavaElement> found(List<IJavaElement> pElements, IJavaAgent driver) {
         List<IJavaElement> r = new ArrayList<IJavaElement>();
+        Set<IJavaElement> seen = new HashSet<IJavaElement>();
         for (IJavaElement je : pElements) {
             Component component = je.getComponent();
             if (!(component instanceof Container))
@@ -104,10 +103,10 @@ public class AdjacentSiblingSelector implements Selector {
             if (index < parent.getComponentCount()) {
                 Component c = parent.getComponent(index);
                 IJavaElement je2 = JavaElementFactory.createElement(c, driver, driver.switchTo().getTopContainer());
-                List<IJavaElement> matched = sibling.matchesSelector(je2);
+                List<IJavaElement> matched = selector.matchesSelector(je2);
                 for (IJavaElement javaElement : matched) {
                     IJavaElement e = topContainer.addElement(javaElement);
-                    if (!r.contains(e))
+                    if (seen.add(e))
                         r.add(e);
                 }
             }
@@ -16,32 +16,31 @@
 package net.sourceforge.marathon.javaagent.css;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import net.sourceforge.marathon.javaagent.IJavaAgent;
 import net.sourceforge.marathon.javaagent.IJavaElement;
 
-public class DescendentSelector implements Selector {
-
-    private Selector parent;
-    private SimpleSelector descendent;
+public class DescendentSelector extends CombinatorSelector {
 
     public DescendentSelector(Selector parent, SimpleSelector child) {
-        this.parent = parent;
-        this.descendent = child;
+        super(parent, child, Combinator.DESCENDANT);
     }
 
     @Override public String toString() {
-        return parent + " " + descendent;
+        return parent + " " + selector;
     }
 
-    @Override public List<IJavaElement> findElements(IJavaAgent driver, IJavaElement container, long implicitWait) {
+    @Override protected List<IJavaElement> findElementsByParent(IJavaAgent driver, IJavaElement container, long implicitWait) {
         List<IJavaElement> result = new ArrayList<IJavaElement>();
+        Set<IJavaElement> seen = new HashSet<IJavaElement>();
         List<IJavaElement> parents = parent.findElements(driver, container, implicitWait);
         for (IJavaElement parent : parents) {
-            List<IJavaElement> es = descendent.findElements(driver, parent, implicitWait);
+            List<IJavaElement> es = selector.findElements(driver, parent, implicitWait);
             for (IJavaElement e : es) {
-                if (!result.contains(e))
+                if (seen.add(e))
                     result.add(e);
             }
         }
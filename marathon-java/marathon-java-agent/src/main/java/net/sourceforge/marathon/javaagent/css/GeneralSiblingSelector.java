@@ -18,28 +18,26 @@ package net.sourceforge.marathon.javaagent.css;
 import java.awt.Component;
 import java.awt.Container;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import net.sourceforge.marathon.javaagent.*;
 import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
 
 import org.json.JSONException;
 
-public class GeneralSiblingSelector implements Selector {
-
-    private Selector parent;
-    private SimpleSelector sibling;
+public class GeneralSiblingSelector extends CombinatorSelector {
 
     public GeneralSiblingSelector(Selector parent, SimpleSelector sibling) {
-        this.parent = parent;
-        this.sibling = sibling;
+        super(parent, sibling, Combinator.GENERAL_SIBLING);
     }
 
     @Override public String toString() {
-        return parent + " ~ " + sibling;
+        return parent + " ~ " + selector;
     }
 
-    @SuppressWarnings("unchecked") @Override public List<IJavaElement> findElements(final IJavaAgent driver,
+    @SuppressWarnings("unchecked") @Override protected List<IJavaElement> findElementsByParent(final IJavaAgent driver,
             final IJavaElement container, long implicitWait) {
         final List<IJavaElement> pElements = parent.findElements(driver, container, implicitWait);
         if (pElements.size() == 0)
@@ -91,6 +89,7 @@ public class GeneralSiblingSelector implements Selector {
 
     protected List<IJavaElement> found(List<IJavaElement> pElements, IJavaAgent driver) {
         List<IJavaElement> r = new ArrayList<IJavaElement>();
+        Set<IJavaElement> seen = new HashSet<IJavaElement>();
         for (IJavaElement je : pElements) {
             Component component = je.getComponent();
             if (!(component instanceof Container))
@@ -103,9 +102,9 @@ public class GeneralSiblingSelector implements Selector {
             for (int i = index + 1; i < parent.getComponentCount(); i++) {
                 Component c = parent.getComponent(i);
                 IJavaElement je2 = JavaElementFactory.createElement(c, driver, driver.switchTo().getTopContainer());
-                if (sibling.matchesSelector(je2).size() > 0) {
+                if (selector.matchesSelector(je2).size() > 0) {
                     IJavaElement e = topContainer.addElement(JavaElementFactory.createElement(c, driver, topContainer));
-                    if (!r.contains(e))
+                    if (seen.add(e))
                         r.add(e);
                 }
             }
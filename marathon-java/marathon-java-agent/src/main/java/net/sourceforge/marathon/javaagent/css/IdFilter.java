@@ -21,7 +21,7 @@ import java.util.List;
 
 import net.sourceforge.marathon.javaagent.IJavaElement;
 
-public class IdFilter implements SelectorFilter {
+public class IdFilter implements SelectorFilter, ElementPredicate {
 
     private String id;
 
@@ -40,9 +40,17 @@ public class IdFilter implements SelectorFilter {
         return "#" + id;
     }
 
+    public String getId() {
+        return id;
+    }
+
     @Override public List<IJavaElement> match(IJavaElement je) {
-        if (id.equals(je.getAttribute("name")))
+        if (doesMatch(je))
             return Arrays.asList(je);
         return new ArrayList<IJavaElement>();
     }
+
+    @Override public boolean doesMatch(IJavaElement je) {
+        return id.equals(je.getAttribute("name"));
+    }
 }
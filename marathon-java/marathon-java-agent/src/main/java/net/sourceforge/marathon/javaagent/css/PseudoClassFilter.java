@@ -21,10 +21,11 @@ import java.util.List;
 
 import net.sourceforge.marathon.javaagent.IJavaElement;
 
-public class PseudoClassFilter implements SelectorFilter {
+public class PseudoClassFilter implements SelectorFilter, ElementPredicate {
 
     private String function;
     private Argument[] args;
+    private final Object[] params;
 
     public PseudoClassFilter(String function) {
         this(function, new Argument[0]);
@@ -33,6 +34,9 @@ public class PseudoClassFilter implements SelectorFilter {
     public PseudoClassFilter(String function, Argument[] args) {
         this.function = function;
         this.args = args;
+        this.params = new Object[args.length];
+        for (int i = 0; i < args.length; i++)
+            params[i] = args[i].getValue();
     }
 
     @Override public String toString() {
@@ -55,12 +59,9 @@ public class PseudoClassFilter implements SelectorFilter {
         return new ArrayList<IJavaElement>();
     }
 
-    public boolean doesMatch(IJavaElement je) {
-        if (args == null || args.length == 0)
+    @Override public boolean doesMatch(IJavaElement je) {
+        if (params.length == 0)
             return je.filterByPseudoClass(function);
-        Object[] params = new Object[args.length];
-        for (int i = 0; i < args.length; i++)
-            params[i] = args[i].getValue();
         return je.filterByPseudoClass(function, params);
     }
 
@@ -23,6 +23,7 @@ public class PseudoElementFilter implements SelectorFilter {
 
     private String function;
     private Argument[] args;
+    private final Object[] params;
 
     public PseudoElementFilter(String function) {
         this(function, new Argument[0]);
@@ -31,6 +32,9 @@ public class PseudoElementFilter implements SelectorFilter {
     public PseudoElementFilter(String function, Argument[] args) {
         this.function = function;
         this.args = args;
+        this.params = new Object[args.length];
+        for (int i = 0; i < args.length; i++)
+            params[i] = args[i].getValue();
     }
 
     @Override public String toString() {
@@ -48,9 +52,6 @@ public class PseudoElementFilter implements SelectorFilter {
     }
 
     @Override public List<IJavaElement> match(IJavaElement je) {
-        Object[] params = new Object[args.length];
-        for (int i = 0; i < args.length; i++)
-            params[i] = args[i].getValue();
         return je.getByPseudoElement(function, params);
     }
 }
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.css;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * A bounded LRU cache of parsed selectors, shared by all sessions.
+ *
+ * Parsed selectors are not modified once the parser is done with them, so the
+ * same instance can be used by concurrent lookups.
+ */
+public class SelectorCache {
+
+    public static final int CAPACITY = Integer.parseInt(System.getProperty("marathon.css.cache.size", "512"));
+
+    private static final Map<String, Selector> cache = new LinkedHashMap<String, Selector>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Selector> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    private static long hits;
+    private static long misses;
+
+    public static Selector get(String using) {
+        synchronized (cache) {
+            Selector selector = cache.get(using);
+            if (selector != null) {
+                hits++;
+                return selector;
+            }
+            misses++;
+        }
+        Selector selector = new SelectorParser(using).parse();
+        synchronized (cache) {
+            cache.put(using, selector);
+        }
+        return selector;
+    }
+
+    public static JSONObject getStatistics() {
+        synchronized (cache) {
+            return new JSONObject().put("size", cache.size()).put("capacity", CAPACITY).put("hits", hits).put("misses", misses);
+        }
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+            hits = 0;
+            misses = 0;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.css;
+
+import java.awt.Container;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sourceforge.marathon.javaagent.EventQueueWait;
+import net.sourceforge.marathon.javaagent.IJavaAgent;
+import net.sourceforge.marathon.javaagent.IJavaElement;
+import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
+import net.sourceforge.marathon.javaagent.NoSuchWindowException;
+import net.sourceforge.marathon.javaagent.UnsupportedCommandException;
+
+import org.json.JSONException;
+
+/**
+ * A chain of simple selectors joined by combinators that is matched
+ * right-to-left in a single walk of the container on the event queue.
+ *
+ * Each element is visited once: it is tested against the right most selector
+ * and the rest of the chain is checked by walking up the ancestors (or back
+ * over the preceding siblings) that are already on the walk stack. So no
+ * subtree is searched more than once and the results need no de-duplication.
+ *
+ * Only the right most selector may map elements (pseudo elements). Chains with
+ * an nth filter or with pseudo elements on the left are evaluated the old way.
+ */
+class SelectorChain {
+
+    private final SimpleSelector[] selectors;
+    private final CombinatorSelector.Combinator[] combinators;
+
+    private SelectorChain(SimpleSelector[] selectors, CombinatorSelector.Combinator[] combinators) {
+        this.selectors = selectors;
+        this.combinators = combinators;
+    }
+
+    /**
+     * Returns the chain for the selector or null when it can't be matched in a
+     * single walk.
+     */
+    static SelectorChain create(CombinatorSelector selector) {
+        List<SimpleSelector> selectors = new ArrayList<SimpleSelector>();
+        List<CombinatorSelector.Combinator> combinators = new ArrayList<CombinatorSelector.Combinator>();
+        Selector s = selector;
+        while (s instanceof CombinatorSelector) {
+            CombinatorSelector cs = (CombinatorSelector) s;
+            selectors.add(0, cs.getSelector());
+            combinators.add(0, cs.getCombinator());
+            s = cs.getParent();
+        }
+        if (!(s instanceof SimpleSelector))
+            return null;
+        selectors.add(0, (SimpleSelector) s);
+        int last = selectors.size() - 1;
+        for (int i = 0; i < last; i++) {
+            SimpleSelector ss = selectors.get(i);
+            if (ss == null || !ss.isPlain() || (i > 0 && ss.isSelf()))
+                return null;
+        }
+        SimpleSelector right = selectors.get(last);
+        if (right == null || right.hasNthFilter() || right.isSelf())
+            return null;
+        return new SelectorChain(selectors.toArray(new SimpleSelector[selectors.size()]),
+                combinators.toArray(new CombinatorSelector.Combinator[combinators.size()]));
+    }
+
+    @SuppressWarnings("unchecked") public List<IJavaElement> findElements(final IJavaAgent driver, final IJavaElement container,
+            long implicitWait) {
+        final Object[] r = new Object[] { null };
+        if (implicitWait == 0) {
+            EventQueueWait.exec(new Runnable() {
+                @Override public void run() {
+                    try {
+                        r[0] = found(container, driver);
+                    } catch (NoSuchWindowException e) {
+                        r[0] = e;
+                    } catch (UnsupportedCommandException e) {
+                        r[0] = e;
+                    } catch (JSONException e) {
+                        r[0] = e;
+                    } catch (Exception e) {
+                        r[0] = e;
+                    }
+                }
+            });
+        } else {
+            new EventQueueWait() {
+                @Override public boolean till() {
+                    List<IJavaElement> list;
+                    try {
+                        list = found(container, driver);
+                        r[0] = list;
+                        return list.size() > 0;
+                    } catch (NoSuchWindowException e) {
+                        r[0] = e;
+                        return true;
+                    } catch (UnsupportedCommandException e) {
+                        r[0] = e;
+                        return true;
+                    } catch (JSONException e) {
+                        r[0] = e;
+                        return true;
+                    } catch (Exception e) {
+                        r[0] = e;
+                        return true;
+                    }
+                }
+            }.wait_noexc("Unable to find component", implicitWait, 50);
+        }
+        if (r[0] instanceof NoSuchWindowException)
+            throw (NoSuchWindowException) r[0];
+        if (r[0] instanceof UnsupportedCommandException)
+            throw (UnsupportedCommandException) r[0];
+        if (r[0] instanceof JSONException)
+            throw (JSONException) r[0];
+        if (r[0] instanceof RuntimeException)
+            throw (RuntimeException) r[0];
+        if (r[0] instanceof Exception)
+            throw new RuntimeException(((Exception) r[0]).getMessage(), (Exception) r[0]);
+        return (List<IJavaElement>) r[0];
+    }
+
+    public List<IJavaElement> found(IJavaElement container, IJavaAgent driver) {
+        List<IJavaElement> cs = new ArrayList<IJavaElement>();
+        new Walk(container).visit(0, 0, cs);
+        JWindow topContainer = driver.switchTo().getTopContainer();
+        List<IJavaElement> r = new ArrayList<IJavaElement>(cs.size());
+        for (IJavaElement je : cs) {
+            r.add(topContainer.addElement(je));
+        }
+        return r;
+    }
+
+    /*
+     * The walk stack. The element at (depth, i) is container for depth 0 and
+     * children[depth - 1][i] otherwise. index[d] is the position of the
+     * ancestor at depth d within its parent's children.
+     */
+    private class Walk {
+        private final IJavaElement container;
+        private IJavaElement[][] children = new IJavaElement[16][];
+        private int[] direct = new int[16];
+        private int[] index = new int[16];
+
+        public Walk(IJavaElement container) {
+            this.container = container;
+        }
+
+        public void visit(int depth, int i, List<IJavaElement> found) {
+            if (depth == index.length) {
+                children = Arrays.copyOf(children, depth * 2);
+                direct = Arrays.copyOf(direct, depth * 2);
+                index = Arrays.copyOf(index, depth * 2);
+            }
+            index[depth] = i;
+            IJavaElement je = elementAt(depth, i);
+            int last = selectors.length - 1;
+            if (matches(last, depth, i))
+                found.addAll(selectors[last].applyFilters(je));
+            IJavaElement[] components = je.getComponents();
+            if (components.length == 0)
+                return;
+            children[depth] = components;
+            direct[depth] = je.getComponent() instanceof Container ? ((Container) je.getComponent()).getComponentCount() : 0;
+            for (int j = 0; j < components.length; j++) {
+                visit(depth + 1, j, found);
+            }
+        }
+
+        private IJavaElement elementAt(int depth, int i) {
+            return depth == 0 ? container : children[depth - 1][i];
+        }
+
+        private boolean matches(int k, int depth, int i) {
+            SimpleSelector s = selectors[k];
+            if (s.isSelf()) {
+                if (depth != 0 || !s.matchesPredicates(container))
+                    return false;
+            } else {
+                IJavaElement je = elementAt(depth, i);
+                if (depth == 0 || !s.matchesTag(je) || !s.matchesPredicates(je))
+                    return false;
+            }
+            if (k == 0)
+                return true;
+            switch (combinators[k - 1]) {
+            case CHILD:
+                return depth > 0 && isDirect(depth, i) && matches(k - 1, depth - 1, index[depth - 1]);
+            case DESCENDANT:
+                for (int d = depth - 1; d >= 0; d--) {
+                    if (matches(k - 1, d, index[d]))
+                        return true;
+                }
+                return false;
+            case ADJACENT_SIBLING:
+                return depth > 0 && isDirect(depth, i) && i > 0 && isAnchor(depth, i - 1) && matches(k - 1, depth, i - 1);
+            case GENERAL_SIBLING:
+                if (depth == 0 || !isDirect(depth, i))
+                    return false;
+                for (int j = i - 1; j >= 0; j--) {
+                    if (isAnchor(depth, j) && matches(k - 1, depth, j))
+                        return true;
+                }
+                return false;
+            default:
+                return false;
+            }
+        }
+
+        /*
+         * Owned windows are listed after the components of a window. They are
+         * descendants but not children or siblings.
+         */
+        private boolean isDirect(int depth, int i) {
+            return i < direct[depth - 1];
+        }
+
+        private boolean isAnchor(int depth, int i) {
+            return children[depth - 1][i].getComponent() instanceof Container;
+        }
+    }
+}
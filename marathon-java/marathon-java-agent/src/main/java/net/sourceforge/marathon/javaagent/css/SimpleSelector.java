@@ -15,13 +15,16 @@
  *******************************************************************************/
 package net.sourceforge.marathon.javaagent.css;
 
+import java.awt.Component;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import net.sourceforge.marathon.javaagent.ComponentIndex;
 import net.sourceforge.marathon.javaagent.EventQueueWait;
 import net.sourceforge.marathon.javaagent.IJavaAgent;
 import net.sourceforge.marathon.javaagent.IJavaElement;
+import net.sourceforge.marathon.javaagent.JavaElementFactory;
 import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
 import net.sourceforge.marathon.javaagent.NoSuchWindowException;
 import net.sourceforge.marathon.javaagent.UnsupportedCommandException;
@@ -36,17 +39,30 @@ public class SimpleSelector implements Selector {
 
     private PseudoClassFilter nthFilter = null;
 
+    /*
+     * Pre-resolved by the parser: whether the tag matches any element, the
+     * number of leading filters that are plain predicates and the nth index.
+     */
+    private final boolean anyTag;
+    private int npredicates;
+    private int nthIndex;
+
     public SimpleSelector(String tag) {
         this.tag = tag;
+        this.anyTag = "*".equals(tag);
     }
 
     public void addFilter(SelectorFilter filter) {
         if (nthFilter != null)
             throw new ParserException("Only a single nth psuedoclass may be specified and it should be the last one", null);
-        if (filter instanceof PseudoClassFilter && ((PseudoClassFilter) filter).isNth())
+        if (filter instanceof PseudoClassFilter && ((PseudoClassFilter) filter).isNth()) {
             nthFilter = (PseudoClassFilter) filter;
-        else
+            nthIndex = nthFilter.getNthIndex();
+        } else {
+            if (filter instanceof ElementPredicate && npredicates == filters.size())
+                npredicates++;
             filters.add(filter);
+        }
     }
 
     @Override public String toString() {
@@ -122,7 +138,14 @@ public class SimpleSelector implements Selector {
         if (tag.equals(".")) {
             cs.addAll(filterMatches(self));
         } else {
-            findByTagName(self, cs, driver, false);
+            List<Component> indexed = findIndexed(self);
+            if (indexed != null) {
+                JWindow window = driver.switchTo().getCurrentWindow();
+                for (Component c : indexed) {
+                    cs.addAll(matchesSelector(JavaElementFactory.createElement(c, driver, window)));
+                }
+            } else
+                findByTagName(self, cs, driver, false);
         }
         JWindow topContainer = driver.switchTo().getCurrentWindow();
         List<IJavaElement> r = new ArrayList<IJavaElement>();
@@ -130,14 +153,28 @@ public class SimpleSelector implements Selector {
             r.add(topContainer.addElement(component));
         }
         if (nthFilter != null) {
-            if (nthFilter.getNthIndex() - 1 < r.size())
-                return Arrays.asList(r.get(nthFilter.getNthIndex() - 1));
+            if (nthIndex - 1 < r.size())
+                return Arrays.asList(r.get(nthIndex - 1));
             else
                 return new ArrayList<IJavaElement>();
         }
         return r;
     }
 
+    /*
+     * Candidates from the component index: by name when the selector has an
+     * id, otherwise by tag. Null when the index can't be used.
+     */
+    private List<Component> findIndexed(IJavaElement self) {
+        for (int i = 0; i < npredicates; i++) {
+            if (filters.get(i) instanceof IdFilter)
+                return ComponentIndex.find(self.getComponent(), ComponentIndex.Key.NAME, ((IdFilter) filters.get(i)).getId());
+        }
+        if (!anyTag)
+            return ComponentIndex.find(self.getComponent(), ComponentIndex.Key.TAG, tag);
+        return null;
+    }
+
     private void findByTagName(IJavaElement je, List<IJavaElement> cs, IJavaAgent driver, boolean addThis) {
         if (addThis)
             cs.addAll(matchesSelector(je));
@@ -149,15 +186,55 @@ public class SimpleSelector implements Selector {
     }
 
     public List<IJavaElement> matchesSelector(IJavaElement je) {
-        if ("*".equals(tag) || tag.equals(je.getTagName())) {
+        if (matchesTag(je)) {
             return filterMatches(je);
         }
         return new ArrayList<IJavaElement>();
     }
 
     private List<IJavaElement> filterMatches(IJavaElement je) {
+        if (!matchesPredicates(je))
+            return new ArrayList<IJavaElement>();
+        return applyFilters(je);
+    }
+
+    boolean isSelf() {
+        return ".".equals(tag);
+    }
+
+    /**
+     * A selector is plain when all its filters only test the element.
+     */
+    boolean isPlain() {
+        return nthFilter == null && npredicates == filters.size();
+    }
+
+    boolean hasNthFilter() {
+        return nthFilter != null;
+    }
+
+    boolean matchesTag(IJavaElement je) {
+        return anyTag || tag.equals(je.getTagName());
+    }
+
+    /**
+     * Checks the leading filters that only test the element.
+     */
+    boolean matchesPredicates(IJavaElement je) {
+        for (int i = 0; i < npredicates; i++) {
+            if (!((ElementPredicate) filters.get(i)).doesMatch(je))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Applies the filters following the leading predicates.
+     */
+    List<IJavaElement> applyFilters(IJavaElement je) {
         List<IJavaElement> elements = Arrays.asList(je);
-        for (SelectorFilter f : filters) {
+        for (int i = npredicates; i < filters.size(); i++) {
+            SelectorFilter f = filters.get(i);
             List<IJavaElement> toProcess = new ArrayList<IJavaElement>();
             for (IJavaElement javaElement : elements) {
                 toProcess.addAll(f.match(javaElement));
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.script;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * A bounded LRU cache of the classes compiled for scripts, keyed by the
+ * script body and the signature of the generated method.
+ *
+ * Each class is defined in a class loader of its own, so once a class is
+ * evicted from the cache the class and its loader can be unloaded.
+ */
+public class ScriptCache {
+
+    public static final int CAPACITY = Integer.parseInt(System.getProperty("marathon.script.cache.size", "64"));
+
+    private static final Map<String, Class<?>> cache = new LinkedHashMap<String, Class<?>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Class<?>> eldest) {
+            if (size() <= CAPACITY)
+                return false;
+            evictions++;
+            return true;
+        }
+    };
+
+    private static long hits;
+    private static long compiles;
+    private static long evictions;
+
+    public static Class<?> get(String methodBody, String signature) {
+        synchronized (cache) {
+            Class<?> clazz = cache.get(getKey(methodBody, signature));
+            if (clazz != null)
+                hits++;
+            return clazz;
+        }
+    }
+
+    public static void put(String methodBody, String signature, Class<?> clazz) {
+        synchronized (cache) {
+            compiles++;
+            cache.put(getKey(methodBody, signature), clazz);
+        }
+    }
+
+    /**
+     * Defines the class in a new class loader, a child of the given loader.
+     */
+    public static Class<?> define(ClassLoader parent, String name, byte[] bytecode) {
+        return new ScriptClassLoader(parent).define(name, bytecode);
+    }
+
+    public static JSONObject getStatistics() {
+        synchronized (cache) {
+            return new JSONObject().put("size", cache.size()).put("capacity", CAPACITY).put("hits", hits).put("compiles", compiles)
+                    .put("evictions", evictions);
+        }
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+            hits = 0;
+            compiles = 0;
+            evictions = 0;
+        }
+    }
+
+    private static String getKey(String methodBody, String signature) {
+        return signature + "\n" + methodBody;
+    }
+
+    private static class ScriptClassLoader extends ClassLoader {
+        public ScriptClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
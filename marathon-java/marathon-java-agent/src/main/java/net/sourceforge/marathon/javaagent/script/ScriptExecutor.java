@@ -15,6 +15,7 @@
  *******************************************************************************/
 package net.sourceforge.marathon.javaagent.script;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.logging.Level;
@@ -25,6 +26,7 @@ import javassist.ClassPool;
 import javassist.CtClass;
 import javassist.CtMethod;
 import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
 
 import javax.swing.SwingUtilities;
 
@@ -46,15 +48,7 @@ public class ScriptExecutor {
 
     public Object executeScript(String methodBody, final Object[] args) throws CannotCompileException, NoSuchMethodException,
             IllegalAccessException, InvocationTargetException, InstantiationException, InterruptedException {
-        ClassPool cp = ClassPool.getDefault();
-        cp.importPackage("javax.swing");
-        cp.importPackage("java.lang.reflect.Array");
-        CtClass helloClass = cp.makeClass(getClassName());
-        CtMethod make = CtNewMethod.make(getMethodBody(args), helloClass);
-        make.insertBefore(methodBody);
-        Logger.getLogger(ScriptExecutor.class.getName()).log(Level.INFO, "Method Body:\n" + methodBody);
-        helloClass.addMethod(make);
-        final Class<?> helloClazz = helloClass.toClass();
+        final Class<?> helloClazz = getScriptClass(methodBody, args);
         final Method declaredMethod = helloClazz.getDeclaredMethod("execute", getMethodParams(args));
         if (mode == ExecuteMode.ASYNC) {
             final Object[] newArgs = new Object[args.length + 1];
@@ -104,6 +98,40 @@ public class ScriptExecutor {
         return result;
     }
 
+    private Class<?> getScriptClass(String methodBody, Object[] args) throws CannotCompileException {
+        String signature = getMethodBody(args);
+        Class<?> clazz = ScriptCache.get(methodBody, signature);
+        if (clazz == null) {
+            clazz = compile(methodBody, signature);
+            ScriptCache.put(methodBody, signature, clazz);
+        }
+        return clazz;
+    }
+
+    private Class<?> compile(String methodBody, String signature) throws CannotCompileException {
+        ClassLoader parent = Thread.currentThread().getContextClassLoader();
+        if (parent == null)
+            parent = ScriptExecutor.class.getClassLoader();
+        // A pool of our own, so that the generated classes are not held by
+        // the default pool
+        ClassPool cp = new ClassPool(ClassPool.getDefault());
+        cp.appendClassPath(new LoaderClassPath(parent));
+        cp.importPackage("javax.swing");
+        cp.importPackage("java.lang.reflect.Array");
+        CtClass helloClass = cp.makeClass(getClassName());
+        CtMethod make = CtNewMethod.make(signature, helloClass);
+        make.insertBefore(methodBody);
+        Logger.getLogger(ScriptExecutor.class.getName()).log(Level.INFO, "Method Body:\n" + methodBody);
+        helloClass.addMethod(make);
+        try {
+            return ScriptCache.define(parent, helloClass.getName(), helloClass.toBytecode());
+        } catch (IOException e) {
+            throw new CannotCompileException(e);
+        } finally {
+            helloClass.detach();
+        }
+    }
+
     private static final String CLASS_PREFIX = "MarathonExecScript";
     private static int count = 0;
 
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.server;
+
+import java.util.logging.Level;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A fixed capacity ring buffer of log entries. When the buffer is full the
+ * oldest entry is overwritten and counted as dropped.
+ */
+public class LogBuffer {
+
+    public static final int DEFAULT_CAPACITY = Integer.parseInt(System.getProperty("marathon.agent.log.capacity", "1000"));
+
+    private LogEntry[] entries;
+    private int head;
+    private int size;
+    private long dropped;
+    private volatile int levelValue = Level.ALL.intValue();
+
+    public LogBuffer(int capacity) {
+        entries = new LogEntry[Math.max(1, capacity)];
+    }
+
+    public boolean isLoggable(Level level) {
+        return level.intValue() >= levelValue;
+    }
+
+    public void setLevel(Level level) {
+        levelValue = level.intValue();
+    }
+
+    public synchronized void setCapacity(int capacity) {
+        LogEntry[] old = entries;
+        int n = Math.min(size, Math.max(1, capacity));
+        entries = new LogEntry[Math.max(1, capacity)];
+        dropped += size - n;
+        for (int i = 0; i < n; i++)
+            entries[i] = old[(head + size - n + i) % old.length];
+        head = 0;
+        size = n;
+    }
+
+    public synchronized void add(LogEntry entry) {
+        if (size == entries.length) {
+            entries[head] = entry;
+            head = (head + 1) % entries.length;
+            dropped++;
+        } else {
+            entries[(head + size) % entries.length] = entry;
+            size++;
+        }
+    }
+
+    public synchronized int getCapacity() {
+        return entries.length;
+    }
+
+    public synchronized int getSize() {
+        return size;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Moves all entries into the given array. If entries were dropped since
+     * the last drain, a warning entry with the count is added first.
+     */
+    public synchronized void drainTo(JSONArray dest) {
+        if (dropped > 0) {
+            LogEntry d = new LogEntry(Level.WARNING, "{0} log entries dropped (capacity = {1})", dropped, entries.length);
+            dest.put(toJSON(d));
+            dropped = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % entries.length;
+            dest.put(toJSON(entries[index]));
+            entries[index] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    private JSONObject toJSON(LogEntry logEntry) {
+        return new JSONObject().put("level", logEntry.getLevel()).put("timestamp", logEntry.getTimestamp()).put("message",
+                logEntry.getMessage());
+    }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.server;
+
+import net.sourceforge.marathon.javaagent.IJavaElement;
+import net.sourceforge.marathon.javaagent.JavaTargetLocator.JWindow;
+
+import org.json.JSONObject;
+
+/**
+ * A typed dispatch object bound to a route. The server resolves the session,
+ * window and element from the URI parameters and passes them in - handlers
+ * use whichever they need.
+ */
+public abstract class RouteHandler {
+    private final String name;
+    private final boolean hasEvents;
+
+    public RouteHandler(String name) {
+        this(name, false);
+    }
+
+    public RouteHandler(String name, boolean hasEvents) {
+        this.name = name;
+        this.hasEvents = hasEvents;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether the route generates events. The server waits for the
+     * application to become idle only after such routes.
+     */
+    public boolean hasEvents() {
+        return hasEvents;
+    }
+
+    public abstract Object invoke(JavaServer server, JSONObject query, JSONObject uriParams, Session session, JWindow window,
+            IJavaElement element) throws Exception;
+}
@@ -20,13 +20,13 @@ import fi.iki.elonen.NanoHTTPD.Method;
 public class RouteMap {
     private final Method method;
     private final String uri;
-    private final java.lang.reflect.Method proc;
+    private final RouteHandler proc;
 
     public RouteMap(Method method, String uri) {
         this(method, uri, null);
     }
 
-    public RouteMap(Method method, String uri, java.lang.reflect.Method proc) {
+    public RouteMap(Method method, String uri, RouteHandler proc) {
         this.method = method;
         this.uri = uri;
         this.proc = proc;
@@ -40,7 +40,7 @@ public class RouteMap {
         return uri;
     }
 
-    public java.lang.reflect.Method getProc() {
+    public RouteHandler getProc() {
         return proc;
     }
 
@@ -18,7 +18,6 @@ package net.sourceforge.marathon.javaagent.server;
 import java.awt.AWTException;
 import java.awt.Component;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -39,17 +38,20 @@ public class Session {
     private String id;
     private IJavaAgent agent;
 
-    private List<LogEntry> logEntries = new ArrayList<LogEntry>();
-    private Level logLevel = Level.ALL;
+    private LogBuffer logBuffer = new LogBuffer(LogBuffer.DEFAULT_CAPACITY);
 
     public Session(Device.Type type) {
         this.id = UUID.randomUUID().toString();
         agent = new JavaAgent(type);
     }
 
-    public void log(Level level, String message) {
-        if (level.intValue() >= logLevel.intValue())
-            logEntries.add(new LogEntry(level, message));
+    public boolean isLoggable(Level level) {
+        return logBuffer.isLoggable(level);
+    }
+
+    public void log(Level level, String pattern, Object... params) {
+        if (logBuffer.isLoggable(level))
+            logBuffer.add(new LogEntry(level, pattern, params));
     }
 
     public String getID() {
@@ -149,11 +151,7 @@ public class Session {
     }
 
     public void fillLog(JSONArray dest) {
-        for (LogEntry logEntry : logEntries) {
-            dest.put(new JSONObject().put("level", logEntry.getLevel()).put("timestamp", logEntry.getTimestamp()).put("message",
-                    logEntry.getMessage()));
-        }
-        logEntries.clear();
+        logBuffer.drainTo(dest);
     }
 
     public void quit() {
@@ -167,7 +165,15 @@ public class Session {
     }
 
     public void setLogLevel(Level logLevel) {
-        this.logLevel = logLevel;
+        logBuffer.setLevel(logLevel);
+    }
+
+    public void setLogCapacity(int capacity) {
+        logBuffer.setCapacity(capacity);
+    }
+
+    public JSONObject getRegistryStatus() {
+        return agent.switchTo().getRegistryStatus();
     }
 
     public JSONObject getWindowProperties() {
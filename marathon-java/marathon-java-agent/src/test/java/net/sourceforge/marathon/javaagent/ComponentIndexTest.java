@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import java.awt.Component;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test public class ComponentIndexTest {
+
+    private JFrame frame;
+    private JPanel panel;
+    private JButton button1;
+    private JButton button2;
+
+    @BeforeMethod public void showFrame() throws Throwable {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                frame = new JFrame("Component Index");
+                panel = new JPanel();
+                button1 = new JButton("One");
+                button1.setName("one");
+                button2 = new JButton("Two");
+                button2.setName("two");
+                panel.add(button1);
+                panel.add(button2);
+                frame.setContentPane(panel);
+                frame.pack();
+                frame.setVisible(true);
+            }
+        });
+    }
+
+    @AfterMethod public void disposeFrame() throws Throwable {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                frame.dispose();
+            }
+        });
+    }
+
+    public void findByTagInWalkOrder() throws Throwable {
+        AssertJUnit.assertEquals(Arrays.asList(button1, button2), find(frame, ComponentIndex.Key.TAG, "button"));
+        AssertJUnit.assertEquals(Arrays.asList(button1, button2), find(panel, ComponentIndex.Key.CLASS, JButton.class));
+    }
+
+    public void tracksAddedAndRemovedComponents() throws Throwable {
+        AssertJUnit.assertEquals(Arrays.asList(button2), find(frame, ComponentIndex.Key.NAME, "two"));
+        final JButton button3 = new JButton("Three");
+        button3.setName("three");
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                panel.remove(button2);
+                panel.add(button3, 0);
+            }
+        });
+        AssertJUnit.assertEquals(0, find(frame, ComponentIndex.Key.NAME, "two").size());
+        AssertJUnit.assertEquals(Arrays.asList(button3, button1), find(frame, ComponentIndex.Key.TAG, "button"));
+    }
+
+    public void tracksNameChanges() throws Throwable {
+        AssertJUnit.assertEquals(Arrays.asList(button1), find(frame, ComponentIndex.Key.NAME, "one"));
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                button1.setName("first");
+            }
+        });
+        AssertJUnit.assertEquals(0, find(frame, ComponentIndex.Key.NAME, "one").size());
+        AssertJUnit.assertEquals(Arrays.asList(button1), find(frame, ComponentIndex.Key.NAME, "first"));
+    }
+
+    public void findByFieldName() throws Throwable {
+        final ButtonPanel buttonPanel = new ButtonPanel();
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                panel.add(buttonPanel);
+            }
+        });
+        AssertJUnit.assertEquals(Arrays.asList(buttonPanel.okButton), find(frame, ComponentIndex.Key.FIELD_NAME, "okButton"));
+    }
+
+    public void findByFieldAssignedAfterAdd() throws Throwable {
+        final ButtonPanel buttonPanel = new ButtonPanel();
+        final JButton cancelButton = new JButton("Cancel");
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                panel.add(buttonPanel);
+                buttonPanel.add(cancelButton);
+            }
+        });
+        AssertJUnit.assertEquals(0, find(frame, ComponentIndex.Key.FIELD_NAME, "cancelButton").size());
+        buttonPanel.cancelButton = cancelButton;
+        AssertJUnit.assertEquals(Arrays.asList(cancelButton), find(frame, ComponentIndex.Key.FIELD_NAME, "cancelButton"));
+    }
+
+    private static class ButtonPanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+
+        private JButton okButton = new JButton("OK");
+        private JButton cancelButton;
+
+        public ButtonPanel() {
+            add(okButton);
+        }
+    }
+
+    public void dropsIndexOfDisposedWindow() throws Throwable {
+        find(frame, ComponentIndex.Key.TAG, "button");
+        int count = ComponentIndex.getIndexedWindowCount();
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                frame.dispose();
+            }
+        });
+        AssertJUnit.assertEquals(count - 1, ComponentIndex.getIndexedWindowCount());
+        AssertJUnit.assertNull(find(frame, ComponentIndex.Key.TAG, "button"));
+    }
+
+    public void dropsIndexAsSoonAsTheWindowIsDisposed() throws Throwable {
+        find(frame, ComponentIndex.Key.TAG, "button");
+        final int[] counts = new int[2];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                counts[0] = ComponentIndex.getIndexedWindowCount();
+                frame.dispose();
+                counts[1] = ComponentIndex.getIndexedWindowCount();
+            }
+        });
+        AssertJUnit.assertEquals(counts[0] - 1, counts[1]);
+    }
+
+    private List<Component> find(final Component root, final ComponentIndex.Key key, final Object value) {
+        return EventQueueWait.exec(new Callable<List<Component>>() {
+            @Override public List<Component> call() {
+                return ComponentIndex.find(root, key, value);
+            }
+        });
+    }
+}
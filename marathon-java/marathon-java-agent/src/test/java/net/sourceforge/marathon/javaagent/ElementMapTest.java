@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.awt.Component;
+import java.lang.ref.WeakReference;
+
+import javax.swing.JButton;
+
+import org.testng.annotations.Test;
+
+import net.sourceforge.marathon.javaagent.JavaTargetLocator.ElementMap;
+
+@Test public class ElementMapTest {
+
+    public void registersComponent() {
+        ElementMap map = new ElementMap();
+        JButton button = new JButton();
+        IJavaElement je = new JavaElement(button, null, null);
+        je.createId();
+        map.put(button, je);
+        assertEquals(je.getId(), map.getId(button));
+        assertSame(je, map.getElement(button));
+        assertEquals(1, map.size());
+        assertNull(map.getComponent("unknown"));
+    }
+
+    @Test(expectedExceptions = StaleElementReferenceException.class) public void invalidateMakesHandlesStale() {
+        ElementMap map = new ElementMap();
+        JButton button = new JButton();
+        IJavaElement je = new JavaElement(button, null, null);
+        String id = je.createId();
+        map.put(button, je);
+        map.invalidate();
+        assertNull(map.getId(button));
+        map.getComponent(id);
+    }
+
+    @Test(expectedExceptions = StaleElementReferenceException.class) public void detachedComponentIsStale() {
+        ElementMap map = new ElementMap();
+        JButton button = new JButton();
+        IJavaElement je = new JavaElement(button, null, null);
+        String id = je.createId();
+        map.put(button, je);
+        map.getComponent(id);
+    }
+
+    public void reclaimsCollectedComponents() throws InterruptedException {
+        ElementMap map = new ElementMap();
+        IJavaElement je = new JavaElement(new JButton(), null, null);
+        je.createId();
+        map.put(je.getComponent(), je);
+        je = null;
+        for (int i = 0; i < 50 && map.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, map.size());
+    }
+
+    @Test(expectedExceptions = StaleElementReferenceException.class) public void collectedComponentIsStale()
+            throws InterruptedException {
+        ElementMap map = new ElementMap();
+        IJavaElement je = new JavaElement(new JButton(), null, null);
+        String id = je.createId();
+        map.put(je.getComponent(), je);
+        WeakReference<Component> ref = new WeakReference<Component>(je.getComponent());
+        je = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(ref.get());
+        map.getComponent(id);
+    }
+
+    @Test(expectedExceptions = StaleElementReferenceException.class) public void reclaimedComponentIsStale()
+            throws InterruptedException {
+        ElementMap map = new ElementMap();
+        IJavaElement je = new JavaElement(new JButton(), null, null);
+        String id = je.createId();
+        map.put(je.getComponent(), je);
+        je = null;
+        for (int i = 0; i < 50 && map.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, map.size());
+        map.getComponent(id);
+    }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import javax.swing.SwingWorker;
+
+import org.testng.annotations.Test;
+
+@Test public class IdleDetectorTest {
+
+    public void waitsForSwingWorker() throws Exception {
+        SwingWorker<Object, Object> worker = new SwingWorker<Object, Object>() {
+            @Override protected Object doInBackground() throws Exception {
+                Thread.sleep(300);
+                return null;
+            }
+        };
+        worker.execute();
+        Thread.sleep(50);
+        IdleDetector.waitTillIdle();
+        assertTrue(worker.isDone());
+    }
+
+    public void givesUpOnALongRunningSwingWorker() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        SwingWorker<Object, Object> longRunning = new SwingWorker<Object, Object>() {
+            @Override protected Object doInBackground() throws Exception {
+                release.await();
+                return null;
+            }
+        };
+        longRunning.execute();
+        try {
+            Thread.sleep(50);
+            long start = System.currentTimeMillis();
+            IdleDetector.waitTillIdle();
+            assertTrue(System.currentTimeMillis() - start >= IdleDetector.IDLE_TIMEOUT);
+            start = System.currentTimeMillis();
+            IdleDetector.waitTillIdle();
+            assertTrue(System.currentTimeMillis() - start < IdleDetector.IDLE_TIMEOUT / 2);
+            SwingWorker<Object, Object> worker = new SwingWorker<Object, Object>() {
+                @Override protected Object doInBackground() throws Exception {
+                    Thread.sleep(300);
+                    return null;
+                }
+            };
+            worker.execute();
+            Thread.sleep(50);
+            IdleDetector.waitTillIdle();
+            assertTrue(worker.isDone());
+            assertFalse(longRunning.isDone());
+        } finally {
+            release.countDown();
+            longRunning.get();
+            // Let the detector see the executor drained so that it stops
+            // discounting the released worker
+            Thread.sleep(100);
+            IdleDetector.waitTillIdle();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import javax.swing.JButton;
+import javax.swing.JPanel;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+@Test public class JavaElementPropertyAccessorTest {
+
+    @SuppressWarnings("unused") private static class TestPanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+
+        private String secret = "hidden";
+
+        public String title() {
+            return "panel-title";
+        }
+    }
+
+    public void getAttributeFromMethods() throws Throwable {
+        JButton button = new JButton("Click Me");
+        button.setName("click-me");
+        JavaElementPropertyAccessor accessor = new JavaElementPropertyAccessor(button);
+        AssertJUnit.assertEquals("Click Me", accessor.getAttribute("text"));
+        AssertJUnit.assertEquals("true", accessor.getAttribute("enabled"));
+        AssertJUnit.assertEquals("click-me", accessor.getAttribute("name"));
+        AssertJUnit.assertEquals("8", accessor.getAttribute("text.length"));
+        AssertJUnit.assertNull(accessor.getAttribute("noSuchAttribute"));
+        AssertJUnit.assertTrue(accessor.hasAttribue("selected"));
+        AssertJUnit.assertFalse(accessor.hasAttribue("noSuchAttribute"));
+    }
+
+    public void getAttributeFromFieldsAndPlainMethods() throws Throwable {
+        JavaElementPropertyAccessor accessor = new JavaElementPropertyAccessor(new TestPanel());
+        AssertJUnit.assertEquals("hidden", accessor.getAttribute("secret"));
+        AssertJUnit.assertEquals("panel-title", accessor.getAttribute("title"));
+        AssertJUnit.assertEquals("hidden", accessor.getAttribute("secret"));
+    }
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.imageio.ImageIO;
+
+import org.testng.annotations.Test;
+
+import net.sourceforge.marathon.javaagent.ScreenCapture.ChunkInputStream;
+import net.sourceforge.marathon.javaagent.ScreenCapture.ChunkOutputStream;
+
+@Test public class ScreenCaptureTest {
+
+    public void streamsEncodedImage() throws Throwable {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int x = 0; x < image.getWidth(); x++)
+            for (int y = 0; y < image.getHeight(); y++)
+                image.setRGB(x, y, random.nextInt(0xffffff));
+        byte[] streamed = readAll(ScreenCapture.encodeAsync(image, "png", -1, -1));
+        assertTrue("The image should span several chunks", streamed.length > 64 * 1024);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(streamed));
+        assertEquals(image.getWidth(), decoded.getWidth());
+        assertEquals(image.getHeight(), decoded.getHeight());
+        assertEquals(image.getRGB(17, 113), decoded.getRGB(17, 113));
+    }
+
+    @Test(expectedExceptions = UnsupportedCommandException.class) public void rejectsUnknownFormat() throws Throwable {
+        ScreenCapture.encodeAsync(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "no-such-format", -1, -1);
+    }
+
+    @Test(expectedExceptions = IOException.class) public void reportsFailureBeforeData() throws Throwable {
+        // BMP can't hold an alpha channel
+        ScreenCapture.encodeAsync(new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB), "bmp", -1, -1);
+    }
+
+    public void reportsFailureAfterData() throws Throwable {
+        BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(16);
+        ChunkOutputStream out = new ChunkOutputStream(chunks);
+        ChunkInputStream in = new ChunkInputStream(chunks, out);
+        out.write(new byte[20 * 1024]);
+        out.fail(new IOException("Disk full"));
+        byte[] b = new byte[32 * 1024];
+        int total = 0;
+        try {
+            int n;
+            while ((n = in.read(b)) != -1)
+                total += n;
+            fail("Expected the read to fail");
+        } catch (IOException e) {
+            assertEquals("Disk full", e.getCause().getMessage());
+        }
+        assertEquals(16 * 1024, total);
+        try {
+            in.read(b);
+            fail("Expected the stream to stay failed");
+        } catch (IOException e) {
+        }
+    }
+
+    private byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[4096];
+        int n;
+        while ((n = in.read(b)) != -1)
+            out.write(b, 0, n);
+        in.close();
+        return out.toByteArray();
+    }
+}
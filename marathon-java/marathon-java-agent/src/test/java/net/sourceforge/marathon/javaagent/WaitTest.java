@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.awt.event.ContainerEvent;
+
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import org.testng.annotations.Test;
+
+import net.sourceforge.marathon.javaagent.Wait.WaitTimedOutException;
+
+@Test public class WaitTest {
+
+    public void wakesUpOnEvent() throws Exception {
+        final boolean[] ready = { false };
+        final JPanel panel = new JPanel();
+        final JButton button = new JButton();
+        new Thread(new Runnable() {
+            @Override public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override public void run() {
+                        ready[0] = true;
+                        panel.dispatchEvent(new ContainerEvent(panel, ContainerEvent.COMPONENT_ADDED, button));
+                    }
+                });
+            }
+        }).start();
+        long start = System.currentTimeMillis();
+        new EventQueueWait() {
+            @Override public boolean till() {
+                return ready[0];
+            }
+        }.wait("Condition not satisfied", 10000, 5000);
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Wait took " + elapsed + "ms", elapsed < 2000);
+    }
+
+    @Test(expectedExceptions = WaitTimedOutException.class) public void timesOut() {
+        new Wait() {
+            @Override public boolean until() {
+                return false;
+            }
+        }.wait("Condition not satisfied", 200, 50);
+    }
+}
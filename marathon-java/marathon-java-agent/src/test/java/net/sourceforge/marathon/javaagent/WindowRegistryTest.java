@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent;
+
+import java.awt.Window;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test public class WindowRegistryTest {
+
+    private JFrame frame1;
+    private JFrame frame2;
+
+    @BeforeMethod public void showFrames() throws Throwable {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                frame1 = new JFrame("Window Registry");
+                frame1.setName("frame1");
+                frame1.setSize(200, 100);
+                frame1.setVisible(true);
+                frame2 = new JFrame("Window Registry");
+                frame2.setName("frame2");
+                frame2.setSize(200, 100);
+                frame2.setVisible(true);
+            }
+        });
+    }
+
+    @AfterMethod public void disposeFrames() throws Throwable {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                frame1.dispose();
+                frame2.dispose();
+            }
+        });
+    }
+
+    public void findsWindows() throws Throwable {
+        AssertJUnit.assertTrue(Arrays.asList(getWindows()).containsAll(Arrays.asList(frame1, frame2)));
+        AssertJUnit.assertSame(frame2, WindowRegistry.findByName("frame2"));
+        AssertJUnit.assertSame(frame1, WindowRegistry.findByHandle(WindowRegistry.getHandle(frame1)));
+        AssertJUnit.assertSame(frame1, WindowRegistry.findByTitle("Window Registry"));
+        AssertJUnit.assertSame(frame2, WindowRegistry.findByTitle("Window Registry(1)"));
+        AssertJUnit.assertSame(frame2, WindowRegistry.findByTitlePattern("Window.*\\(1\\)"));
+    }
+
+    public void tracksTitleChanges() throws Throwable {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                frame1.setTitle("Renamed");
+            }
+        });
+        AssertJUnit.assertSame(frame1, WindowRegistry.findByTitle("Renamed"));
+        AssertJUnit.assertSame(frame2, WindowRegistry.findByTitle("Window Registry"));
+        AssertJUnit.assertNull(WindowRegistry.findByTitle("Window Registry(1)"));
+    }
+
+    public void tracksVisibility() throws Throwable {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                frame1.setVisible(false);
+            }
+        });
+        AssertJUnit.assertFalse(Arrays.asList(getWindows()).contains(frame1));
+        AssertJUnit.assertNull(WindowRegistry.findByName("frame1"));
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                frame2.dispose();
+            }
+        });
+        AssertJUnit.assertNull(WindowRegistry.findByHandle(WindowRegistry.getHandle(frame2)));
+    }
+
+    private Window[] getWindows() throws Exception {
+        return EventQueueWait.exec(new Callable<Window[]>() {
+            @Override public Window[] call() {
+                return WindowRegistry.getWindows();
+            }
+        });
+    }
+}
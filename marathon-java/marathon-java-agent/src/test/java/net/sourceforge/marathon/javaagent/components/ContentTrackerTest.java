@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.components;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
+
+import net.sourceforge.marathon.javaagent.EventQueueWait;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test public class ContentTrackerTest {
+
+    private JTable table;
+    private DefaultTableModel tableModel;
+    private JList list;
+    private DefaultListModel listModel;
+
+    @BeforeMethod public void createComponents() throws Throwable {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                tableModel = new DefaultTableModel(new Object[] { "A", "B", "C" }, 0);
+                for (int i = 0; i < 100; i++)
+                    tableModel.addRow(new Object[] { "a" + i, "b" + i, i % 2 == 0 ? null : "c" + i });
+                table = new JTable(tableModel);
+                listModel = new DefaultListModel();
+                for (int i = 0; i < 10; i++)
+                    listModel.addElement("item" + i);
+                list = new JList(listModel);
+            }
+        });
+    }
+
+    public void getTableRange() throws Throwable {
+        JSONObject content = getTableContent(new JSONObject("{rows: {from: 10, to: 12}, columns: [2, 0]}"));
+        AssertJUnit.assertEquals(100, content.getInt("rowCount"));
+        AssertJUnit.assertEquals(3, content.getInt("columnCount"));
+        AssertJUnit.assertEquals("[10,11]", content.getJSONArray("rows").toString());
+        AssertJUnit.assertEquals("[[\"\",\"a10\"],[\"c11\",\"a11\"]]", content.getJSONArray("values").toString());
+    }
+
+    public void getTableChangesSinceVersion() throws Throwable {
+        long version = getTableContent(new JSONObject("{rows: {from: 0, to: 0}}")).getLong("version");
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                tableModel.setValueAt("changed", 42, 1);
+                tableModel.setValueAt("changed", 7, 0);
+            }
+        });
+        JSONObject content = getTableContent(new JSONObject().put("since", version));
+        AssertJUnit.assertFalse(content.getBoolean("reset"));
+        AssertJUnit.assertEquals("[7,42]", content.getJSONArray("rows").toString());
+        AssertJUnit.assertEquals("changed", content.getJSONArray("values").getJSONArray(1).getString(1));
+        version = content.getLong("version");
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                tableModel.fireTableDataChanged();
+            }
+        });
+        content = getTableContent(new JSONObject().put("since", version).put("rows", new JSONObject("{from: 0, to: 5}")));
+        AssertJUnit.assertTrue(content.getBoolean("reset"));
+        AssertJUnit.assertEquals(5, content.getJSONArray("values").length());
+    }
+
+    public void getListChangesSinceVersion() throws Throwable {
+        long version = getListContent(new JSONObject()).getLong("version");
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                listModel.remove(8);
+            }
+        });
+        JSONObject content = getListContent(new JSONObject().put("since", version));
+        AssertJUnit.assertEquals("[8]", content.getJSONArray("columns").toString());
+        AssertJUnit.assertEquals("[[\"item9\"]]", content.getJSONArray("values").toString());
+    }
+
+    public void indexListItemsByText() throws Throwable {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                listModel.addElement("item3");
+            }
+        });
+        AssertJUnit.assertEquals("[3]", getIndicesForText("item3").toString());
+        AssertJUnit.assertEquals("[10]", getIndicesForText("item3(1)").toString());
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                listModel.set(3, "changed");
+            }
+        });
+        AssertJUnit.assertEquals("[10]", getIndicesForText("item3").toString());
+        AssertJUnit.assertEquals("[3]", getIndicesForText("changed").toString());
+    }
+
+    public void assertContent() throws Throwable {
+        final JSONArray expected = new JSONArray(JTableJavaElement.getContent(table));
+        expected.getJSONArray(3).put(1, "wrong");
+        JSONObject diff = EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                return ContentTracker.assertContent(JTableJavaElement.getContentModel(table),
+                        new JSONObject().put("expected", expected));
+            }
+        });
+        AssertJUnit.assertFalse(diff.getBoolean("equal"));
+        AssertJUnit.assertEquals(1, diff.getInt("differences"));
+        JSONObject d = diff.getJSONArray("diff").getJSONObject(0);
+        AssertJUnit.assertEquals(3, d.getInt("row"));
+        AssertJUnit.assertEquals("b3", d.getString("actual"));
+    }
+
+    public void assertContentSkipsNullCells() throws Throwable {
+        final JSONArray expected = new JSONArray(JTableJavaElement.getContent(table));
+        expected.getJSONArray(3).put(1, JSONObject.NULL);
+        expected.getJSONArray(4).remove(2);
+        JSONObject diff = assertTableContent(expected);
+        AssertJUnit.assertEquals(1, diff.getInt("differences"));
+        JSONObject d = diff.getJSONArray("diff").getJSONObject(0);
+        AssertJUnit.assertEquals(4, d.getInt("row"));
+        AssertJUnit.assertEquals(2, d.getInt("column"));
+        AssertJUnit.assertTrue(d.isNull("expected"));
+    }
+
+    public void assertContentReportsExtraNullColumn() throws Throwable {
+        final JSONArray expected = new JSONArray(JTableJavaElement.getContent(table));
+        expected.getJSONArray(3).put(3, JSONObject.NULL);
+        JSONObject diff = assertTableContent(expected);
+        AssertJUnit.assertFalse(diff.getBoolean("equal"));
+        AssertJUnit.assertEquals(1, diff.getInt("differences"));
+        JSONObject d = diff.getJSONArray("diff").getJSONObject(0);
+        AssertJUnit.assertEquals(3, d.getInt("row"));
+        AssertJUnit.assertEquals(3, d.getInt("column"));
+    }
+
+    public void assertContentReportsExtraNullRow() throws Throwable {
+        final JSONArray expected = new JSONArray(JTableJavaElement.getContent(table));
+        expected.put(new JSONArray().put(JSONObject.NULL).put(JSONObject.NULL).put(JSONObject.NULL));
+        JSONObject diff = assertTableContent(expected);
+        AssertJUnit.assertFalse(diff.getBoolean("equal"));
+        AssertJUnit.assertEquals(3, diff.getInt("differences"));
+        AssertJUnit.assertEquals(100, diff.getJSONArray("diff").getJSONObject(0).getInt("row"));
+    }
+
+    private JSONObject assertTableContent(final JSONArray expected) {
+        return EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                return ContentTracker.assertContent(JTableJavaElement.getContentModel(table),
+                        new JSONObject().put("expected", expected));
+            }
+        });
+    }
+
+    private JSONObject getTableContent(final JSONObject query) {
+        return EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                return ContentTracker.get(table).getContent(JTableJavaElement.getContentModel(table), query);
+            }
+        });
+    }
+
+    private List<Integer> getIndicesForText(final String text) {
+        return EventQueueWait.exec(new Callable<List<Integer>>() {
+            @Override public List<Integer> call() {
+                return ContentTracker.get(list).getIndicesForText(text);
+            }
+        });
+    }
+
+    private JSONObject getListContent(final JSONObject query) {
+        return EventQueueWait.exec(new Callable<JSONObject>() {
+            @Override public JSONObject call() {
+                return ContentTracker.get(list).getContent(JListJavaElement.getContentModel(list), query);
+            }
+        });
+    }
+}
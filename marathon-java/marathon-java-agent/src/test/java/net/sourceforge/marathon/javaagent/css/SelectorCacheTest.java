@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.css;
+
+import org.json.JSONObject;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test public class SelectorCacheTest {
+
+    @BeforeMethod public void clear() {
+        SelectorCache.clear();
+    }
+
+    public void returnsSameSelector() throws Throwable {
+        Selector selector = SelectorCache.get("menu#mainmenu");
+        AssertJUnit.assertEquals("menu#mainmenu", selector.toString());
+        AssertJUnit.assertSame(selector, SelectorCache.get("menu#mainmenu"));
+        JSONObject statistics = SelectorCache.getStatistics();
+        AssertJUnit.assertEquals(1, statistics.getInt("size"));
+        AssertJUnit.assertEquals(1, statistics.getInt("hits"));
+        AssertJUnit.assertEquals(1, statistics.getInt("misses"));
+    }
+
+    public void parseErrorsAreNotCached() throws Throwable {
+        try {
+            SelectorCache.get("menu[");
+            AssertJUnit.fail("Expected a parse error");
+        } catch (ParserException e) {
+        }
+        AssertJUnit.assertEquals(0, SelectorCache.getStatistics().getInt("size"));
+    }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.script;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+
+import org.json.JSONObject;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.sourceforge.marathon.javaagent.server.ExecuteMode;
+
+@Test public class ScriptCacheTest {
+
+    @BeforeMethod public void clear() {
+        ScriptCache.clear();
+    }
+
+    public void compilesScriptOnce() throws Throwable {
+        ScriptExecutor executor = new ScriptExecutor(ExecuteMode.SYNC);
+        assertEquals("hello world", executor.executeScript("return $1 + \" world\";", new Object[] { "hello" }));
+        assertEquals("bye world", executor.executeScript("return $1 + \" world\";", new Object[] { "bye" }));
+        JSONObject stats = ScriptCache.getStatistics();
+        assertEquals(1, stats.getInt("compiles"));
+        assertEquals(1, stats.getInt("hits"));
+    }
+
+    public void signatureIsPartOfTheKey() throws Throwable {
+        ScriptExecutor executor = new ScriptExecutor(ExecuteMode.SYNC);
+        executor.executeScript("return $1;", new Object[] { "hello" });
+        executor.executeScript("return $1;", new Object[] { Integer.valueOf(1) });
+        assertEquals(2, ScriptCache.getStatistics().getInt("compiles"));
+    }
+
+    public void classesAreDefinedInTheirOwnLoader() throws Exception {
+        CtClass ctClass = new ClassPool(true).makeClass("ScriptCacheTestClass");
+        byte[] bytecode = ctClass.toBytecode();
+        ClassLoader parent = getClass().getClassLoader();
+        Class<?> c1 = ScriptCache.define(parent, ctClass.getName(), bytecode);
+        Class<?> c2 = ScriptCache.define(parent, ctClass.getName(), bytecode);
+        assertNotSame(c1, c2);
+        assertSame(parent, c1.getClassLoader().getParent());
+    }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import fi.iki.elonen.NanoHTTPD;
+
+@Test public class KeepAliveTest {
+
+    private static class EchoServer extends NanoHTTPD {
+        public EchoServer(int port) {
+            super(port);
+        }
+
+        @Override public Response serve(String uri, Method method, Map<String, String> headers, Map<String, String> parms,
+                Map<String, String> files) {
+            String body = files.get("postData");
+            return new Response(Response.Status.OK, MIME_PLAINTEXT, method + " " + uri + (body != null ? " " + body : ""));
+        }
+    }
+
+    private EchoServer server;
+    private int port;
+
+    @BeforeMethod public void startServer() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        port = socket.getLocalPort();
+        socket.close();
+        server = new EchoServer(port);
+        server.setAsyncRunner(new NanoHTTPD.PooledAsyncRunner("KeepAliveTest", 1, 4));
+        server.setKeepAliveTimeout(10000);
+        server.start();
+    }
+
+    @AfterMethod public void stopServer() {
+        server.stop();
+    }
+
+    public void pipelinedRequestsAreAllServed() throws Throwable {
+        Socket socket = new Socket("localhost", port);
+        try {
+            send(socket, "GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n" + "POST /second HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Content-Length: 7\r\n\r\n{\"a\":1}" + "GET /third HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            String responses = readAll(socket);
+            int first = responses.indexOf("GET /first");
+            int second = responses.indexOf("POST /second {\"a\":1}");
+            int third = responses.indexOf("GET /third");
+            AssertJUnit.assertTrue(responses, first > 0 && second > first && third > second);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void postWithoutContentLengthHasAnEmptyBody() throws Throwable {
+        Socket socket = new Socket("localhost", port);
+        try {
+            send(socket, "POST /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /second HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            String first = readResponse(socket);
+            AssertJUnit.assertTrue(first, first.endsWith("\r\n\r\nPOST /first"));
+            AssertJUnit.assertTrue(readAll(socket).contains("GET /second"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void chunkedPostIsDecoded() throws Throwable {
+        Socket socket = new Socket("localhost", port);
+        try {
+            send(socket, "POST /first HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + "4\r\n{\"a\"\r\n3;ext=1\r\n:1}\r\n0\r\n\r\n"
+                    + "GET /second HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            String responses = readAll(socket);
+            int first = responses.indexOf("POST /first {\"a\":1}");
+            int second = responses.indexOf("GET /second");
+            AssertJUnit.assertTrue(responses, first > 0 && second > first);
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void connectionIsKeptOpenBetweenRequests() throws Throwable {
+        Socket socket = new Socket("localhost", port);
+        try {
+            send(socket, "GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            AssertJUnit.assertTrue(readResponse(socket).contains("GET /first"));
+            send(socket, "GET /second HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            AssertJUnit.assertTrue(readAll(socket).contains("GET /second"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void http10ConnectionIsClosed() throws Throwable {
+        Socket socket = new Socket("localhost", port);
+        try {
+            send(socket, "GET /first HTTP/1.0\r\n\r\n");
+            AssertJUnit.assertTrue(readAll(socket).contains("GET /first"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void idleConnectionGivesUpTheOnlyWorker() throws Throwable {
+        Socket idle = new Socket("localhost", port);
+        Socket other = new Socket("localhost", port);
+        try {
+            send(idle, "GET /idle HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            AssertJUnit.assertTrue(readResponse(idle).contains("GET /idle"));
+            send(other, "GET /other HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            AssertJUnit.assertTrue(readAll(other).contains("GET /other"));
+        } finally {
+            idle.close();
+            other.close();
+        }
+    }
+
+    private void send(Socket socket, String requests) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(requests.getBytes("UTF-8"));
+        out.flush();
+    }
+
+    /**
+     * Reads till the server closes the connection.
+     */
+    private String readAll(Socket socket) throws IOException {
+        socket.setSoTimeout(5000);
+        InputStream in = socket.getInputStream();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] b = new byte[1024];
+        int n;
+        while ((n = in.read(b)) != -1)
+            baos.write(b, 0, n);
+        return baos.toString("UTF-8");
+    }
+
+    /**
+     * Reads one response with a content length, leaving the connection open.
+     */
+    private String readResponse(Socket socket) throws IOException {
+        socket.setSoTimeout(5000);
+        InputStream in = socket.getInputStream();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        int length = -1;
+        while (true) {
+            int c = in.read();
+            if (c == -1)
+                break;
+            baos.write(c);
+            String text = baos.toString("UTF-8");
+            int headerEnd = text.indexOf("\r\n\r\n");
+            if (headerEnd < 0)
+                continue;
+            if (length < 0) {
+                int i = text.toLowerCase().indexOf("content-length:");
+                length = Integer.parseInt(text.substring(i + 15, text.indexOf("\r\n", i)).trim());
+            }
+            if (baos.size() >= headerEnd + 4 + length)
+                break;
+        }
+        return baos.toString("UTF-8");
+    }
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javaagent.server;
+
+import java.util.logging.Level;
+
+import org.json.JSONArray;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+@Test public class LogBufferTest {
+
+    public void drainsInOrder() throws Throwable {
+        LogBuffer buffer = new LogBuffer(3);
+        buffer.add(new LogEntry(Level.INFO, "message {0}", 1));
+        buffer.add(new LogEntry(Level.INFO, "message {0}", 2));
+        JSONArray entries = new JSONArray();
+        buffer.drainTo(entries);
+        AssertJUnit.assertEquals(2, entries.length());
+        AssertJUnit.assertEquals("message 1", entries.getJSONObject(0).getString("message"));
+        AssertJUnit.assertEquals("message 2", entries.getJSONObject(1).getString("message"));
+        AssertJUnit.assertEquals(0, buffer.getSize());
+    }
+
+    public void overwritesOldestWhenFull() throws Throwable {
+        LogBuffer buffer = new LogBuffer(2);
+        for (int i = 0; i < 5; i++)
+            buffer.add(new LogEntry(Level.INFO, "message {0}", i));
+        AssertJUnit.assertEquals(3, buffer.getDropped());
+        JSONArray entries = new JSONArray();
+        buffer.drainTo(entries);
+        AssertJUnit.assertEquals(3, entries.length());
+        AssertJUnit.assertEquals("WARNING", entries.getJSONObject(0).getString("level"));
+        AssertJUnit.assertEquals("message 3", entries.getJSONObject(1).getString("message"));
+        AssertJUnit.assertEquals("message 4", entries.getJSONObject(2).getString("message"));
+        AssertJUnit.assertEquals(0, buffer.getDropped());
+    }
+
+    public void levelCheck() throws Throwable {
+        LogBuffer buffer = new LogBuffer(2);
+        buffer.setLevel(Level.WARNING);
+        AssertJUnit.assertFalse(buffer.isLoggable(Level.INFO));
+        AssertJUnit.assertTrue(buffer.isLoggable(Level.SEVERE));
+    }
+
+    public void shrinkKeepsLatest() throws Throwable {
+        LogBuffer buffer = new LogBuffer(4);
+        for (int i = 0; i < 4; i++)
+            buffer.add(new LogEntry(Level.INFO, "message {0}", i));
+        buffer.setCapacity(2);
+        AssertJUnit.assertEquals(2, buffer.getSize());
+        AssertJUnit.assertEquals(2, buffer.getDropped());
+        JSONArray entries = new JSONArray();
+        buffer.drainTo(entries);
+        AssertJUnit.assertEquals("message 3", entries.getJSONObject(2).getString("message"));
+    }
+}
@@ -15,11 +15,22 @@
  *******************************************************************************/
 package net.sourceforge.marathon.javaagent.server;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
 
 import fi.iki.elonen.NanoHTTPD.Method;
+import fi.iki.elonen.NanoHTTPD.Response;
+import fi.iki.elonen.NanoHTTPD.Response.Status;
+import fi.iki.elonen.RouteTrie;
 
 @Test public class RouterTest {
 
@@ -60,6 +71,138 @@ import fi.iki.elonen.NanoHTTPD.Method;
         AssertJUnit.assertEquals(Method.POST, routeMap.getMethod());
         AssertJUnit.assertEquals("/session/:sessionId/element/active", routeMap.getUri());
         AssertJUnit.assertEquals("SESSION-ID", params.get("sessionId"));
+        route = router.findRoute(Method.GET, "/session/SESSION-ID/element/active");
+        routeMap = route.getMap();
+        params = route.getParams();
+        AssertJUnit.assertEquals(Method.GET, routeMap.getMethod());
+        AssertJUnit.assertEquals("/session/:sessionId/element/:id", routeMap.getUri());
+        AssertJUnit.assertEquals("active", params.get("id"));
+        AssertJUnit.assertEquals("getElementName", router.findRoute(Method.GET, "/session/S/element/E/name").getProc().getName());
+    }
+
+    public void findRouteNotFound() throws Throwable {
+        JavaServer router = new JavaServer(1020);
+        AssertJUnit.assertNull(router.findRoute(Method.GET, "/session/SESSION-ID/element/ELEMENT-ID/unknown"));
+        AssertJUnit.assertNull(router.findRoute(Method.PUT, "/status"));
+        AssertJUnit.assertNull(router.findRoute(Method.GET, "/session/SESSION-ID/element/ELEMENT-ID/size/extra"));
+    }
+
+    public void literalSegmentsArePreferredOverParams() throws Throwable {
+        RouteTrie<String> trie = new RouteTrie<String>();
+        trie.add(Method.GET, "/session/:sessionId/element/:id/text", "text");
+        trie.add(Method.GET, "/session/:sessionId/element/active", "active");
+        trie.add(Method.GET, "/session/:sessionId/element/active/name", "activeName");
+        AssertJUnit.assertEquals("active", trie.find(Method.GET, "/session/S/element/active").getValue());
+        AssertJUnit.assertEquals("activeName", trie.find(Method.GET, "/session/S/element/active/name").getValue());
+        RouteTrie.Match<String> match = trie.find(Method.GET, "/session/S/element/active/text");
+        AssertJUnit.assertEquals("text", match.getValue());
+        AssertJUnit.assertEquals("id", match.getParamName(1));
+        AssertJUnit.assertEquals("active", match.getParamValue(1));
+        AssertJUnit.assertNull(trie.find(Method.GET, "/session/S/element/active/size"));
+    }
+
+    public void firstRouteWinsForDuplicatePatterns() throws Throwable {
+        RouteTrie<String> trie = new RouteTrie<String>();
+        trie.add(Method.GET, "/session/:sessionId/url", "first");
+        trie.add(Method.GET, "/session/:sessionId/url", "second");
+        AssertJUnit.assertEquals("first", trie.find(Method.GET, "/session/S/url").getValue());
+    }
+
+    public void partialMatchIsNotFound() throws Throwable {
+        JavaServer router = new JavaServer(1020);
+        AssertJUnit.assertEquals(Status.NOT_FOUND,
+                router.serve_internal("/session/SESSION-ID/element/ELEMENT-ID/siz", Method.GET, new JSONObject()).getStatus());
+        AssertJUnit.assertEquals(Status.NOT_FOUND,
+                router.serve_internal("/session/SESSION-ID/element/ELEMENT-ID/size/extra", Method.GET, new JSONObject())
+                        .getStatus());
+    }
+
+    public void wrongMethodIsNotAllowed() throws Throwable {
+        JavaServer router = new JavaServer(1020);
+        AssertJUnit.assertEquals(Status.METHOD_NOT_ALLOWED,
+                router.serve_internal("/status", Method.PUT, new JSONObject()).getStatus());
+        AssertJUnit.assertEquals(Status.METHOD_NOT_ALLOWED,
+                router.serve_internal("/session/SESSION-ID/element/ELEMENT-ID/size", Method.DELETE, new JSONObject())
+                        .getStatus());
+    }
+
+    public void batchResolvesElementReferences() throws Throwable {
+        final JFrame[] frame = new JFrame[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override public void run() {
+                frame[0] = new JFrame("Batch");
+                JButton button = new JButton("Click Me!!");
+                button.setName("click-me");
+                frame[0].getContentPane().add(button);
+                frame[0].pack();
+                frame[0].setAlwaysOnTop(true);
+                frame[0].setVisible(true);
+            }
+        });
+        try {
+            JavaServer router = new JavaServer(1020);
+            String sessionId = createSession(router);
+            JSONObject movetoQuery = new JSONObject().put("element", "$0");
+            JSONArray commands = new JSONArray();
+            commands.put(new JSONObject().put("path", "element")
+                    .put("query", new JSONObject().put("using", "name").put("value", "click-me")));
+            commands.put(new JSONObject().put("method", "GET").put("path", "element/$0/attribute/%74ext"));
+            commands.put(new JSONObject().put("path", "moveto").put("query", movetoQuery));
+            JSONObject r = batch(router, sessionId, commands);
+            AssertJUnit.assertEquals(0, r.getInt("status"));
+            JSONArray results = r.getJSONArray("value");
+            AssertJUnit.assertEquals(3, results.length());
+            AssertJUnit.assertTrue(results.getJSONObject(0).has("ELEMENT"));
+            AssertJUnit.assertEquals("Click Me!!", results.getString(1));
+            AssertJUnit.assertEquals("$0", movetoQuery.getString("element"));
+        } finally {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override public void run() {
+                    frame[0].dispose();
+                }
+            });
+        }
+    }
+
+    public void batchStopsAtFailingCommand() throws Throwable {
+        JavaServer router = new JavaServer(1020);
+        String sessionId = createSession(router);
+        JSONArray commands = new JSONArray();
+        commands.put(new JSONObject().put("path", "element")
+                .put("query", new JSONObject().put("using", "no-such-strategy").put("value", "click-me")));
+        commands.put(new JSONObject().put("method", "GET").put("path", "element/$5/attribute/text"));
+        Response response = router.serve_internal("/session/" + sessionId + "/batch", Method.POST,
+                new JSONObject().put("commands", commands));
+        AssertJUnit.assertEquals(Status.METHOD_NOT_ALLOWED, response.getStatus());
+    }
+
+    public void batchRejectsReferenceToMissingElement() throws Throwable {
+        JavaServer router = new JavaServer(1020);
+        String sessionId = createSession(router);
+        JSONArray commands = new JSONArray();
+        commands.put(new JSONObject().put("method", "GET").put("path", "element/$0/attribute/text"));
+        Response response = router.serve_internal("/session/" + sessionId + "/batch", Method.POST,
+                new JSONObject().put("commands", commands));
+        AssertJUnit.assertEquals(Status.BAD_REQUEST, response.getStatus());
+    }
+
+    private String createSession(JavaServer router) {
+        Response response = router.serve_internal("/session", Method.POST, new JSONObject());
+        String location = response.getHeader("Location");
+        return location.substring(location.lastIndexOf('/') + 1);
+    }
+
+    private JSONObject batch(JavaServer router, String sessionId, JSONArray commands) throws Exception {
+        Response response = router.serve_internal("/session/" + sessionId + "/batch", Method.POST,
+                new JSONObject().put("commands", commands));
+        AssertJUnit.assertEquals(Status.OK, response.getStatus());
+        InputStream in = response.getData();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[1024];
+        int n;
+        while ((n = in.read(b)) != -1)
+            out.write(b, 0, n);
+        return new JSONObject(new String(out.toByteArray(), "UTF-8"));
     }
 }
 // /session/:sessionId/element/:id
@@ -63,6 +63,10 @@ public class RComboBox extends RComponent {
         return JComboBoxJavaElement.getContent((JComboBox) component);
     }
 
+    @Override protected boolean isSnapshotCacheable() {
+        return false;
+    }
+
     @Override public String getText() {
         return JComboBoxJavaElement.getSelectedItemText((JComboBox) component);
     }
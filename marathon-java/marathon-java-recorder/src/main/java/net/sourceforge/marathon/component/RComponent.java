@@ -137,6 +137,28 @@ public abstract class RComponent extends JavaElementPropertyAccessor {
         return findContextHeirarchy(component.getParent());
     }
 
+    @Override public String getAttribute(String name) {
+        RecordingSnapshot snapshot = isSnapshotCacheable() ? RecordingSnapshot.get(this, omapConfig) : null;
+        if (snapshot == null)
+            return findAttribute(name);
+        return snapshot.getAttribute(this, name);
+    }
+
+    /**
+     * Reads the attribute from the component, bypassing the snapshot.
+     */
+    String findAttribute(String name) {
+        return super.getAttribute(name);
+    }
+
+    /**
+     * Whether the attribute values can be reused across events. Components
+     * whose text depends on the item or cell the event is on return false.
+     */
+    protected boolean isSnapshotCacheable() {
+        return true;
+    }
+
     public JSONObject findContextHeirarchy(Container parent) {
         JSONObject r = null;
         JSONObject current = null;
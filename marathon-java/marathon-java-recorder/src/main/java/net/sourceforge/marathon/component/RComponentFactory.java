@@ -20,7 +20,11 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Window;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.AbstractButton;
 import javax.swing.JColorChooser;
@@ -77,6 +81,14 @@ public class RComponentFactory {
 
     private static LinkedList<IRComponentFinder> entries = new LinkedList<IRComponentFinder>();
 
+    /*
+     * The finders that can match a component class, in the order they are
+     * tried. Cleared whenever the finders change.
+     */
+    private static final Map<Class<?>, IRComponentFinder[]> finders = new ConcurrentHashMap<Class<?>, IRComponentFinder[]>();
+
+    private static final Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
     static {
     }
 
@@ -85,11 +97,17 @@ public class RComponentFactory {
     }
 
     public static void add(IRComponentFinder f) {
-        entries.addFirst(f);
+        synchronized (entries) {
+            entries.addFirst(f);
+            finders.clear();
+        }
     }
 
     public static void reset() {
-        entries.clear();
+        synchronized (entries) {
+            entries.clear();
+            finders.clear();
+        }
         add(Component.class, RUnknownComponent.class);
         add(Window.class, RWindow.class);
         add(JTable.class, RTable.class);
@@ -127,14 +145,12 @@ public class RComponentFactory {
     }
 
     public RComponent findRawRComponent(Component source, Point point, IJSONRecorder recorder) {
-        for (IRComponentFinder entry : entries) {
+        for (IRComponentFinder entry : getFinders(source.getClass())) {
             Class<? extends RComponent> k = entry.get(source);
             if (k == null)
                 continue;
             try {
-                Constructor<? extends RComponent> cons = k.getConstructor(Component.class, JSONOMapConfig.class, Point.class,
-                        IJSONRecorder.class);
-                return cons.newInstance(source, omapConfig, point, recorder);
+                return getConstructor(k).newInstance(source, omapConfig, point, recorder);
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -142,6 +158,37 @@ public class RComponentFactory {
         return null;
     }
 
+    /*
+     * Instance checks are resolved once per component class. Other finders
+     * are always tried since they may look at the component itself.
+     */
+    private static IRComponentFinder[] getFinders(Class<?> componentKlass) {
+        IRComponentFinder[] r = finders.get(componentKlass);
+        if (r != null)
+            return r;
+        synchronized (entries) {
+            List<IRComponentFinder> matching = new ArrayList<IRComponentFinder>();
+            for (IRComponentFinder entry : entries) {
+                if (!(entry instanceof InstanceCheckFinder)
+                        || ((InstanceCheckFinder) entry).componentKlass.isAssignableFrom(componentKlass))
+                    matching.add(entry);
+            }
+            r = matching.toArray(new IRComponentFinder[matching.size()]);
+            finders.put(componentKlass, r);
+        }
+        return r;
+    }
+
+    @SuppressWarnings("unchecked") private static Constructor<? extends RComponent> getConstructor(
+            Class<? extends RComponent> klass) throws NoSuchMethodException {
+        Constructor<? extends RComponent> constructor = (Constructor<? extends RComponent>) constructors.get(klass);
+        if (constructor == null) {
+            constructor = klass.getConstructor(Component.class, JSONOMapConfig.class, Point.class, IJSONRecorder.class);
+            constructors.put(klass, constructor);
+        }
+        return constructor;
+    }
+
     public Component getComponent(Component component, Point location) {
         Component parent = component.getParent();
         Component grandparent = parent != null ? parent.getParent() : null;
@@ -29,6 +29,10 @@ public class RDefaultEditor extends RComponent {
         super(source, omapConfig, point, recorder);
     }
 
+    @Override protected boolean isSnapshotCacheable() {
+        return false;
+    }
+
     @Override public String getText() {
         if (component instanceof JSpinner.DefaultEditor) {
             String text = ((JSpinner.DefaultEditor) component).getTextField().getText();
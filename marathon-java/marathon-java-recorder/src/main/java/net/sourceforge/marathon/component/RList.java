@@ -42,6 +42,10 @@ public class RList extends RComponent {
         recorder.recordSelect(this, text);
     }
 
+    @Override protected boolean isSnapshotCacheable() {
+        return false;
+    }
+
     @Override public String getText() {
         return JListJavaElement.getSelectionText((JList) component);
     }
@@ -42,6 +42,10 @@ public class RSlider extends RComponent {
         value = ((JSlider) component).getValue();
     }
 
+    @Override protected boolean isSnapshotCacheable() {
+        return false;
+    }
+
     @Override public String getText() {
         return JSliderJavaElement.getCurrentValue((JSlider) component);
     }
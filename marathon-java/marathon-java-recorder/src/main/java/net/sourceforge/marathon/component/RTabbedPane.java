@@ -44,6 +44,10 @@ public class RTabbedPane extends RComponent {
         return JTabbedPaneJavaElement.getContent((JTabbedPane) component);
     }
 
+    @Override protected boolean isSnapshotCacheable() {
+        return false;
+    }
+
     @Override public String getText() {
         return JTabbedPaneJavaElement.getSelectedItemText((JTabbedPane) component);
     }
@@ -174,6 +174,10 @@ public class RTable extends RComponent {
         return JTableJavaElement.getContent((JTable) component);
     }
 
+    @Override protected boolean isSnapshotCacheable() {
+        return false;
+    }
+
     @Override public String getText() {
         if (row != -1 && column != -1) {
             Component renderer = getRenderer();
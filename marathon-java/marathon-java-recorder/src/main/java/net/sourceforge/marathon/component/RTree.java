@@ -77,6 +77,10 @@ public class RTree extends RComponent {
         text = getText();
     }
 
+    @Override protected boolean isSnapshotCacheable() {
+        return false;
+    }
+
     public String getText() {
         JTree tree = (JTree) component;
         if (row == -1)
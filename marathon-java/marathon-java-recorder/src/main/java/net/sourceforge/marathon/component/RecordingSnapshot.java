@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.component;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+
+import net.sourceforge.marathon.javarecorder.JSONOMapConfig;
+
+/**
+ * The attribute values of a component, read once and reused for the events
+ * that follow. The URP, attributes and context hierarchy are still worked
+ * out for every event from these values, so that the uniqueness check sees
+ * the other components as they are now.
+ *
+ * Attributes that read other components - labeledBy, precedingLabel,
+ * position and property paths - are not cached.
+ *
+ * A snapshot is dropped when a property or the bounds of the component
+ * change. All the snapshots are dropped when the component hierarchy, the
+ * focus or the windows change anywhere in the application. Edits to the
+ * document of a text component only refresh the text properties. When the
+ * event listener can't be installed nothing is cached.
+ */
+class RecordingSnapshot {
+
+    private static final Logger logger = Logger.getLogger(RecordingSnapshot.class.getName());
+
+    private static final Map<Component, RecordingSnapshot> snapshots = new WeakHashMap<Component, RecordingSnapshot>();
+    private static long generation;
+    private static boolean installed;
+    private static boolean listening;
+
+    private static final AWTEventListener eventListener = new AWTEventListener() {
+        @Override public void eventDispatched(AWTEvent event) {
+            synchronized (RecordingSnapshot.class) {
+                generation++;
+            }
+        }
+    };
+
+    private static final List<String> TEXT_PROPERTIES = Arrays.asList("text", "cText");
+    private static final List<String> NEIGHBOUR_PROPERTIES = Arrays.asList("labeledBy", "precedingLabel", "position");
+
+    private final Class<?> rclass;
+    private final JSONOMapConfig config;
+    private final long snapshotGeneration;
+    private boolean stale;
+    private int textRevision;
+
+    private final Map<String, String> values = new HashMap<String, String>();
+    private int valuesRevision;
+
+    private RecordingSnapshot(Class<?> rclass, JSONOMapConfig config, long generation) {
+        this.rclass = rclass;
+        this.config = config;
+        this.snapshotGeneration = generation;
+    }
+
+    /**
+     * Returns the current snapshot for the component as seen by the given
+     * recording component, or null if the details can't be cached.
+     */
+    public static synchronized RecordingSnapshot get(RComponent r, JSONOMapConfig config) {
+        if (!install())
+            return null;
+        Component c = r.getComponent();
+        RecordingSnapshot snapshot = snapshots.get(c);
+        if (snapshot == null)
+            new Watcher(c).watch();
+        else if (!snapshot.stale && snapshot.snapshotGeneration == generation && snapshot.rclass == r.getClass()
+                && snapshot.config == config)
+            return snapshot;
+        snapshot = new RecordingSnapshot(r.getClass(), config, generation);
+        snapshots.put(c, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Returns the value of the attribute, reading it from the component the
+     * first time.
+     */
+    public String getAttribute(RComponent r, String name) {
+        if (name.contains(".") || name.startsWith("keystrokeFor-") || NEIGHBOUR_PROPERTIES.contains(name))
+            return r.findAttribute(name);
+        if (valuesRevision != textRevision) {
+            values.keySet().removeAll(TEXT_PROPERTIES);
+            valuesRevision = textRevision;
+        }
+        if (!values.containsKey(name))
+            values.put(name, r.findAttribute(name));
+        return values.get(name);
+    }
+
+    private static synchronized void textChanged(Component c) {
+        RecordingSnapshot snapshot = snapshots.get(c);
+        if (snapshot != null)
+            snapshot.textRevision++;
+    }
+
+    private static synchronized void invalidate(Component c) {
+        RecordingSnapshot snapshot = snapshots.get(c);
+        if (snapshot != null)
+            snapshot.stale = true;
+    }
+
+    private static boolean install() {
+        if (installed)
+            return listening;
+        installed = true;
+        try {
+            Toolkit.getDefaultToolkit().addAWTEventListener(eventListener, AWTEvent.HIERARCHY_EVENT_MASK
+                    | AWTEvent.CONTAINER_EVENT_MASK | AWTEvent.FOCUS_EVENT_MASK | AWTEvent.WINDOW_EVENT_MASK);
+            listening = true;
+        } catch (SecurityException e) {
+            logger.log(Level.WARNING, "Unable to listen for hierarchy events. Recording details are not cached", e);
+        }
+        return listening;
+    }
+
+    private static class Watcher implements PropertyChangeListener, ComponentListener, DocumentListener {
+        private final Component component;
+        private Document document;
+
+        public Watcher(Component component) {
+            this.component = component;
+        }
+
+        public void watch() {
+            component.addPropertyChangeListener(this);
+            component.addComponentListener(this);
+            if (component instanceof JTextComponent)
+                setDocument(((JTextComponent) component).getDocument());
+        }
+
+        private void setDocument(Document document) {
+            if (this.document != null)
+                this.document.removeDocumentListener(this);
+            this.document = document;
+            if (document != null)
+                document.addDocumentListener(this);
+        }
+
+        @Override public void propertyChange(PropertyChangeEvent evt) {
+            if ("document".equals(evt.getPropertyName()) && component instanceof JTextComponent)
+                setDocument(((JTextComponent) component).getDocument());
+            invalidate(component);
+        }
+
+        @Override public void componentResized(ComponentEvent e) {
+            invalidate(component);
+        }
+
+        @Override public void componentMoved(ComponentEvent e) {
+            invalidate(component);
+        }
+
+        @Override public void componentShown(ComponentEvent e) {
+            invalidate(component);
+        }
+
+        @Override public void componentHidden(ComponentEvent e) {
+            invalidate(component);
+        }
+
+        @Override public void insertUpdate(DocumentEvent e) {
+            textChanged(component);
+        }
+
+        @Override public void removeUpdate(DocumentEvent e) {
+            textChanged(component);
+        }
+
+        @Override public void changedUpdate(DocumentEvent e) {
+            textChanged(component);
+        }
+    }
+}
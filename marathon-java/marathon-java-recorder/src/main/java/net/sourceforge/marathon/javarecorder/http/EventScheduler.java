@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javarecorder.http;
+
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds back recorded events that can be superseded by a later event on the
+ * same component, using one scheduler thread shared by all recorders.
+ *
+ * A single click is held for the multi-click interval and is dropped when a
+ * double click follows on the same component. A click on another component
+ * sends the held click at once. Window state changes are held for a short
+ * while and only the last one for a window is sent.
+ */
+public class EventScheduler {
+
+    private static final Logger logger = Logger.getLogger(EventScheduler.class.getName());
+
+    public static final long MULTI_CLICK_INTERVAL = getMultiClickInterval();
+    public static final long WINDOW_STATE_DELAY = 200;
+
+    private static final ScheduledExecutorService sharedScheduler = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Marathon Recorder Scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final ScheduledExecutorService scheduler;
+    private final long multiClickInterval;
+    private final long windowStateDelay;
+    private final Map<Object, Pending> clicks = new HashMap<Object, Pending>();
+    private final Map<Object, Pending> windowStates = new HashMap<Object, Pending>();
+
+    public EventScheduler() {
+        this(sharedScheduler, MULTI_CLICK_INTERVAL, WINDOW_STATE_DELAY);
+    }
+
+    EventScheduler(ScheduledExecutorService scheduler, long multiClickInterval, long windowStateDelay) {
+        this.scheduler = scheduler;
+        this.multiClickInterval = multiClickInterval;
+        this.windowStateDelay = windowStateDelay;
+    }
+
+    private static long getMultiClickInterval() {
+        try {
+            Object interval = Toolkit.getDefaultToolkit().getDesktopProperty("awt.multiClickInterval");
+            if (interval instanceof Integer)
+                return ((Integer) interval).longValue();
+        } catch (Throwable t) {
+            logger.log(Level.INFO, "Unable to get the multi-click interval, using the default", t);
+        }
+        return 300;
+    }
+
+    /**
+     * Records a click on the component. A single click is sent after the
+     * multi-click interval unless a double click on the same component comes
+     * in first. A double click is sent at once. Clicks with a higher count are
+     * ignored.
+     */
+    public void click(Object component, int clickCount, Runnable send) {
+        sendOtherClicks(component);
+        if (clickCount == 1) {
+            Pending previous = schedule(clicks, component, send, multiClickInterval);
+            // Not a double click after all, send the earlier click first
+            if (previous != null)
+                previous.runnable.run();
+        } else if (clickCount == 2) {
+            cancel(clicks, component);
+            send.run();
+        }
+    }
+
+    /**
+     * Records a window state change. Only the last change within the delay is
+     * sent.
+     */
+    public void windowState(Object window, Runnable send) {
+        schedule(windowStates, window, send, windowStateDelay);
+    }
+
+    /**
+     * Sends the clicks held for other components, so that the clicks are sent
+     * in the order they happened.
+     */
+    private void sendOtherClicks(Object component) {
+        List<Pending> others = new ArrayList<Pending>();
+        synchronized (this) {
+            for (Iterator<Map.Entry<Object, Pending>> it = clicks.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<Object, Pending> entry = it.next();
+                if (!entry.getKey().equals(component)) {
+                    others.add(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+        for (Pending p : others) {
+            if (p.cancel())
+                p.runnable.run();
+        }
+    }
+
+    /**
+     * Schedules the runnable for the key replacing the pending one, which is
+     * cancelled and returned if it has not run yet.
+     */
+    private Pending schedule(Map<Object, Pending> pending, Object key, Runnable r, long delay) {
+        Pending p = new Pending(pending, key, r);
+        Pending previous;
+        synchronized (this) {
+            previous = pending.put(key, p);
+            p.future = scheduler.schedule(p, delay, TimeUnit.MILLISECONDS);
+        }
+        if (previous != null && previous.cancel())
+            return previous;
+        return null;
+    }
+
+    private void cancel(Map<Object, Pending> pending, Object key) {
+        Pending p;
+        synchronized (this) {
+            p = pending.remove(key);
+        }
+        if (p != null)
+            p.cancel();
+    }
+
+    private class Pending implements Runnable {
+        private final Map<Object, Pending> pending;
+        private final Object key;
+        private final Runnable runnable;
+        private ScheduledFuture<?> future;
+        private boolean done;
+
+        public Pending(Map<Object, Pending> pending, Object key, Runnable runnable) {
+            this.pending = pending;
+            this.key = key;
+            this.runnable = runnable;
+        }
+
+        @Override public void run() {
+            synchronized (EventScheduler.this) {
+                if (done)
+                    return;
+                done = true;
+                if (pending.get(key) == this)
+                    pending.remove(key);
+            }
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                logger.log(Level.WARNING, "Unable to record the event", t);
+            }
+        }
+
+        /**
+         * Returns true if the runnable had not run and will not run now.
+         */
+        public boolean cancel() {
+            synchronized (EventScheduler.this) {
+                if (done)
+                    return false;
+                done = true;
+            }
+            future.cancel(false);
+            return true;
+        }
+    }
+}
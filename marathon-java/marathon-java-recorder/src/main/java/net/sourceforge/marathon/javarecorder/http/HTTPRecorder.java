@@ -17,7 +17,6 @@ package net.sourceforge.marathon.javarecorder.http;
 
 import java.awt.Container;
 import java.awt.Rectangle;
-import java.awt.Toolkit;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
@@ -30,8 +29,6 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -51,20 +48,14 @@ public class HTTPRecorder implements IJSONRecorder {
     private int port;
     private String base;
     private String sessionID;
-    private Timer clickTimer;
-    private static Integer timerinterval;
-    private Timer windowStateTimer;
-
-    static {
-        timerinterval = (Integer) Toolkit.getDefaultToolkit().getDesktopProperty("awt.multiClickInterval");
-        if (timerinterval == null)
-            timerinterval = Integer.valueOf(300);
-    }
+    private RecordingQueue recordingQueue;
+    private final EventScheduler scheduler = new EventScheduler();
 
     public HTTPRecorder(int port) throws IOException {
         base = "http://localhost:" + port;
         this.port = port;
         createSession();
+        recordingQueue = new RecordingQueue(this);
     }
 
     private void createSession() throws IOException {
@@ -120,20 +111,11 @@ public class HTTPRecorder implements IJSONRecorder {
         final JSONObject o = new JSONObject();
         o.put("event", event);
         fill(r, o);
-        if (e.getClickCount() == 1) {
-            clickTimer = new Timer();
-            clickTimer.schedule(new TimerTask() {
-                @Override public void run() {
-                    sendRecordMessage(o);
-                }
-            }, timerinterval.intValue());
-        } else if (e.getClickCount() == 2) {
-            if (clickTimer != null) {
-                clickTimer.cancel();
-                clickTimer = null;
+        scheduler.click(r.getComponent(), e.getClickCount(), new Runnable() {
+            @Override public void run() {
+                sendRecordMessage(o);
             }
-            sendRecordMessage(o);
-        }
+        });
     }
 
     @Override public void recordRawMouseEvent(final RComponent r, MouseEvent e) {
@@ -148,20 +130,11 @@ public class HTTPRecorder implements IJSONRecorder {
         final JSONObject o = new JSONObject();
         o.put("event", event);
         fill(r, o);
-        if (e.getClickCount() == 1) {
-            clickTimer = new Timer();
-            clickTimer.schedule(new TimerTask() {
-                @Override public void run() {
-                    sendRecordMessage(o);
-                }
-            }, timerinterval.intValue());
-        } else if (e.getClickCount() == 2) {
-            if (clickTimer != null) {
-                clickTimer.cancel();
-                clickTimer = null;
+        scheduler.click(r.getComponent(), e.getClickCount(), new Runnable() {
+            @Override public void run() {
+                sendRecordMessage(o);
             }
-            sendRecordMessage(o);
-        }
+        });
     }
 
     private String buildModifiersText(InputEvent e) {
@@ -249,12 +222,7 @@ public class HTTPRecorder implements IJSONRecorder {
     }
 
     private void sendRecordMessage(JSONObject o) {
-        try {
-            postJSON("record", o);
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        }
+        recordingQueue.send(o);
     }
 
     private void fill(RComponent r, JSONObject o) {
@@ -296,15 +264,11 @@ public class HTTPRecorder implements IJSONRecorder {
         event.put("bounds", bounds.x + ":" + bounds.y + ":" + bounds.width + ":" + bounds.height);
         final JSONObject o = new JSONObject();
         o.put("event", event);
-        if (windowStateTimer != null)
-            windowStateTimer.cancel();
-        windowStateTimer = new Timer();
-        windowStateTimer.schedule(new TimerTask() {
+        scheduler.windowState(r.getComponent(), new Runnable() {
             @Override public void run() {
                 recordEvent(r, event);
-                windowStateTimer = null;
             }
-        }, 200);
+        });
     }
 
     @Override public JSONOMapConfig getObjectMapConfiguration() throws IOException {
@@ -396,8 +360,9 @@ public class HTTPRecorder implements IJSONRecorder {
 
     @Override public void recordFocusedWindow(RComponent r) throws IOException {
         JSONObject o = new JSONObject();
+        o.put("request", "focused-window");
         o.put("container", r.findContextHeirarchy((Container) r.getComponent()));
-        postJSON("focused_window", o);
+        recordingQueue.send(o);
     }
 
 }
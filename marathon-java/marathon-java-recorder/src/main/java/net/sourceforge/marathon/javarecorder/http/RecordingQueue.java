@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javarecorder.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import fi.iki.elonen.NanoHTTPD.Response;
+import fi.iki.elonen.NanoHTTPD.Response.Status;
+
+/**
+ * Sends the recorded events to the recording server from a background thread.
+ *
+ * Messages are queued in the order they are recorded. The sender posts all the
+ * queued messages in one request to the <code>record_all</code> route,
+ * waiting up to <code>marathon.recorder.batch.delay</code> milliseconds for
+ * more messages to arrive. Window and focus changes cut the batch short so
+ * that they reach the server without delay. The response is read fully so the
+ * connection is kept alive between the requests.
+ *
+ * A failed request is reported by the next call to {@link #send(JSONObject)},
+ * after the message given to it is queued.
+ */
+public class RecordingQueue implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(RecordingQueue.class.getName());
+
+    private static final long BATCH_DELAY = Long.parseLong(System.getProperty("marathon.recorder.batch.delay", "20"));
+    private static final int MAX_BATCH = Integer.parseInt(System.getProperty("marathon.recorder.batch.size", "64"));
+    private static final long FLUSH_TIMEOUT = 5000;
+
+    private final HTTPRecorder recorder;
+    private final long batchDelay;
+    private final LinkedBlockingQueue<JSONObject> queue = new LinkedBlockingQueue<JSONObject>();
+    private final Object lock = new Object();
+    private long queued;
+    private long sent;
+    private volatile Throwable failure;
+
+    public RecordingQueue(HTTPRecorder recorder) {
+        this(recorder, BATCH_DELAY);
+    }
+
+    RecordingQueue(HTTPRecorder recorder, long batchDelay) {
+        this.recorder = recorder;
+        this.batchDelay = batchDelay;
+        Thread thread = new Thread(this, "Marathon Recording Sender");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread("Marathon Recording Flush") {
+                @Override public void run() {
+                    flush();
+                }
+            });
+        } catch (SecurityException e) {
+            logger.log(Level.WARNING, "Unable to add a shutdown hook for the recorded events", e);
+        }
+    }
+
+    public void send(JSONObject message) {
+        synchronized (lock) {
+            queued++;
+        }
+        queue.add(message);
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        Throwable t = failure;
+        if (t != null) {
+            failure = null;
+            throw new RuntimeException("Unable to send the recorded events: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Waits up to 5 seconds till all the messages queued so far are sent.
+     * Called from the shutdown hook. The recorder does not wait on the event
+     * thread - window changes are sent without delay.
+     */
+    void flush() {
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT;
+        synchronized (lock) {
+            long target = queued;
+            while (sent < target) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    logger.warning("Timed out waiting for the recorded events to be sent");
+                    return;
+                }
+                try {
+                    lock.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override public void run() {
+        List<JSONObject> batch = new ArrayList<JSONObject>();
+        while (true) {
+            try {
+                collect(batch);
+                post(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable t) {
+                logger.log(Level.WARNING, "Unable to send the recorded events", t);
+                failure = t;
+            } finally {
+                synchronized (lock) {
+                    sent += batch.size();
+                    lock.notifyAll();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<JSONObject> batch) throws InterruptedException {
+        JSONObject message = queue.take();
+        batch.add(message);
+        long deadline = System.currentTimeMillis() + batchDelay;
+        while (!isWindowChange(message) && batch.size() < MAX_BATCH) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0)
+                break;
+            message = queue.poll(wait, TimeUnit.MILLISECONDS);
+            if (message == null)
+                break;
+            batch.add(message);
+        }
+    }
+
+    private boolean isWindowChange(JSONObject message) {
+        if ("focused-window".equals(message.optString("request")))
+            return true;
+        JSONObject event = message.optJSONObject("event");
+        return event != null && event.optString("type").startsWith("window_");
+    }
+
+    private void post(List<JSONObject> batch) throws IOException {
+        JSONArray events = new JSONArray();
+        for (JSONObject message : batch)
+            events.put(message);
+        Response response = post(new JSONObject().put("events", events).toString());
+        if (response == null)
+            throw new IOException("No response from the recording server");
+        InputStream data = response.getData();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = data.read(buffer)) != -1)
+                body.write(buffer, 0, n);
+        } finally {
+            data.close();
+        }
+        if (response.getStatus() != Status.OK)
+            throw new IOException("Recording server returned " + response.getStatus());
+        checkResult(body.toString("UTF-8"));
+    }
+
+    /**
+     * Fails if the server could not handle the request at all and logs the
+     * messages of the batch that the server could not record.
+     */
+    private void checkResult(String body) throws IOException {
+        JSONObject result;
+        try {
+            result = new JSONObject(body);
+        } catch (JSONException e) {
+            return;
+        }
+        JSONObject value = result.optJSONObject("value");
+        if (result.optInt("status") != 0)
+            throw new IOException("Recording server failed: " + (value == null ? body : value.optString("message")));
+        JSONArray errors = value == null ? null : value.optJSONArray("errors");
+        if (errors == null)
+            return;
+        for (int i = 0; i < errors.length(); i++) {
+            JSONObject error = errors.getJSONObject(i);
+            logger.warning("Unable to record event " + error.opt("index") + ": " + error.opt("message"));
+        }
+    }
+
+    protected Response post(String data) throws IOException {
+        return recorder.post("record_all", data);
+    }
+}
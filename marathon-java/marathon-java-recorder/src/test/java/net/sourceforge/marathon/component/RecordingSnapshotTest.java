@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.component;
+
+import java.awt.FlowLayout;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JTextField;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test public class RecordingSnapshotTest extends RComponentTest {
+
+    protected JFrame frame;
+    protected JLabel label;
+    protected JTextField field;
+    protected JButton ok;
+    protected JButton cancel;
+
+    private String value;
+    private Map<String, String> urp;
+
+    @BeforeMethod public void showDialog() throws Throwable {
+        siw(new Runnable() {
+            @Override public void run() {
+                frame = new JFrame(RecordingSnapshotTest.class.getSimpleName());
+                frame.setName("frame-" + RecordingSnapshotTest.class.getSimpleName());
+                frame.getContentPane().setLayout(new FlowLayout());
+                label = new JLabel("Name:");
+                field = new JTextField(20);
+                label.setLabelFor(field);
+                ok = new JButton("OK");
+                ok.setName("ok");
+                cancel = new JButton("Cancel");
+                cancel.setName("cancel");
+                frame.getContentPane().add(label);
+                frame.getContentPane().add(field);
+                frame.getContentPane().add(ok);
+                frame.getContentPane().add(cancel);
+                frame.pack();
+                frame.setVisible(true);
+            }
+        });
+    }
+
+    @AfterMethod public void disposeDriver() throws Throwable {
+        siw(new Runnable() {
+            @Override public void run() {
+                frame.setVisible(false);
+                frame.dispose();
+            }
+        });
+    }
+
+    public void attributeFollowsTheComponent() {
+        AssertJUnit.assertEquals("OK", getAttribute(ok, "text"));
+        siw(new Runnable() {
+            @Override public void run() {
+                ok.setText("Yes");
+                value = new RAbstractButton(ok, null, null, null).getAttribute("text");
+            }
+        });
+        AssertJUnit.assertEquals("Yes", value);
+    }
+
+    public void labeledByFollowsTheLabel() {
+        AssertJUnit.assertEquals("Name", getAttribute(field, "labeledBy"));
+        siw(new Runnable() {
+            @Override public void run() {
+                label.setText("Nick:");
+                value = new RTextComponent(field, null, null, null).getAttribute("labeledBy");
+            }
+        });
+        AssertJUnit.assertEquals("Nick", value);
+    }
+
+    public void precedingLabelFollowsTheLabel() {
+        AssertJUnit.assertEquals("Name", getAttribute(field, "precedingLabel"));
+        siw(new Runnable() {
+            @Override public void run() {
+                label.setText("Nick:");
+                value = new RTextComponent(field, null, null, null).getAttribute("precedingLabel");
+            }
+        });
+        AssertJUnit.assertEquals("Nick", value);
+    }
+
+    public void urpChecksTheOtherComponents() {
+        @SuppressWarnings("unchecked")
+        final List<List<String>> rp = Arrays.asList(Arrays.asList("text"), Arrays.asList("name"));
+        siw(new Runnable() {
+            @Override public void run() {
+                urp = new RAbstractButton(ok, null, null, null).findURP(rp);
+            }
+        });
+        AssertJUnit.assertEquals(map("text", "OK"), urp);
+        siw(new Runnable() {
+            @Override public void run() {
+                cancel.setText("OK");
+                urp = new RAbstractButton(ok, null, null, null).findURP(rp);
+            }
+        });
+        AssertJUnit.assertEquals(map("name", "ok"), urp);
+    }
+
+    private String getAttribute(final JTextField c, final String name) {
+        siw(new Runnable() {
+            @Override public void run() {
+                value = new RTextComponent(c, null, null, null).getAttribute(name);
+            }
+        });
+        return value;
+    }
+
+    private String getAttribute(final JButton c, final String name) {
+        siw(new Runnable() {
+            @Override public void run() {
+                value = new RAbstractButton(c, null, null, null).getAttribute(name);
+            }
+        });
+        return value;
+    }
+
+    private static Map<String, String> map(String key, String value) {
+        Map<String, String> r = new HashMap<String, String>();
+        r.put(key, value);
+        return r;
+    }
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javarecorder.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test public class EventSchedulerTest {
+
+    private static final long INTERVAL = 300;
+    private static final long DELAY = 200;
+
+    private final List<String> sent = new ArrayList<String>();
+    private ManualScheduler clock;
+    private EventScheduler scheduler;
+
+    @BeforeMethod public void setup() {
+        sent.clear();
+        clock = new ManualScheduler();
+        scheduler = new EventScheduler(clock, INTERVAL, DELAY);
+    }
+
+    private Runnable send(final String event) {
+        return new Runnable() {
+            @Override public void run() {
+                sent.add(event);
+            }
+        };
+    }
+
+    public void singleClickIsSentAfterTheInterval() {
+        scheduler.click("button", 1, send("click"));
+        clock.advance(INTERVAL - 1);
+        AssertJUnit.assertTrue(sent.isEmpty());
+        clock.advance(1);
+        AssertJUnit.assertEquals("[click]", sent.toString());
+    }
+
+    public void doubleClickReplacesSingleClick() {
+        scheduler.click("button", 1, send("click"));
+        scheduler.click("button", 2, send("double-click"));
+        scheduler.click("button", 3, send("triple-click"));
+        clock.advance(INTERVAL);
+        AssertJUnit.assertEquals("[double-click]", sent.toString());
+    }
+
+    public void repeatedSingleClicksAreAllSent() {
+        scheduler.click("button", 1, send("click1"));
+        scheduler.click("button", 1, send("click2"));
+        AssertJUnit.assertEquals("[click1]", sent.toString());
+        clock.advance(INTERVAL);
+        AssertJUnit.assertEquals("[click1, click2]", sent.toString());
+    }
+
+    public void clicksOnOtherComponentsAreKept() {
+        scheduler.click("button1", 1, send("click1"));
+        scheduler.click("button2", 1, send("click2"));
+        scheduler.click("button2", 2, send("double-click2"));
+        AssertJUnit.assertEquals("[click1, double-click2]", sent.toString());
+        clock.advance(INTERVAL);
+        AssertJUnit.assertEquals("[click1, double-click2]", sent.toString());
+    }
+
+    public void windowStateIsDebounced() {
+        scheduler.windowState("frame", send("state1"));
+        scheduler.windowState("frame", send("state2"));
+        scheduler.windowState("dialog", send("state3"));
+        clock.advance(DELAY - 1);
+        AssertJUnit.assertTrue(sent.isEmpty());
+        clock.advance(1);
+        Collections.sort(sent);
+        AssertJUnit.assertEquals("[state2, state3]", sent.toString());
+    }
+
+    /**
+     * Runs the scheduled tasks on the test thread when the test moves the time
+     * forward.
+     */
+    private static class ManualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+        private final List<Task> tasks = new ArrayList<Task>();
+        private long now;
+
+        public void advance(long millis) {
+            now += millis;
+            while (true) {
+                Task next = null;
+                for (Task task : tasks) {
+                    if (task.time <= now && (next == null || task.time < next.time))
+                        next = task;
+                }
+                if (next == null)
+                    return;
+                tasks.remove(next);
+                if (!next.cancelled)
+                    next.command.run();
+            }
+        }
+
+        @Override public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            Task task = new Task(command, now + unit.toMillis(delay));
+            tasks.add(task);
+            return task;
+        }
+
+        @Override public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public void execute(Runnable command) {
+            schedule(command, 0, TimeUnit.MILLISECONDS);
+        }
+
+        @Override public void shutdown() {
+        }
+
+        @Override public List<Runnable> shutdownNow() {
+            return new ArrayList<Runnable>();
+        }
+
+        @Override public boolean isShutdown() {
+            return false;
+        }
+
+        @Override public boolean isTerminated() {
+            return false;
+        }
+
+        @Override public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+
+        private class Task implements ScheduledFuture<Object> {
+            private final Runnable command;
+            private final long time;
+            private boolean cancelled;
+
+            public Task(Runnable command, long time) {
+                this.command = command;
+                this.time = time;
+            }
+
+            @Override public long getDelay(TimeUnit unit) {
+                return unit.convert(time - now, TimeUnit.MILLISECONDS);
+            }
+
+            @Override public int compareTo(Delayed o) {
+                return Long.valueOf(getDelay(TimeUnit.MILLISECONDS)).compareTo(o.getDelay(TimeUnit.MILLISECONDS));
+            }
+
+            @Override public boolean cancel(boolean mayInterruptIfRunning) {
+                if (cancelled || !tasks.contains(this))
+                    return false;
+                cancelled = true;
+                return true;
+            }
+
+            @Override public boolean isCancelled() {
+                return cancelled;
+            }
+
+            @Override public boolean isDone() {
+                return cancelled || !tasks.contains(this);
+            }
+
+            @Override public Object get() {
+                return null;
+            }
+
+            @Override public Object get(long timeout, TimeUnit unit) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javarecorder.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import fi.iki.elonen.NanoHTTPD.Response;
+import fi.iki.elonen.NanoHTTPD.Response.Status;
+
+@Test public class RecordingQueueTest {
+
+    private final List<String> batches = Collections.synchronizedList(new ArrayList<String>());
+    private volatile boolean failing;
+    private volatile String result;
+
+    @BeforeMethod public void clear() {
+        batches.clear();
+        failing = false;
+        result = "{\"status\":0,\"value\":{}}";
+    }
+
+    private RecordingQueue createQueue() {
+        // A long delay - only window changes and flush end a batch
+        return new RecordingQueue(null, 60000) {
+            @Override protected Response post(String data) throws IOException {
+                if (failing)
+                    throw new IOException("Connection refused");
+                JSONArray events = new JSONObject(data).getJSONArray("events");
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < events.length(); i++)
+                    sb.append(i > 0 ? "," : "").append(events.getJSONObject(i).getString("name"));
+                batches.add(sb.toString());
+                return new Response(Status.OK, "application/json", result);
+            }
+        };
+    }
+
+    private JSONObject event(String name, String type) {
+        return new JSONObject().put("name", name).put("event", new JSONObject().put("type", type));
+    }
+
+    private JSONObject focusedWindow(String name) {
+        return new JSONObject().put("name", name).put("request", "focused-window");
+    }
+
+    public void windowChangesEndTheBatch() {
+        RecordingQueue queue = createQueue();
+        queue.send(event("click1", "click"));
+        queue.send(event("select1", "select"));
+        queue.send(focusedWindow("focus"));
+        queue.send(event("click2", "click"));
+        queue.send(event("closed", "window_closed"));
+        queue.flush();
+        AssertJUnit.assertEquals("[click1,select1,focus, click2,closed]", batches.toString());
+    }
+
+    public void failedPostIsReportedOnTheNextSend() {
+        RecordingQueue queue = createQueue();
+        failing = true;
+        queue.send(event("closed1", "window_closed"));
+        queue.flush();
+        failing = false;
+        try {
+            queue.send(event("closed2", "window_closed"));
+            AssertJUnit.fail("Expected the failure to be reported");
+        } catch (RuntimeException e) {
+            AssertJUnit.assertTrue(e.getCause() instanceof IOException);
+        }
+        queue.send(event("closed3", "window_closed"));
+        queue.flush();
+        AssertJUnit.assertEquals("[closed2, closed3]", batches.toString());
+    }
+
+    public void serverErrorIsReportedOnTheNextSend() {
+        RecordingQueue queue = createQueue();
+        result = "{\"status\":13,\"value\":{\"message\":\"No events\"}}";
+        queue.send(event("closed1", "window_closed"));
+        queue.flush();
+        result = "{\"status\":0,\"value\":{\"errors\":[{\"index\":0,\"message\":\"Bad event\"}]}}";
+        try {
+            queue.send(event("closed2", "window_closed"));
+            AssertJUnit.fail("Expected the failure to be reported");
+        } catch (RuntimeException e) {
+            AssertJUnit.assertTrue(e.getMessage().contains("No events"));
+        }
+        queue.send(event("closed3", "window_closed"));
+        queue.flush();
+        // Errors for single messages are only logged
+        queue.send(event("closed4", "window_closed"));
+        queue.flush();
+        AssertJUnit.assertEquals("[closed1, closed2, closed3, closed4]", batches.toString());
+    }
+}
@@ -15,6 +15,10 @@ java_import 'net.sourceforge.marathon.runtime.api.Constants'
 java_import 'net.sourceforge.marathon.api.TestAttributes'
 
 require 'marathon/results'
+require 'net/http'
+require 'erb'
+
+Selenium::WebDriver::Remote::Bridge.command :batch, :post, "session/:session_id/batch"
 
 class RubyMarathon < MarathonRuby
 
@@ -120,48 +124,75 @@ class RubyMarathon < MarathonRuby
         return @webdriver.current_url
     end
 
-    def get_leaf_component(id, editor=false, visibility = true)
-        css = getCSS(id, visibility).to_a
-        e = @current_search_context.find_element(:css => css[0])
-        e = e.find_element(:css => ".::" + css[1]) if css[1] != nil && !editor
-        e = e.find_element(:css => ".::" + css[1] + "::editor") if css[1] != nil && editor
-        return e
+    # Executes the given commands in a single round trip. Each command is a hash
+    # with :method, :path (relative to the session) and :query. A path segment
+    # or query value '$n' refers to the element returned by the n-th command.
+    def batch(*commands)
+        bridge = @webdriver.send(:bridge)
+        bridge.send(:execute, :batch, {}, :commands => commands)
     end
 
-    def clickInternal(id, position, clickCount, modifiers, popupTrigger)
-        e = get_leaf_component(id)
-        action = @webdriver.action
-        if(position == nil)
-           action.move_to(e)
+    # Commands that find the leaf component. The element is the result of the
+    # last command.
+    def leaf_component_commands(id, editor=false, visibility = true)
+        css = getCSS(id, visibility).to_a
+        commands = []
+        context = @current_search_context.ref
+        if context != nil
+            commands << { :path => "element/#{context}/element", :query => { :using => 'css selector', :value => css[0] } }
         else
-           action.move_to(e, position.x, position.y)
+            commands << { :path => "element", :query => { :using => 'css selector', :value => css[0] } }
+        end
+        if css[1] != nil
+            selector = ".::" + css[1]
+            selector = selector + "::editor" if editor
+            commands << { :path => "element/$0/element", :query => { :using => 'css selector', :value => selector } }
         end
+        return commands
+    end
+
+    def get_leaf_component(id, editor=false, visibility = true)
+        results = batch(*leaf_component_commands(id, editor, visibility))
+        return Selenium::WebDriver::Element.new(@webdriver.send(:bridge), results.last['ELEMENT'])
+    end
+
+    def leaf_component_attribute(id, property)
+        commands = leaf_component_commands(id)
+        commands << { :method => 'GET', :path => "element/$#{commands.size - 1}/attribute/#{ERB::Util.url_encode(property)}" }
+        batch(*commands).last
+    end
+
+    def modifier_keys(modifiers)
+        keys = []
         if modifiers != nil
             modifiers.split('+').each { |m|
-                action.key_down :shift if m == 'Shift'
-                action.key_down :alt if m == 'Alt'
-                action.key_down :meta if m == 'Meta'
-                action.key_down :control if m == 'Ctrl'
+                keys << :shift if m == 'Shift'
+                keys << :alt if m == 'Alt'
+                keys << :meta if m == 'Meta'
+                keys << :control if m == 'Ctrl'
             }
         end
+        return keys
+    end
+
+    def clickInternal(id, position, clickCount, modifiers, popupTrigger)
+        commands = leaf_component_commands(id)
+        moveto = { :element => "$#{commands.size - 1}" }
+        moveto.merge!(:xoffset => position.x, :yoffset => position.y) if position != nil
+        commands << { :path => "moveto", :query => moveto }
+        keys = modifier_keys(modifiers)
+        keys.each { |k| commands << { :path => "keys", :query => { :value => Selenium::WebDriver::Keys.encode([k]) } } }
         if popupTrigger
-            action.context_click
+            commands << { :path => "click", :query => { :button => 2 } }
         else
             if clickCount == 1
-                action.click
+                commands << { :path => "click", :query => { :button => 0 } }
             else
-                action.double_click
+                commands << { :path => "doubleclick" }
             end
         end
-        if modifiers != nil
-            modifiers.split('+').each { |m|
-                action.key_up :shift if m == 'Shift'
-                action.key_up :alt if m == 'Alt'
-                action.key_up :meta if m == 'Meta'
-                action.key_up :control if m == 'Ctrl'
-            }
-        end
-        action.perform
+        keys.each { |k| commands << { :path => "keys", :query => { :value => Selenium::WebDriver::Keys.encode([k]) } } }
+        batch(*commands)
     end
 
     def dragInternal(id, modifiers, startPos, endPos)
@@ -204,8 +235,7 @@ class RubyMarathon < MarathonRuby
     end
     
     def assertProperty(id, property, expected)
-        e = get_leaf_component(id)
-        actual = e.attribute property
+        actual = leaf_component_attribute(id, property)
         begin
           throw
         rescue
@@ -271,26 +301,42 @@ class RubyMarathon < MarathonRuby
         @collector.convert(backtrace)
     end
 
+    # The agent compares the content and sends back only the differences.
+    # Falls back to comparing the content attribute here when the agent does
+    # not have the assert_content command.
     def assertContent(id, expected)
-        e = get_leaf_component(id)
-        actual = e.attribute "content"
-        assertContentJava(expected.to_java([].to_java(:String).class), actual)
+        commands = leaf_component_commands(id)
+        commands << { :path => "element/$#{commands.size - 1}/assert_content", :query => { :expected => expected } }
+        begin
+            diff = batch(*commands).last
+        rescue Selenium::WebDriver::Error::WebDriverError => e
+            raise unless e.message =~ /code=405/
+            actual = leaf_component_attribute(id, "content")
+            return assertContentJava(expected.to_java([].to_java(:String).class), actual)
+        end
+        assertContentDiff(expected.to_java([].to_java(:String).class), Selenium::WebDriver.json_dump(diff))
     end
 
     def keystroke(id, keys)
         sleepForSlowPlay
-        e = get_leaf_component(id)
-        e.send_keys getCharSequence(keys)
+        commands = leaf_component_commands(id)
+        commands << { :path => "element/$#{commands.size - 1}/value", :query => { :value => Selenium::WebDriver::Keys.encode([getCharSequence(keys)]) } }
+        batch(*commands)
     end
 
     def selectString(id, text)
-        e = get_leaf_component(id, true)
-        e.find_element(:css, ".::call-select('" + text.gsub("\\", "\\\\\\\\").gsub("'", "\\\\'") + "')");
+        call_select(id, "call-select", text)
     end
 
     def selectProperties(id, text)
-        e = get_leaf_component(id, true)
-        e.find_element(:css, ".::call-select-by-properties('" + text.gsub("\\", "\\\\\\\\").gsub("'", "\\\\'") + "')");
+        call_select(id, "call-select-by-properties", text)
+    end
+
+    def call_select(id, method, text)
+        commands = leaf_component_commands(id, true)
+        selector = ".::" + method + "('" + text.gsub("\\", "\\\\\\\\").gsub("'", "\\\\'") + "')"
+        commands << { :path => "element/$#{commands.size - 1}/element", :query => { :using => 'css selector', :value => selector } }
+        batch(*commands)
     end
 
     def getComponent(id)
@@ -298,7 +344,7 @@ class RubyMarathon < MarathonRuby
     end
 
     def getProperty(id, property)
-      get_leaf_component(id).attribute property 
+      leaf_component_attribute(id, property)
     end
     
     def getComponent_any(id)
@@ -310,13 +356,47 @@ class RubyMarathon < MarathonRuby
     end
 
     def saveScreenShot(path)
-      @webdriver.save_screenshot(path)
-      return true
+      capture_image(path)
+    end
+    
+    def saveComponentScreenShot(path, id)
+      capture_image(path, id)
     end
     
     def saveScreenShotOnError
       f = getErrorScreenShotFile
-      @webdriver.save_screenshot(f) if f
+      capture_image(f) if f
+    end
+    
+    # Captures the current window (or the component) and streams the image
+    # bytes from the agent into the file. The format follows the file extension.
+    def capture_image(path, id = nil)
+      bridge = @webdriver.send(:bridge)
+      url = "session/#{bridge.session_id}/capture"
+      if id != nil
+        results = batch(*leaf_component_commands(id))
+        url = "session/#{bridge.session_id}/element/#{results.last['ELEMENT']}/capture"
+      end
+      ext = File.extname(path).downcase
+      format = 'png'
+      format = 'jpeg' if ext == '.jpg' || ext == '.jpeg'
+      format = 'raw' if ext == '.bmp'
+      server_url = bridge.http.send(:server_url)
+      Net::HTTP.start(server_url.host, server_url.port) { |http|
+        request = Net::HTTP::Post.new(server_url.merge(url).path, 'Content-Type' => 'application/json; charset=utf-8')
+        request.body = Selenium::WebDriver.json_dump(:format => format)
+        http.request(request) { |response|
+          if response.code == '200'
+            File.open(path, 'wb') { |f| response.read_body { |chunk| f.write(chunk) } }
+          elsif response.code == '404' && id == nil
+            # Agent without the capture command
+            @webdriver.save_screenshot(path)
+          else
+            raise Selenium::WebDriver::Error::WebDriverError, "screen capture failed: #{response.code}\n#{response.body}"
+          end
+        }
+      }
+      return true
     end
     
     def hover
@@ -581,7 +661,7 @@ end
 # Capture an image of the specified component and save it to the specified file.
 
 def component_capture(fileName, windowName, componentName)
-    return $marathon.saveScreenShot(fileName)
+    return $marathon.saveComponentScreenShot(fileName, ComponentId.new(componentName, nil))
 end
 
 # Compare two images defined by their paths, returns their differences in an array [0] is no. of different pixels, [1] is the percentage.
@@ -17,6 +17,8 @@ package net.sourceforge.marathon.javafxagent;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import javafx.application.Platform;
@@ -88,6 +90,22 @@ public abstract class EventQueueWait extends Wait {
         return (X) result[0];
     }
 
+    /**
+     * Runs all the callables in a single visit to the FX application thread
+     * and returns their results in order. Execution stops at the first
+     * failure which is thrown the same way as {@link #exec(Callable)}.
+     */
+    public static List<Object> execAll(final List<? extends Callable<?>> callables) {
+        return exec(new Callable<List<Object>>() {
+            @Override public List<Object> call() throws Exception {
+                List<Object> results = new ArrayList<Object>(callables.size());
+                for (Callable<?> callable : callables)
+                    results.add(callable.call());
+                return results;
+            }
+        });
+    }
+
     public static void exec(Runnable runnable) {
         try {
             invokeAndWait(runnable);
@@ -213,35 +231,7 @@ public abstract class EventQueueWait extends Wait {
     }
 
     private static void invokeAndWait(final Runnable r) {
-        if (Platform.isFxApplicationThread())
-            r.run();
-        else {
-            final boolean[] lock = new boolean[] { false };
-            Runnable r1 = new Runnable() {
-                @Override public void run() {
-                    try {
-                        r.run();
-                    } finally {
-                        synchronized (lock) {
-                            lock[0] = true;
-                            lock.notifyAll();
-                        }
-                    }
-                }
-            };
-            Platform.runLater(r1);
-            synchronized (lock) {
-                while (true) {
-                    try {
-                        if (lock[0])
-                            break;
-                        lock.wait();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        }
+        FXExecutor.invokeAndWait(r);
     }
 
     public static <T> T call_noexc(final Object o, String f, final Object... args) {
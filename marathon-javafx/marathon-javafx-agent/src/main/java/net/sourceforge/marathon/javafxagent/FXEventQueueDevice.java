@@ -18,7 +18,6 @@ package net.sourceforge.marathon.javafxagent;
 import java.util.ArrayList;
 import java.util.List;
 
-import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.event.Event;
 import javafx.event.EventType;
@@ -259,8 +258,10 @@ public class FXEventQueueDevice implements IDevice {
                 node);
     }
 
+    // Events go through the executor so that they keep their order with the
+    // agent's own work on the FX application thread
     private void dispatchEvent(final Event event, final Node node) {
-        Platform.runLater(new Runnable() {
+        FXExecutor.execute(new Runnable() {
             @Override public void run() {
                 Event.fireEvent(node, event);
             }
@@ -268,7 +269,7 @@ public class FXEventQueueDevice implements IDevice {
     }
 
     private void dispatchEvent(MouseEvent mouseEvent) {
-        Platform.runLater(new Runnable() {
+        FXExecutor.execute(new Runnable() {
             @Override public void run() {
                 Event.fireEvent(mouseEvent.getTarget(), mouseEvent);
             }
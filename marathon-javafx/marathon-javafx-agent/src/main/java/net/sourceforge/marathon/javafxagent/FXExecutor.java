@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javafxagent;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.JSONObject;
+
+import javafx.application.Platform;
+
+/**
+ * Runs agent work on the FX application thread.
+ *
+ * Work submitted from other threads is queued and all of the queued work is
+ * run from a single {@link Platform#runLater(Runnable)}, so a burst of calls
+ * from the agent costs one visit to the FX thread. Callers waiting for their
+ * work block on a latch of their own instead of a shared monitor.
+ */
+public class FXExecutor {
+
+    private static final Logger logger = Logger.getLogger(FXExecutor.class.getName());
+
+    private static final int MAX_TASKS_PER_VISIT = Integer.parseInt(System.getProperty("marathon.fx.tasks.per.visit", "1000"));
+
+    private static final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+    private static final AtomicBoolean scheduled = new AtomicBoolean();
+    private static final AtomicLong visits = new AtomicLong();
+    private static final AtomicLong tasks = new AtomicLong();
+    private static final AtomicLong inline = new AtomicLong();
+
+    private static final Runnable drain = new Runnable() {
+        @Override public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Queues the runnable for execution on the FX application thread.
+     */
+    public static void execute(Runnable r) {
+        queue.add(r);
+        schedule();
+    }
+
+    /**
+     * Runs the runnable on the FX application thread and waits for it to
+     * complete. When called from the FX application thread the runnable is
+     * run inline.
+     */
+    public static void invokeAndWait(final Runnable r) {
+        if (Platform.isFxApplicationThread()) {
+            inline.incrementAndGet();
+            r.run();
+            return;
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        execute(new Runnable() {
+            @Override public void run() {
+                try {
+                    r.run();
+                } finally {
+                    latch.countDown();
+                }
+            }
+        });
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static void schedule() {
+        if (!scheduled.compareAndSet(false, true))
+            return;
+        try {
+            Platform.runLater(drain);
+        } catch (RuntimeException e) {
+            scheduled.set(false);
+            throw e;
+        }
+    }
+
+    private static void drain() {
+        visits.incrementAndGet();
+        int count = 0;
+        Runnable r;
+        while (count < MAX_TASKS_PER_VISIT && (r = queue.poll()) != null) {
+            count++;
+            try {
+                r.run();
+            } catch (Throwable t) {
+                logger.log(Level.WARNING, "Task on the FX application thread failed", t);
+            }
+        }
+        tasks.addAndGet(count);
+        scheduled.set(false);
+        // Work queued after the last poll would otherwise wait for the next
+        // submission
+        if (!queue.isEmpty())
+            schedule();
+    }
+
+    public static JSONObject getStatistics() {
+        JSONObject stats = new JSONObject();
+        stats.put("visits", visits.get());
+        stats.put("tasks", tasks.get());
+        stats.put("inline", inline.get());
+        stats.put("queued", queue.size());
+        return stats;
+    }
+}
@@ -342,7 +342,8 @@ public class JavaFXAgent implements IJavaFXAgent {
      * @see net.sourceforge.marathon.javaagent.IJavaAgent#getScreenShot()
      */
     @Override public byte[] getScreenShot() throws IOException {
-        return new byte[0];
+        Stage window = targetLocator.getTopContainer().getWindow();
+        return ScreenCapture.encode(EventQueueWait.exec(() -> ScreenCapture.capture(window)), "png");
     }
 
     /*
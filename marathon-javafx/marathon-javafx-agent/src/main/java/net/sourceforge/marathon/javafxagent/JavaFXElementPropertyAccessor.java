@@ -15,7 +15,6 @@
  *******************************************************************************/
 package net.sourceforge.marathon.javafxagent;
 
-import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -39,9 +38,8 @@ import java.util.regex.Pattern;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import javafx.beans.InvalidationListener;
-import javafx.beans.Observable;
-import javafx.beans.WeakInvalidationListener;
+import com.sun.javafx.scene.control.skin.VirtualFlow;
+
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
 import javafx.geometry.BoundingBox;
@@ -53,7 +51,9 @@ import javafx.scene.control.ButtonBase;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Control;
 import javafx.scene.control.DatePicker;
+import javafx.scene.control.IndexedCell;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
@@ -68,7 +68,6 @@ import javafx.scene.control.TabPane;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TablePosition;
-import javafx.scene.control.TableRow;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TableView.TableViewSelectionModel;
 import javafx.scene.control.TextInputControl;
@@ -79,16 +78,13 @@ import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeTableCell;
 import javafx.scene.control.TreeTableColumn;
 import javafx.scene.control.TreeTablePosition;
-import javafx.scene.control.TreeTableRow;
 import javafx.scene.control.TreeTableView;
 import javafx.scene.control.TreeTableView.TreeTableViewSelectionModel;
 import javafx.scene.control.TreeView;
 import javafx.scene.image.ImageView;
-import javafx.scene.layout.HBox;
 import javafx.scene.paint.Color;
 import javafx.scene.web.HTMLEditor;
 import javafx.stage.Window;
-import javafx.util.Callback;
 import javafx.util.StringConverter;
 import net.sourceforge.marathon.javafxagent.components.ContextManager;
 
@@ -620,73 +616,22 @@ public class JavaFXElementPropertyAccessor extends JavaPropertyAccessor {
     }
 
     public String getListSelectionText(ListView<?> listView, Integer index) {
-        String original = getListItemText(listView, index);
-        String itemText = original;
-        int suffixIndex = 0;
-        for (int i = 0; i < index; i++) {
-            String current = getListItemText(listView, i);
-            if (current.equals(original))
-                itemText = String.format("%s(%d)", original, ++suffixIndex);
-        }
-        return itemText;
+        return ListItemTexts.get(listView).getText(index);
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" }) public ListCell getCellAt(ListView listView, Integer index) {
+    /**
+     * Returns the cell showing the item at the index, scrolling the list so
+     * that the item is visible. Returns null if there is no such item.
+     */
+    public ListCell<?> getCellAt(ListView<?> listView, Integer index) {
         ListCell<?> cell = getVisibleCellAt(listView, index);
         if (cell != null)
             return cell;
-        try {
-            Callback<ListView, ListCell> cellFactory = listView.getCellFactory();
-            ListCell listCell = null;
-            if (cellFactory == null) {
-                listCell = new ListCell() {
-                    @Override public void updateItem(Object item, boolean empty) {
-                        super.updateItem(item, empty);
-
-                        if (empty) {
-                            setText(null);
-                            setGraphic(null);
-                        } else if (item instanceof Node) {
-                            setText(null);
-                            Node currentNode = getGraphic();
-                            Node newNode = (Node) item;
-                            if (currentNode == null || !currentNode.equals(newNode)) {
-                                setGraphic(newNode);
-                            }
-                        } else {
-                            /**
-                             * This label is used if the item associated with
-                             * this cell is to be represented as a String. While
-                             * we will lazily instantiate it we never clear it,
-                             * being more afraid of object churn than a minor
-                             * "leak" (which will not become a "major" leak).
-                             */
-                            setText(item == null ? "null" : item.toString());
-                            setGraphic(null);
-                        }
-                    }
-                };
-            } else {
-                listCell = cellFactory.call(listView);
-            }
-            Object value = listView.getItems().get(index);
-            Method updateItem = listCell.getClass().getDeclaredMethod("updateItem", new Class[] { Object.class, Boolean.TYPE });
-            updateItem.invoke(listCell, value, false);
-            return listCell;
-        } catch (Throwable t) {
-            return null;
-        }
+        return (ListCell<?>) getFlowCell(listView, index, true);
     }
 
-    @SuppressWarnings("rawtypes") public ListCell<?> getVisibleCellAt(ListView listView, Integer index) {
-        Set<Node> lookupAll = listView.lookupAll(".list-cell");
-        ListCell<?> cell = null;
-        for (Node node : lookupAll) {
-            if (((ListCell<?>) node).getIndex() == index) {
-                cell = (ListCell<?>) node;
-                break;
-            }
-        }
+    public ListCell<?> getVisibleCellAt(ListView<?> listView, Integer index) {
+        ListCell<?> cell = (ListCell<?>) getFlowCell(listView, index, false);
         if (cell != null && isShowing(cell))
             return cell;
         return null;
@@ -696,118 +641,98 @@ public class JavaFXElementPropertyAccessor extends JavaPropertyAccessor {
         return (TreeCell<?>) getCellAt(treeView, getPath(treeView, rowToPath(index)));
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" }) public Node getCellAt(TreeView treeView, TreeItem<?> treeItem1) {
-        TreeCell visibleCell = getVisibleCellAt(treeView, treeItem1);
+    /**
+     * Returns the cell showing the tree item, scrolling the tree so that the
+     * item is visible. Returns null if the item is not shown in the tree.
+     */
+    public Node getCellAt(TreeView<?> treeView, TreeItem<?> treeItem1) {
+        TreeCell<?> visibleCell = getVisibleCellAt(treeView, treeItem1);
         if (visibleCell != null)
             return visibleCell;
-        try {
-            Callback<TreeView, TreeCell> cellFactory = treeView.getCellFactory();
-            TreeCell treeCell = null;
-            if (cellFactory == null) {
-                treeCell = new TreeCell<Object>() {
-                    private HBox hbox;
-
-                    private WeakReference<TreeItem<Object>> treeItemRef;
-
-                    private InvalidationListener treeItemGraphicListener = observable -> {
-                        updateDisplay(getItem(), isEmpty());
-                    };
-
-                    private InvalidationListener treeItemListener = new InvalidationListener() {
-                        @Override public void invalidated(Observable observable) {
-                            TreeItem<Object> oldTreeItem = treeItemRef == null ? null : treeItemRef.get();
-                            if (oldTreeItem != null) {
-                                oldTreeItem.graphicProperty().removeListener(weakTreeItemGraphicListener);
-                            }
-
-                            TreeItem<Object> newTreeItem = getTreeItem();
-                            if (newTreeItem != null) {
-                                newTreeItem.graphicProperty().addListener(weakTreeItemGraphicListener);
-                                treeItemRef = new WeakReference<TreeItem<Object>>(newTreeItem);
-                            }
-                        }
-                    };
-
-                    private WeakInvalidationListener weakTreeItemGraphicListener = new WeakInvalidationListener(
-                            treeItemGraphicListener);
-
-                    private WeakInvalidationListener weakTreeItemListener = new WeakInvalidationListener(treeItemListener);
-
-                    {
-                        treeItemProperty().addListener(weakTreeItemListener);
-                        if (getTreeItem() != null) {
-                            getTreeItem().graphicProperty().addListener(weakTreeItemGraphicListener);
-                        }
-                    }
-
-                    private void updateDisplay(Object item, boolean empty) {
-                        if (item == null || empty) {
-                            hbox = null;
-                            setText(null);
-                            setGraphic(null);
-                        } else {
-                            // update the graphic if one is set in the TreeItem
-                            TreeItem<Object> treeItem = getTreeItem();
-                            Node graphic = treeItem == null ? null : treeItem.getGraphic();
-                            if (graphic != null) {
-                                if (item instanceof Node) {
-                                    setText(null);
-
-                                    // the item is a Node, and the graphic
-                                    // exists, so
-                                    // we must insert both into an HBox and
-                                    // present that
-                                    // to the user (see RT-15910)
-                                    if (hbox == null) {
-                                        hbox = new HBox(3);
-                                    }
-                                    hbox.getChildren().setAll(graphic, (Node) item);
-                                    setGraphic(hbox);
-                                } else {
-                                    hbox = null;
-                                    setText(item.toString());
-                                    setGraphic(graphic);
-                                }
-                            } else {
-                                hbox = null;
-                                if (item instanceof Node) {
-                                    setText(null);
-                                    setGraphic((Node) item);
-                                } else {
-                                    setText(item.toString());
-                                    setGraphic(null);
-                                }
-                            }
-                        }
-                    }
-
-                    @Override public void updateItem(Object item, boolean empty) {
-                        super.updateItem(item, empty);
-                        updateDisplay(item, empty);
-                    }
-                };
-            } else {
-                treeCell = cellFactory.call(treeView);
-            }
-            Method updateItem = treeCell.getClass().getDeclaredMethod("updateItem", new Class[] { Object.class, Boolean.TYPE });
-            updateItem.invoke(treeCell, treeItem1.getValue(), false);
-            return treeCell;
-        } catch (Throwable t) {
+        TreeCell<?> cell = (TreeCell<?>) getFlowCell(treeView, getRow(treeView, treeItem1), true);
+        if (cell != null && cell.getTreeItem() == treeItem1)
+            return cell;
+        return null;
+    }
+
+    public TreeCell<?> getVisibleCellAt(TreeView<?> treeView, TreeItem<?> treeItem1) {
+        TreeCell<?> cell = (TreeCell<?>) getFlowCell(treeView, getRow(treeView, treeItem1), false);
+        if (cell != null && cell.getTreeItem() == treeItem1 && isShowing(cell))
+            return cell;
+        return null;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" }) private int getRow(TreeView treeView, TreeItem<?> treeItem) {
+        return treeItem == null ? -1 : treeView.getRow(treeItem);
+    }
+
+    /**
+     * Returns the cell the virtual flow of the control uses for the index. If
+     * the index is not in view and <code>scroll</code> is set, the flow is
+     * scrolled to show it. No cells are created for indices that are not in
+     * view.
+     */
+    @SuppressWarnings("rawtypes") protected IndexedCell getFlowCell(Control control, int index, boolean scroll) {
+        VirtualFlow flow = getVirtualFlow(control);
+        if (flow == null || index < 0 || index >= flow.getCellCount())
             return null;
+        IndexedCell cell = flow.getVisibleCell(index);
+        if (scroll && (cell == null || !isShowing(cell))) {
+            flow.show(index);
+            control.layout();
+            cell = flow.getVisibleCell(index);
         }
+        return cell;
     }
 
-    @SuppressWarnings("rawtypes") public TreeCell getVisibleCellAt(TreeView treeView, TreeItem<?> treeItem1) {
-        Set<Node> lookupAll = treeView.lookupAll(".tree-cell");
-        TreeCell cell = null;
-        for (Node treeNode : lookupAll) {
-            if (((TreeCell) treeNode).getTreeItem() == treeItem1) {
-                cell = (TreeCell) treeNode;
-                break;
-            }
+    /**
+     * Returns the cell of the virtual flow of the control containing the point
+     * (in scene coordinates). Only the cells in view are checked.
+     */
+    @SuppressWarnings("rawtypes") protected IndexedCell getFlowCellAt(Control control, Point2D point) {
+        VirtualFlow flow = getVirtualFlow(control);
+        if (flow == null)
+            return null;
+        IndexedCell first = flow.getFirstVisibleCell();
+        IndexedCell last = flow.getLastVisibleCell();
+        if (first == null || last == null)
+            return null;
+        for (int i = first.getIndex(); i <= last.getIndex(); i++) {
+            IndexedCell cell = flow.getVisibleCell(i);
+            if (cell != null && cell.localToScene(cell.getBoundsInLocal(), true).contains(point))
+                return cell;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("rawtypes") private static VirtualFlow getVirtualFlow(Control control) {
+        for (Node child : control.getChildrenUnmodifiable()) {
+            if (child instanceof VirtualFlow)
+                return (VirtualFlow) child;
+        }
+        return null;
+    }
+
+    private static Node getRowCell(Parent row, Object column) {
+        if (row == null)
+            return null;
+        for (Node node : row.getChildrenUnmodifiable()) {
+            if (node instanceof TableCell && ((TableCell<?, ?>) node).getTableColumn() == column)
+                return node;
+            if (node instanceof TreeTableCell && ((TreeTableCell<?, ?>) node).getTableColumn() == column)
+                return node;
+        }
+        return null;
+    }
+
+    private static Node getRowCellAt(Parent row, Point2D point) {
+        if (row == null)
+            return null;
+        for (Node node : row.getChildrenUnmodifiable()) {
+            if ((node instanceof TableCell || node instanceof TreeTableCell)
+                    && node.localToScene(node.getBoundsInLocal(), true).contains(point))
+                return node;
         }
-        if (cell != null && isShowing(cell))
-            return cell;
         return null;
     }
 
@@ -819,55 +744,22 @@ public class JavaFXElementPropertyAccessor extends JavaPropertyAccessor {
         return getTextForNode(treeView, treeItem);
     }
 
-    private String getListItemText(ListView<?> listView, Integer index) {
-        return listView.getItems().get(index).toString();
-    }
-
     public int getListItemIndex(ListView<?> listView, String string) {
-        ObservableList<?> items = listView.getItems();
-        for (int i = 0; i < items.size(); i++) {
-            String text = getListSelectionText(listView, i);
-            if (text.equals(string))
-                return i;
-        }
-        return -1;
+        return ListItemTexts.get(listView).getIndex(string);
     }
 
     protected int getIndexAt(ListView<?> listView, Point2D point) {
         if (point == null) {
             return listView.getSelectionModel().getSelectedIndex();
         }
-        point = listView.localToScene(point);
-        Set<Node> lookupAll = listView.lookupAll(".list-cell");
-        ListCell<?> selected = null;
-        for (Node cellNode : lookupAll) {
-            Bounds boundsInScene = cellNode.localToScene(cellNode.getBoundsInLocal(), true);
-            if (boundsInScene.contains(point)) {
-                selected = (ListCell<?>) cellNode;
-                break;
-            }
-        }
+        IndexedCell<?> selected = getFlowCellAt(listView, listView.localToScene(point));
         if (selected == null)
             return -1;
         return selected.getIndex();
     }
 
     public int getRowAt(TreeView<?> treeView, Point2D point) {
-        point = treeView.localToScene(point);
-        int itemCount = treeView.getExpandedItemCount();
-        @SuppressWarnings("rawtypes")
-        List<TreeCell> cells = new ArrayList<>();
-        for (int i = 0; i < itemCount; i++) {
-            cells.add(getCellAt(treeView, i));
-        }
-        TreeCell<?> selected = null;
-        for (Node cellNode : cells) {
-            Bounds boundsInScene = cellNode.localToScene(cellNode.getBoundsInLocal(), true);
-            if (boundsInScene.contains(point)) {
-                selected = (TreeCell<?>) cellNode;
-                break;
-            }
-        }
+        IndexedCell<?> selected = getFlowCellAt(treeView, treeView.localToScene(point));
         if (selected == null)
             return -1;
         return selected.getIndex();
@@ -1022,16 +914,7 @@ public class JavaFXElementPropertyAccessor extends JavaPropertyAccessor {
 
     private TableCell<?, ?> getTableCellAt(TableView<?> tableView, Point2D point) {
         point = tableView.localToScene(point);
-        Set<Node> lookupAll = tableView.lookupAll(".table-cell");
-        TableCell<?, ?> selected = null;
-        for (Node cellNode : lookupAll) {
-            Bounds boundsInScene = cellNode.localToScene(cellNode.getBoundsInLocal(), true);
-            if (boundsInScene.contains(point)) {
-                selected = (TableCell<?, ?>) cellNode;
-                break;
-            }
-        }
-        return selected;
+        return (TableCell<?, ?>) getRowCellAt(getFlowCellAt(tableView, point), point);
     }
 
     public String getColumnName(TableView<?> tableView, int i) {
@@ -1049,36 +932,19 @@ public class JavaFXElementPropertyAccessor extends JavaPropertyAccessor {
         return new JSONObject().put("cell", new JSONArray().put(row).put(getColumnName(tableView, column))).toString();
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" }) public TableCell<?, ?> getCellAt(TableView<?> tableView, int row, int column) {
+    /**
+     * Returns the cell at the row and column, scrolling the table so that the
+     * row is visible. Returns null if there is no such cell.
+     */
+    public TableCell<?, ?> getCellAt(TableView<?> tableView, int row, int column) {
         TableCell<?, ?> cell = getVisibleCellAt(tableView, row, column);
         if (cell != null)
             return cell;
-        TableColumn tableColumn = (TableColumn) tableView.getColumns().get(column);
-        cell = (TableCell) tableColumn.getCellFactory().call(tableColumn);
-        Object value = tableColumn.getCellObservableValue(row).getValue();
-        Method updateItem;
-        try {
-            updateItem = cell.getClass().getDeclaredMethod("updateItem", new Class[] { Object.class, Boolean.TYPE });
-            updateItem.setAccessible(true);
-            updateItem.invoke(cell, value, false);
-            return cell;
-        } catch (Throwable e) {
-            throw new RuntimeException(e);
-        }
+        return (TableCell<?, ?>) getRowCell(getFlowCell(tableView, row, true), tableView.getColumns().get(column));
     }
 
     public TableCell<?, ?> getVisibleCellAt(TableView<?> tableView, int row, int column) {
-        Set<Node> lookupAll = tableView.lookupAll(".table-cell");
-        TableCell<?, ?> cell = null;
-        for (Node node : lookupAll) {
-            TableCell<?, ?> cell1 = (TableCell<?, ?>) node;
-            TableRow<?> tableRow = cell1.getTableRow();
-            TableColumn<?, ?> tableColumn = cell1.getTableColumn();
-            if (tableRow.getIndex() == row && tableColumn == tableView.getColumns().get(column)) {
-                cell = cell1;
-                break;
-            }
-        }
+        TableCell<?, ?> cell = (TableCell<?, ?>) getRowCell(getFlowCell(tableView, row, false), tableView.getColumns().get(column));
         if (cell != null && isShowing(cell))
             return cell;
         return null;
@@ -1097,24 +963,12 @@ public class JavaFXElementPropertyAccessor extends JavaPropertyAccessor {
     }
 
     public Point2D getPoint(TableView<?> tableView, int columnIndex, int rowIndex) {
-        Set<Node> tableRowCell = tableView.lookupAll(".table-row-cell");
-        TableRow<?> row = null;
-        for (Node tableRow : tableRowCell) {
-            TableRow<?> r = (TableRow<?>) tableRow;
-            if (r.getIndex() == rowIndex) {
-                row = r;
-                break;
-            }
-        }
-        Set<Node> cells = row.lookupAll(".table-cell");
-        for (Node node : cells) {
-            TableCell<?, ?> cell = (TableCell<?, ?>) node;
-            if ((tableView.getColumns().indexOf(cell.getTableColumn()) == columnIndex)) {
-                Bounds bounds = cell.getBoundsInParent();
-                Point2D localToParent = cell.localToParent(bounds.getWidth() / 2, bounds.getHeight() / 2);
-                Point2D rowLocal = row.localToScene(localToParent, true);
-                return rowLocal;
-            }
+        IndexedCell<?> row = getFlowCell(tableView, rowIndex, false);
+        Node cell = getRowCell(row, tableView.getColumns().get(columnIndex));
+        if (cell != null) {
+            Bounds bounds = cell.getBoundsInParent();
+            Point2D localToParent = cell.localToParent(bounds.getWidth() / 2, bounds.getHeight() / 2);
+            return row.localToScene(localToParent, true);
         }
         return null;
     }
@@ -1245,16 +1099,7 @@ public class JavaFXElementPropertyAccessor extends JavaPropertyAccessor {
 
     public TreeTableCell<?, ?> getTreeTableCellAt(TreeTableView<?> treeTableView, Point2D point) {
         point = treeTableView.localToScene(point);
-        Set<Node> lookupAll = treeTableView.lookupAll(".tree-table-cell");
-        TreeTableCell<?, ?> selected = null;
-        for (Node cellNode : lookupAll) {
-            Bounds boundsInScene = cellNode.localToScene(cellNode.getBoundsInLocal(), true);
-            if (boundsInScene.contains(point)) {
-                selected = (TreeTableCell<?, ?>) cellNode;
-                break;
-            }
-        }
-        return selected;
+        return (TreeTableCell<?, ?>) getRowCellAt(getFlowCellAt(treeTableView, point), point);
     }
 
     protected int getTreeTableColumnAt(TreeTableView<?> treeTableView, Point2D point) {
@@ -1271,38 +1116,19 @@ public class JavaFXElementPropertyAccessor extends JavaPropertyAccessor {
         return selected.getTreeTableRow().getIndex();
     }
 
-    @SuppressWarnings({ "unchecked", "rawtypes" }) protected TreeTableCell<?, ?> getCellAt(TreeTableView<?> treeTableView, int row,
-            int column) {
-        TreeTableCell cell = getVisibleCellAt(treeTableView, row, column);
+    /**
+     * Returns the cell at the row and column, scrolling the tree table so that
+     * the row is visible. Returns null if there is no such cell.
+     */
+    protected TreeTableCell<?, ?> getCellAt(TreeTableView<?> treeTableView, int row, int column) {
+        TreeTableCell<?, ?> cell = getVisibleCellAt(treeTableView, row, column);
         if (cell != null)
             return cell;
-        try {
-            TreeTableColumn treeTableColumn = treeTableView.getColumns().get(column);
-            Callback cellFactory = treeTableColumn.getCellFactory();
-            cell = (TreeTableCell) cellFactory.call(treeTableColumn);
-            Object value = treeTableColumn.getCellObservableValue(row).getValue();
-            Method updateItem = cell.getClass().getDeclaredMethod("updateItem", new Class[] { Object.class, Boolean.TYPE });
-            updateItem.setAccessible(true);
-            updateItem.invoke(cell, value, false);
-            return cell;
-        } catch (Throwable t) {
-            return null;
-        }
+        return (TreeTableCell<?, ?>) getRowCell(getFlowCell(treeTableView, row, true), treeTableView.getColumns().get(column));
     }
 
-    @SuppressWarnings("rawtypes") public TreeTableCell getVisibleCellAt(TreeTableView<?> treeTableView, int row, int column) {
-        Set<Node> lookupAll = treeTableView.lookupAll(".tree-table-cell");
-        TreeTableCell cell = null;
-        for (Node node : lookupAll) {
-            TreeTableCell<?, ?> cell1 = (TreeTableCell<?, ?>) node;
-            TreeTableRow<?> tableRow = cell1.getTreeTableRow();
-            TreeTableColumn<?, ?> tableColumn = cell1.getTableColumn();
-            if (tableRow.getIndex() == row && tableColumn == treeTableView.getColumns().get(column)) {
-                cell = cell1;
-                break;
-            }
-        }
-        return cell;
+    public TreeTableCell<?, ?> getVisibleCellAt(TreeTableView<?> treeTableView, int row, int column) {
+        return (TreeTableCell<?, ?>) getRowCell(getFlowCell(treeTableView, row, false), treeTableView.getColumns().get(column));
     }
 
     @SuppressWarnings("unchecked") public String getTextForTreeTableNodeObject(TreeTableView<?> treeTableView,
@@ -99,7 +99,7 @@ public class JavaFXTargetLocator {
         }
 
         public void setSize(int width, int height) {
-            javafx.application.Platform.runLater(new Runnable() {
+            FXExecutor.execute(new Runnable() {
                 @Override public void run() {
                     currentWindow.setWidth(width);
                     currentWindow.setHeight(height);
@@ -108,7 +108,7 @@ public class JavaFXTargetLocator {
         }
 
         public void setLocation(int x, int y) {
-            javafx.application.Platform.runLater(new Runnable() {
+            FXExecutor.execute(new Runnable() {
                 @Override public void run() {
                     currentWindow.setX(x);
                     currentWindow.setY(y);
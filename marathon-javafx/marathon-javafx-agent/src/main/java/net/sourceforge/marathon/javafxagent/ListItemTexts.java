@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javafxagent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ListView;
+
+/**
+ * The texts of the items of a list view, with the duplicate suffixes applied,
+ * and a text to index map.
+ *
+ * An instance is kept in the list view properties and rebuilt lazily when the
+ * items list is changed or replaced.
+ */
+class ListItemTexts implements InvalidationListener {
+
+    private static final String KEY = "marathon.list.item.texts";
+
+    private final ObservableList<?> items;
+    private boolean valid;
+    private String[] texts;
+    private Map<String, Integer> indices;
+
+    private ListItemTexts(ObservableList<?> items) {
+        this.items = items;
+        items.addListener(this);
+    }
+
+    public static ListItemTexts get(ListView<?> listView) {
+        ObservableList<?> items = listView.getItems();
+        Object o = listView.getProperties().get(KEY);
+        ListItemTexts texts = o instanceof ListItemTexts ? (ListItemTexts) o : null;
+        if (texts != null && texts.items == items)
+            return texts;
+        if (texts != null)
+            texts.items.removeListener(texts);
+        if (items == null) {
+            listView.getProperties().remove(KEY);
+            return new ListItemTexts();
+        }
+        texts = new ListItemTexts(items);
+        listView.getProperties().put(KEY, texts);
+        return texts;
+    }
+
+    private ListItemTexts() {
+        this.items = null;
+        this.valid = true;
+        this.texts = new String[0];
+        this.indices = new HashMap<String, Integer>();
+    }
+
+    @Override public void invalidated(Observable observable) {
+        valid = false;
+    }
+
+    public String getText(int index) {
+        validate();
+        return texts[index];
+    }
+
+    public int getIndex(String text) {
+        validate();
+        Integer index = indices.get(text);
+        return index == null ? -1 : index;
+    }
+
+    private void validate() {
+        if (valid)
+            return;
+        int n = items.size();
+        texts = new String[n];
+        indices = new HashMap<String, Integer>(n * 2);
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < n; i++) {
+            String original = String.valueOf(items.get(i));
+            Integer count = counts.get(original);
+            counts.put(original, count == null ? 1 : count + 1);
+            String text = count == null ? original : String.format("%s(%d)", original, count);
+            texts[i] = text;
+            if (!indices.containsKey(text))
+                indices.put(text, i);
+        }
+        valid = true;
+    }
+}
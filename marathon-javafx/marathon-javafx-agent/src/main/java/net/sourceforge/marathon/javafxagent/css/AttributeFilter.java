@@ -21,16 +21,32 @@ import java.util.List;
 
 import net.sourceforge.marathon.javafxagent.IJavaFXElement;
 
-public class AttributeFilter implements SelectorFilter {
+public class AttributeFilter implements SelectorFilter, ElementPredicate {
+
+    private static final int EQUALS = 0;
+    private static final int STARTS_WITH = 1;
+    private static final int ENDS_WITH = 2;
+    private static final int CONTAINS = 3;
 
     private String name;
     private Argument arg;
     private String op;
+    private final String value;
+    private final int operator;
 
     public AttributeFilter(String name, Argument arg, String op) {
         this.name = name;
         this.arg = arg;
         this.op = op;
+        this.value = arg == null ? null : arg.getStringValue();
+        if ("startsWith".equals(op))
+            operator = STARTS_WITH;
+        else if ("endsWith".equals(op))
+            operator = ENDS_WITH;
+        else if ("contains".equals(op))
+            operator = CONTAINS;
+        else
+            operator = EQUALS;
     }
 
     @Override public String toString() {
@@ -45,19 +61,21 @@ public class AttributeFilter implements SelectorFilter {
         return new ArrayList<IJavaFXElement>();
     }
 
-    public boolean doesMatch(IJavaFXElement je) {
+    @Override public boolean doesMatch(IJavaFXElement je) {
         if (arg == null)
             return je.hasAttribue(name);
         String expected = je.getAttribute(name);
         if (expected == null)
             return false;
-        if (op.equals("startsWith"))
-            return expected.startsWith(arg.getStringValue());
-        else if (op.equals("endsWith"))
-            return expected.endsWith(arg.getStringValue());
-        else if (op.equals("contains"))
-            return expected.contains(arg.getStringValue());
-        else
-            return expected.equals(arg.getStringValue());
+        switch (operator) {
+        case STARTS_WITH:
+            return expected.startsWith(value);
+        case ENDS_WITH:
+            return expected.endsWith(value);
+        case CONTAINS:
+            return expected.contains(value);
+        default:
+            return expected.equals(value);
+        }
     }
 }
@@ -16,7 +16,9 @@
 package net.sourceforge.marathon.javafxagent.css;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.json.JSONException;
 
@@ -26,21 +28,17 @@ import javafx.scene.Parent;
 import net.sourceforge.marathon.javafxagent.*;
 import net.sourceforge.marathon.javafxagent.JavaFXTargetLocator.JFXWindow;
 
-public class ChildSelector implements Selector {
-
-    private Selector parent;
-    private SimpleSelector child;
+public class ChildSelector extends CombinatorSelector {
 
     public ChildSelector(Selector parent, SimpleSelector child) {
-        this.parent = parent;
-        this.child = child;
+        super(parent, child, Combinator.CHILD);
     }
 
     @Override public String toString() {
-        return parent + " > " + child;
+        return parent + " > " + selector;
     }
 
-    @SuppressWarnings("unchecked") @Override public List<IJavaFXElement> findElements(final IJavaFXAgent driver,
+    @SuppressWarnings("unchecked") @Override protected List<IJavaFXElement> findElementsByParent(final IJavaFXAgent driver,
             final IJavaFXElement container, long implicitWait) {
         final List<IJavaFXElement> pElements = parent.findElements(driver, container, implicitWait);
         if (pElements.size() == 0)
@@ -92,6 +90,7 @@ public class ChildSelector implements Selector {
 
     protected List<IJavaFXElement> found(List<IJavaFXElement> pElements, IJavaFXAgent driver) {
         List<IJavaFXElement> r = new ArrayList<IJavaFXElement>();
+        Set<IJavaFXElement> seen = new HashSet<IJavaFXElement>();
         for (IJavaFXElement je : pElements) {
             if (!(je.getComponent() instanceof Parent))
                 continue;
@@ -99,10 +98,10 @@ public class ChildSelector implements Selector {
             ObservableList<Node> components = ((Parent) je.getComponent()).getChildrenUnmodifiable();
             for (Node c : components) {
                 IJavaFXElement je2 = JavaFXElementFactory.createElement(c, driver, driver.switchTo().getTopContainer());
-                List<IJavaFXElement> matched = child.matchesSelector(je2);
+                List<IJavaFXElement> matched = selector.matchesSelector(je2);
                 for (IJavaFXElement javaElement : matched) {
                     IJavaFXElement e = topContainer.addElement(javaElement);
-                    if (!r.contains(e))
+                    if (seen.add(e))
                         r.add(e);
                 }
             }
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javafxagent.css;
+
+import java.util.List;
+
+import net.sourceforge.marathon.javafxagent.IJavaFXAgent;
+import net.sourceforge.marathon.javafxagent.IJavaFXElement;
+
+/**
+ * A selector that combines a selector with a simple selector.
+ *
+ * When the whole chain can be matched right-to-left (see
+ * {@link SelectorChain}) it is evaluated in a single walk of the container.
+ * Otherwise the parent selector is evaluated first and the simple selector is
+ * applied to each of the results.
+ */
+public abstract class CombinatorSelector implements Selector {
+
+    public static enum Combinator {
+        DESCENDANT, CHILD, ADJACENT_SIBLING, GENERAL_SIBLING
+    }
+
+    protected final Selector parent;
+    protected final SimpleSelector selector;
+    private final Combinator combinator;
+    private final SelectorChain chain;
+
+    protected CombinatorSelector(Selector parent, SimpleSelector selector, Combinator combinator) {
+        this.parent = parent;
+        this.selector = selector;
+        this.combinator = combinator;
+        this.chain = SelectorChain.create(this);
+    }
+
+    public Selector getParent() {
+        return parent;
+    }
+
+    public SimpleSelector getSelector() {
+        return selector;
+    }
+
+    public Combinator getCombinator() {
+        return combinator;
+    }
+
+    @Override public List<IJavaFXElement> findElements(IJavaFXAgent driver, IJavaFXElement container, long implicitWait) {
+        if (chain != null)
+            return chain.findElements(driver, container, implicitWait);
+        return findElementsByParent(driver, container, implicitWait);
+    }
+
+    protected abstract List<IJavaFXElement> findElementsByParent(IJavaFXAgent driver, IJavaFXElement container, long implicitWait);
+}
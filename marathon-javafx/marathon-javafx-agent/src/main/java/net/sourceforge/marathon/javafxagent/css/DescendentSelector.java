@@ -16,32 +16,32 @@
 package net.sourceforge.marathon.javafxagent.css;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import net.sourceforge.marathon.javafxagent.IJavaFXAgent;
 import net.sourceforge.marathon.javafxagent.IJavaFXElement;
 
-public class DescendentSelector implements Selector {
-
-    private Selector parent;
-    private SimpleSelector descendent;
+public class DescendentSelector extends CombinatorSelector {
 
     public DescendentSelector(Selector parent, SimpleSelector child) {
-        this.parent = parent;
-        this.descendent = child;
+        super(parent, child, Combinator.DESCENDANT);
     }
 
     @Override public String toString() {
-        return parent + " " + descendent;
+        return parent + " " + selector;
     }
 
-    @Override public List<IJavaFXElement> findElements(IJavaFXAgent driver, IJavaFXElement container, long implicitWait) {
+    @Override protected List<IJavaFXElement> findElementsByParent(IJavaFXAgent driver, IJavaFXElement container,
+            long implicitWait) {
         List<IJavaFXElement> result = new ArrayList<IJavaFXElement>();
+        Set<IJavaFXElement> seen = new HashSet<IJavaFXElement>();
         List<IJavaFXElement> parents = parent.findElements(driver, container, implicitWait);
         for (IJavaFXElement parent : parents) {
-            List<IJavaFXElement> es = descendent.findElements(driver, parent, implicitWait);
+            List<IJavaFXElement> es = selector.findElements(driver, parent, implicitWait);
             for (IJavaFXElement e : es) {
-                if (!result.contains(e))
+                if (seen.add(e))
                     result.add(e);
             }
         }
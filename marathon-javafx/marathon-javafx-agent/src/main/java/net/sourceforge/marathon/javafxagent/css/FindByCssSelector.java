@@ -33,7 +33,7 @@ public class FindByCssSelector {
     }
 
     public List<IJavaFXElement> findElements(String using) {
-        Selector selector = new SelectorParser(using).parse();
+        Selector selector = SelectorCache.get(using);
         return selector.findElements(driver, container, implicitWait);
     }
 
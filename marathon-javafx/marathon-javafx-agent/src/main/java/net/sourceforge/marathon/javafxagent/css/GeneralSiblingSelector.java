@@ -16,7 +16,9 @@
 package net.sourceforge.marathon.javafxagent.css;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.json.JSONException;
 
@@ -26,21 +28,17 @@ import javafx.scene.Parent;
 import net.sourceforge.marathon.javafxagent.*;
 import net.sourceforge.marathon.javafxagent.JavaFXTargetLocator.JFXWindow;
 
-public class GeneralSiblingSelector implements Selector {
-
-    private Selector parent;
-    private SimpleSelector sibling;
+public class GeneralSiblingSelector extends CombinatorSelector {
 
     public GeneralSiblingSelector(Selector parent, SimpleSelector sibling) {
-        this.parent = parent;
-        this.sibling = sibling;
+        super(parent, sibling, Combinator.GENERAL_SIBLING);
     }
 
     @Override public String toString() {
-        return parent + " ~ " + sibling;
+        return parent + " ~ " + selector;
     }
 
-    @SuppressWarnings("unchecked") @Override public List<IJavaFXElement> findElements(final IJavaFXAgent driver,
+    @SuppressWarnings("unchecked") @Override protected List<IJavaFXElement> findElementsByParent(final IJavaFXAgent driver,
             final IJavaFXElement container, long implicitWait) {
         final List<IJavaFXElement> pElements = parent.findElements(driver, container, implicitWait);
         if (pElements.size() == 0)
@@ -92,6 +90,7 @@ public class GeneralSiblingSelector implements Selector {
 
     protected List<IJavaFXElement> found(List<IJavaFXElement> pElements, IJavaFXAgent driver) {
         List<IJavaFXElement> r = new ArrayList<IJavaFXElement>();
+        Set<IJavaFXElement> seen = new HashSet<IJavaFXElement>();
         for (IJavaFXElement je : pElements) {
             Node component = je.getComponent();
             if (!(component instanceof Parent))
@@ -105,9 +104,9 @@ public class GeneralSiblingSelector implements Selector {
             for (int i = index + 1; i < children.size(); i++) {
                 Node c = children.get(i);
                 IJavaFXElement je2 = JavaFXElementFactory.createElement(c, driver, driver.switchTo().getTopContainer());
-                if (sibling.matchesSelector(je2).size() > 0) {
+                if (selector.matchesSelector(je2).size() > 0) {
                     IJavaFXElement e = topContainer.addElement(JavaFXElementFactory.createElement(c, driver, topContainer));
-                    if (!r.contains(e))
+                    if (seen.add(e))
                         r.add(e);
                 }
             }
@@ -21,7 +21,7 @@ import java.util.List;
 
 import net.sourceforge.marathon.javafxagent.IJavaFXElement;
 
-public class IdFilter implements SelectorFilter {
+public class IdFilter implements SelectorFilter, ElementPredicate {
 
     private String id;
 
@@ -41,8 +41,12 @@ public class IdFilter implements SelectorFilter {
     }
 
     @Override public List<IJavaFXElement> match(IJavaFXElement je) {
-        if (id.equals(je.getAttribute("name")))
+        if (doesMatch(je))
             return Arrays.asList(je);
         return new ArrayList<IJavaFXElement>();
     }
+
+    @Override public boolean doesMatch(IJavaFXElement je) {
+        return id.equals(je.getAttribute("name"));
+    }
 }
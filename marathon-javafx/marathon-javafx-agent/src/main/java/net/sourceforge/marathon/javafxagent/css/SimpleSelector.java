@@ -36,17 +36,30 @@ public class SimpleSelector implements Selector {
 
     private PseudoClassFilter nthFilter = null;
 
+    /*
+     * Pre-resolved by the parser: whether the tag matches any element, the
+     * number of leading filters that are plain predicates and the nth index.
+     */
+    private final boolean anyTag;
+    private int npredicates;
+    private int nthIndex;
+
     public SimpleSelector(String tag) {
         this.tag = tag;
+        this.anyTag = "*".equals(tag);
     }
 
     public void addFilter(SelectorFilter filter) {
         if (nthFilter != null)
             throw new ParserException("Only a single nth psuedoclass may be specified and it should be the last one", null);
-        if (filter instanceof PseudoClassFilter && ((PseudoClassFilter) filter).isNth())
+        if (filter instanceof PseudoClassFilter && ((PseudoClassFilter) filter).isNth()) {
             nthFilter = (PseudoClassFilter) filter;
-        else
+            nthIndex = nthFilter.getNthIndex();
+        } else {
+            if (filter instanceof ElementPredicate && npredicates == filters.size())
+                npredicates++;
             filters.add(filter);
+        }
     }
 
     @Override public String toString() {
@@ -130,8 +143,8 @@ public class SimpleSelector implements Selector {
             r.add(topContainer.addElement(component));
         }
         if (nthFilter != null) {
-            if (nthFilter.getNthIndex() - 1 < r.size())
-                return Arrays.asList(r.get(nthFilter.getNthIndex() - 1));
+            if (nthIndex - 1 < r.size())
+                return Arrays.asList(r.get(nthIndex - 1));
             else
                 return new ArrayList<IJavaFXElement>();
         }
@@ -149,15 +162,55 @@ public class SimpleSelector implements Selector {
     }
 
     public List<IJavaFXElement> matchesSelector(IJavaFXElement je) {
-        if ("*".equals(tag) || tag.equals(je.getTagName())) {
+        if (matchesTag(je)) {
             return filterMatches(je);
         }
         return new ArrayList<IJavaFXElement>();
     }
 
     private List<IJavaFXElement> filterMatches(IJavaFXElement je) {
+        if (!matchesPredicates(je))
+            return new ArrayList<IJavaFXElement>();
+        return applyFilters(je);
+    }
+
+    boolean isSelf() {
+        return ".".equals(tag);
+    }
+
+    /**
+     * A selector is plain when all its filters only test the element.
+     */
+    boolean isPlain() {
+        return nthFilter == null && npredicates == filters.size();
+    }
+
+    boolean hasNthFilter() {
+        return nthFilter != null;
+    }
+
+    boolean matchesTag(IJavaFXElement je) {
+        return anyTag || tag.equals(je.getTagName());
+    }
+
+    /**
+     * Checks the leading filters that only test the element.
+     */
+    boolean matchesPredicates(IJavaFXElement je) {
+        for (int i = 0; i < npredicates; i++) {
+            if (!((ElementPredicate) filters.get(i)).doesMatch(je))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Applies the filters following the leading predicates.
+     */
+    List<IJavaFXElement> applyFilters(IJavaFXElement je) {
         List<IJavaFXElement> elements = Arrays.asList(je);
-        for (SelectorFilter f : filters) {
+        for (int i = npredicates; i < filters.size(); i++) {
+            SelectorFilter f = filters.get(i);
             List<IJavaFXElement> toProcess = new ArrayList<IJavaFXElement>();
             for (IJavaFXElement javaElement : elements) {
                 toProcess.addAll(f.match(javaElement));
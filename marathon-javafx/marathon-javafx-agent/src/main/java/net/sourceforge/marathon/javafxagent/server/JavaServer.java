@@ -15,19 +15,25 @@
  *******************************************************************************/
 package net.sourceforge.marathon.javafxagent.server;
 
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
-import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,9 +42,15 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import fi.iki.elonen.NanoHTTPD;
+import fi.iki.elonen.RouteTrie;
 import fi.iki.elonen.NanoHTTPD.Response.Status;
 import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.stage.Stage;
 import net.sourceforge.marathon.javafxagent.Device;
+import net.sourceforge.marathon.javafxagent.EventQueueWait;
+import net.sourceforge.marathon.javafxagent.FXExecutor;
 import net.sourceforge.marathon.javafxagent.IJavaFXElement;
 import net.sourceforge.marathon.javafxagent.InvalidElementStateException;
 import net.sourceforge.marathon.javafxagent.JavaAgentException;
@@ -47,12 +59,15 @@ import net.sourceforge.marathon.javafxagent.MissingCommandParametersException;
 import net.sourceforge.marathon.javafxagent.NoSuchElementException;
 import net.sourceforge.marathon.javafxagent.NoSuchWindowException;
 import net.sourceforge.marathon.javafxagent.Platform;
+import net.sourceforge.marathon.javafxagent.ScreenCapture;
 import net.sourceforge.marathon.javafxagent.SessionNotCreatedException;
 import net.sourceforge.marathon.javafxagent.StaleElementReferenceException;
 import net.sourceforge.marathon.javafxagent.UnsupportedCommandException;
 import net.sourceforge.marathon.javafxagent.Device.Type;
 import net.sourceforge.marathon.javafxagent.JavaFXTargetLocator.JFXWindow;
+import net.sourceforge.marathon.javafxagent.css.SelectorCache;
 import net.sourceforge.marathon.javafxagent.script.JSONScriptRunner;
+import net.sourceforge.marathon.javafxagent.script.ScriptCache;
 
 public class JavaServer extends NanoHTTPD {
 
@@ -62,7 +77,7 @@ public class JavaServer extends NanoHTTPD {
 
     private Map<String, Session> liveSessions = new HashMap<String, Session>();
 
-    private static List<RouteMap> routes;
+    private static final RouteTrie<RouteMap> routes = new RouteTrie<RouteMap>();
     private int port;
 
     private Session latestSession;
@@ -71,6 +86,13 @@ public class JavaServer extends NanoHTTPD {
 
     private static final String NULL_OBJECT = new String();
 
+    private static final Set<String> BATCHED_READS = new HashSet<String>(Arrays.asList("getElementText", "getElementName",
+            "isSelected", "isEnabled", "getElementAttribute", "isDisplayed", "getElementLocation", "getElementSize", "getCSSValue"));
+
+    private static final int MAX_WORKERS = Integer.parseInt(System.getProperty("marathon.agent.workers", "8"));
+    private static final int MAX_QUEUED = Integer.parseInt(System.getProperty("marathon.agent.queued", "16"));
+    private final PooledAsyncRunner workers = new PooledAsyncRunner("JavaServer", MAX_WORKERS, MAX_QUEUED);
+
     private boolean exitOnQuit;
 
     static {
@@ -92,115 +114,228 @@ public class JavaServer extends NanoHTTPD {
             hasCapabilities.put("acceptSslCerts", false);
             hasCapabilities.put("nativeEvents", true);
             hasCapabilities.put("loggingPrefs", new JSONObject().put("driver", "ALL"));
+            hasCapabilities.put("loggingCapacity", LogBuffer.DEFAULT_CAPACITY);
         } catch (JSONException e) {
             e.printStackTrace();
         }
     }
 
     static {
-        routes = new ArrayList<RouteMap>();
-        routes.add(new RouteMap(Method.GET, "/status", getMethod("getStatus")));
-        routes.add(new RouteMap(Method.POST, "/session", getMethod("createSession")));
-        routes.add(new RouteMap(Method.GET, "/sessions", getMethod("getSessions")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId", getMethod("getCapabilities")));
-        routes.add(new RouteMap(Method.DELETE, "/session/:sessionId", getMethod("quitSession")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/timeouts"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/timeouts/async_script"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/timeouts/implicit_wait", getMethod("setImplicitTimeout")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/window_handle", getMethod("getWindowHandle")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/window_handles", getMethod("getWindowHandles")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/url", getMethod("getWindowProperties")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/url"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/forward"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/back"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/refresh"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/execute", getMethod("execute")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/execute_async", getMethod("executeAsync")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/screenshot", getMethod("getScreenShot")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/ime/available_engines"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/ime/active_engine"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/ime/activated"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/ime/deactivate"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/ime/activate"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/frame"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/window", getMethod("getWindow")));
-        routes.add(new RouteMap(Method.DELETE, "/session/:sessionId/window", getMethod("closeSession")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/window/:windowHandle/size", getMethod("setWindowSize", true)));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/window/:windowHandle/size", getMethod("getWindowSize")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/window/:windowHandle/position",
-                getMethod("setWindowPosition", true)));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/window/:windowHandle/position", getMethod("getWindowPosition")));
-        routes.add(
-                new RouteMap(Method.POST, "/session/:sessionId/window/:windowHandle/maximize", getMethod("maximizeWindow", true)));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/cookie"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/cookie"));
-        routes.add(new RouteMap(Method.DELETE, "/session/:sessionId/cookie"));
-        routes.add(new RouteMap(Method.DELETE, "/session/:sessionId/cookie/:name"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/source"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/title", getMethod("getWindowTitle")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/element", getMethod("findElement")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/elements", getMethod("findElements")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/element/active", getMethod("findActiveElement")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/element", getMethod("findElementOfElement")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/elements", getMethod("findElementsOfElement")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/click", getMethod("clickElement", true)));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/submit", getMethod("submitElement", true)));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/text", getMethod("getElementText")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/value", getMethod("sendKeysElement", true)));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/keys", getMethod("sendKeys", true)));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/name", getMethod("getElementName")));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/clear", getMethod("clearElement")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/selected", getMethod("isSelected")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/enabled", getMethod("isEnabled")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/attribute/:name", getMethod("getElementAttribute")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/equals/:other", getMethod("elementEquals")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/displayed", getMethod("isDisplayed")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/location", getMethod("getElementLocation")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/location_in_view"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/size", getMethod("getElementSize")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/css/:propertyName", getMethod("getCSSValue")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/orientation"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/orientation"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/alert_text"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/alert_text"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/accept_alert"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/dismiss_alert"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/moveto", getMethod("moveto", true)));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/click", getMethod("click", true)));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/buttondown", getMethod("buttondown", true)));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/buttonup", getMethod("buttonup", true)));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/doubleclick", getMethod("doubleclick", true)));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/touch/click"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/touch/down"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/touch/up"));
-        routes.add(new RouteMap(Method.POST, "session/:sessionId/touch/move"));
-        routes.add(new RouteMap(Method.POST, "session/:sessionId/touch/scroll"));
-        routes.add(new RouteMap(Method.POST, "session/:sessionId/touch/scroll"));
-        routes.add(new RouteMap(Method.POST, "session/:sessionId/touch/doubleclick"));
-        routes.add(new RouteMap(Method.POST, "session/:sessionId/touch/longclick"));
-        routes.add(new RouteMap(Method.POST, "session/:sessionId/touch/flick"));
-        routes.add(new RouteMap(Method.POST, "session/:sessionId/touch/flick"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/location"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/location"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/local_storage"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/local_storage"));
-        routes.add(new RouteMap(Method.DELETE, "/session/:sessionId/local_storage"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/local_storage/key/:key"));
-        routes.add(new RouteMap(Method.DELETE, "/session/:sessionId/local_storage/key/:key"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/local_storage/size"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/session_storage"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/session_storage"));
-        routes.add(new RouteMap(Method.DELETE, "/session/:sessionId/session_storage"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/session_storage/key/:key"));
-        routes.add(new RouteMap(Method.DELETE, "/session/:sessionId/session_storage/key/:key"));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/session_storage/size"));
-        routes.add(new RouteMap(Method.POST, "/session/:sessionId/log", getMethod("getLogs")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/log/types", getMethod("getLogTypes")));
-        routes.add(new RouteMap(Method.GET, "/session/:sessionId/application_cache/status"));
+        add(new RouteMap(Method.GET, "/status", new RouteHandler("getStatus",
+                (server, query, uriParams, session, window, element) -> server.getStatus(query, uriParams))));
+        add(new RouteMap(Method.POST, "/session", new RouteHandler("createSession",
+                (server, query, uriParams, session, window, element) -> server.createSession(query, uriParams))));
+        add(new RouteMap(Method.GET, "/sessions", new RouteHandler("getSessions",
+                (server, query, uriParams, session, window, element) -> server.getSessions(query, uriParams))));
+        add(new RouteMap(Method.GET, "/session/:sessionId", new RouteHandler("getCapabilities",
+                (server, query, uriParams, session, window, element) -> server.getCapabilities(query, uriParams, session))));
+        add(new RouteMap(Method.DELETE, "/session/:sessionId", new RouteHandler("quitSession",
+                (server, query, uriParams, session, window, element) -> {
+                    server.quitSession(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.POST, "/session/:sessionId/timeouts"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/timeouts/async_script"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/timeouts/implicit_wait", new RouteHandler("setImplicitTimeout",
+                (server, query, uriParams, session, window, element) -> {
+                    server.setImplicitTimeout(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.GET, "/session/:sessionId/window_handle", new RouteHandler("getWindowHandle",
+                (server, query, uriParams, session, window, element) -> server.getWindowHandle(query, uriParams, session))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/window_handles", new RouteHandler("getWindowHandles",
+                (server, query, uriParams, session, window, element) -> server.getWindowHandles(query, uriParams, session))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/url", new RouteHandler("getWindowProperties",
+                (server, query, uriParams, session, window, element) -> server.getWindowProperties(query, uriParams, session))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/url"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/forward"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/back"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/refresh"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/execute", new RouteHandler("execute",
+                (server, query, uriParams, session, window, element) -> server.execute(query, uriParams, session))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/execute_async", new RouteHandler("executeAsync",
+                (server, query, uriParams, session, window, element) -> server.executeAsync(query, uriParams, session))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/screenshot", new RouteHandler("getScreenShot",
+                (server, query, uriParams, session, window, element) -> server.getScreenShot(query, uriParams, session))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/ime/available_engines"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/ime/active_engine"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/ime/activated"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/ime/deactivate"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/ime/activate"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/frame"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/window", new RouteHandler("getWindow",
+                (server, query, uriParams, session, window, element) -> {
+                    server.getWindow(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.DELETE, "/session/:sessionId/window", new RouteHandler("closeSession",
+                (server, query, uriParams, session, window, element) -> {
+                    server.closeSession(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.POST, "/session/:sessionId/window/:windowHandle/size", new RouteHandler("setWindowSize", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.setWindowSize(query, uriParams, session, window);
+                    return null;
+                })));
+        add(new RouteMap(Method.GET, "/session/:sessionId/window/:windowHandle/size", new RouteHandler("getWindowSize",
+                (server, query, uriParams, session, window, element) -> server.getWindowSize(query, uriParams, session, window))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/window/:windowHandle/position",
+                new RouteHandler("setWindowPosition", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.setWindowPosition(query, uriParams, session, window);
+                    return null;
+                })));
+        add(new RouteMap(Method.GET, "/session/:sessionId/window/:windowHandle/position", new RouteHandler("getWindowPosition",
+                (server, query, uriParams, session, window, element) ->
+                        server.getWindowPosition(query, uriParams, session, window))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/window/:windowHandle/maximize", new RouteHandler("maximizeWindow", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.maximizeWindow(query, uriParams, session, window);
+                    return null;
+                })));
+        add(new RouteMap(Method.GET, "/session/:sessionId/cookie"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/cookie"));
+        add(new RouteMap(Method.DELETE, "/session/:sessionId/cookie"));
+        add(new RouteMap(Method.DELETE, "/session/:sessionId/cookie/:name"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/source"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/title", new RouteHandler("getWindowTitle",
+                (server, query, uriParams, session, window, element) -> server.getWindowTitle(query, uriParams, session))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/element", new RouteHandler("findElement",
+                (server, query, uriParams, session, window, element) -> server.findElement(query, uriParams, session))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/elements", new RouteHandler("findElements",
+                (server, query, uriParams, session, window, element) -> server.findElements(query, uriParams, session))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/element/active", new RouteHandler("findActiveElement",
+                (server, query, uriParams, session, window, element) -> server.findActiveElement(query, uriParams, session))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/element", new RouteHandler("findElementOfElement",
+                (server, query, uriParams, session, window, element) ->
+                        server.findElementOfElement(query, uriParams, session, element))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/elements", new RouteHandler("findElementsOfElement",
+                (server, query, uriParams, session, window, element) ->
+                        server.findElementsOfElement(query, uriParams, session, element))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/click", new RouteHandler("clickElement", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.clickElement(query, uriParams, session, element);
+                    return null;
+                })));
+        add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/submit", new RouteHandler("submitElement", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.submitElement(query, uriParams, session, element);
+                    return null;
+                })));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/text", new RouteHandler("getElementText",
+                (server, query, uriParams, session, window, element) ->
+                        server.getElementText(query, uriParams, session, element))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/value", new RouteHandler("sendKeysElement", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.sendKeysElement(query, uriParams, session, element);
+                    return null;
+                })));
+        add(new RouteMap(Method.POST, "/session/:sessionId/keys", new RouteHandler("sendKeys", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.sendKeys(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/name", new RouteHandler("getElementName",
+                (server, query, uriParams, session, window, element) ->
+                        server.getElementName(query, uriParams, session, element))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/clear", new RouteHandler("clearElement",
+                (server, query, uriParams, session, window, element) -> {
+                    server.clearElement(query, uriParams, session, element);
+                    return null;
+                })));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/selected", new RouteHandler("isSelected",
+                (server, query, uriParams, session, window, element) -> server.isSelected(query, uriParams, session, element))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/enabled", new RouteHandler("isEnabled",
+                (server, query, uriParams, session, window, element) -> server.isEnabled(query, uriParams, session, element))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/attribute/:name", new RouteHandler("getElementAttribute",
+                (server, query, uriParams, session, window, element) ->
+                        server.getElementAttribute(query, uriParams, session, element))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/equals/:other", new RouteHandler("elementEquals",
+                (server, query, uriParams, session, window, element) -> server.elementEquals(query, uriParams, session, element))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/displayed", new RouteHandler("isDisplayed",
+                (server, query, uriParams, session, window, element) -> server.isDisplayed(query, uriParams, session, element))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/location", new RouteHandler("getElementLocation",
+                (server, query, uriParams, session, window, element) ->
+                        server.getElementLocation(query, uriParams, session, element))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/location_in_view"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/size", new RouteHandler("getElementSize",
+                (server, query, uriParams, session, window, element) ->
+                        server.getElementSize(query, uriParams, session, element))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/element/:id/css/:propertyName", new RouteHandler("getCSSValue",
+                (server, query, uriParams, session, window, element) -> server.getCSSValue(query, uriParams, session, element))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/orientation"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/orientation"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/alert_text"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/alert_text"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/accept_alert"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/dismiss_alert"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/moveto", new RouteHandler("moveto", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.moveto(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.POST, "/session/:sessionId/click", new RouteHandler("click", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.click(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.POST, "/session/:sessionId/buttondown", new RouteHandler("buttondown", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.buttondown(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.POST, "/session/:sessionId/buttonup", new RouteHandler("buttonup", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.buttonup(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.POST, "/session/:sessionId/doubleclick", new RouteHandler("doubleclick", true,
+                (server, query, uriParams, session, window, element) -> {
+                    server.doubleclick(query, uriParams, session);
+                    return null;
+                })));
+        add(new RouteMap(Method.POST, "/session/:sessionId/touch/click"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/touch/down"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/touch/up"));
+        add(new RouteMap(Method.POST, "session/:sessionId/touch/move"));
+        add(new RouteMap(Method.POST, "session/:sessionId/touch/scroll"));
+        add(new RouteMap(Method.POST, "session/:sessionId/touch/scroll"));
+        add(new RouteMap(Method.POST, "session/:sessionId/touch/doubleclick"));
+        add(new RouteMap(Method.POST, "session/:sessionId/touch/longclick"));
+        add(new RouteMap(Method.POST, "session/:sessionId/touch/flick"));
+        add(new RouteMap(Method.POST, "session/:sessionId/touch/flick"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/location"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/location"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/local_storage"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/local_storage"));
+        add(new RouteMap(Method.DELETE, "/session/:sessionId/local_storage"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/local_storage/key/:key"));
+        add(new RouteMap(Method.DELETE, "/session/:sessionId/local_storage/key/:key"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/local_storage/size"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/session_storage"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/session_storage"));
+        add(new RouteMap(Method.DELETE, "/session/:sessionId/session_storage"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/session_storage/key/:key"));
+        add(new RouteMap(Method.DELETE, "/session/:sessionId/session_storage/key/:key"));
+        add(new RouteMap(Method.GET, "/session/:sessionId/session_storage/size"));
+        add(new RouteMap(Method.POST, "/session/:sessionId/log", new RouteHandler("getLogs",
+                (server, query, uriParams, session, window, element) -> server.getLogs(query, uriParams, session))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/log/types", new RouteHandler("getLogTypes",
+                (server, query, uriParams, session, window, element) -> server.getLogTypes(query, uriParams, session))));
+        add(new RouteMap(Method.GET, "/session/:sessionId/application_cache/status"));
 
         // Custom
-        routes.add(new RouteMap(Method.GET, "/info", getMethod("getInfo")));
+        add(new RouteMap(Method.POST, "/session/:sessionId/batch", new RouteHandler("batch",
+                (server, query, uriParams, session, window, element) -> server.batch(query, uriParams, session))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/capture", new RouteHandler("captureWindow",
+                (server, query, uriParams, session, window, element) -> server.captureWindow(query, uriParams, session))));
+        add(new RouteMap(Method.POST, "/session/:sessionId/element/:id/capture", new RouteHandler("captureElement",
+                (server, query, uriParams, session, window, element) ->
+                        server.captureElement(query, uriParams, session, element))));
+        add(new RouteMap(Method.GET, "/info", new RouteHandler("getInfo",
+                (server, query, uriParams, session, window, element) -> server.getInfo(query, uriParams))));
     }
 
     public JavaServer(int port) {
@@ -209,6 +344,7 @@ public class JavaServer extends NanoHTTPD {
 
     public JavaServer(int port, boolean exitOnQuit) {
         super(port);
+        setAsyncRunner(workers);
         this.exitOnQuit = exitOnQuit;
         this.port = port;
         initCapabilities();
@@ -232,64 +368,27 @@ public class JavaServer extends NanoHTTPD {
         capabilities.put("acceptSslCerts", false);
         capabilities.put("nativeEvents", false);
         capabilities.put("loggingPrefs", new JSONObject().put("driver", "ALL"));
+        capabilities.put("loggingCapacity", LogBuffer.DEFAULT_CAPACITY);
     }
 
     public int getPort() {
         return port;
     }
 
-    private static java.lang.reflect.Method getMethod(String name, boolean hasEvents) {
-        java.lang.reflect.Method[] methods = JavaServer.class.getMethods();
-        for (java.lang.reflect.Method method : methods) {
-            if (method.getName().equals(name)) {
-                return method;
-            }
-        }
-        return null;
-    }
-
-    private static java.lang.reflect.Method getMethod(String name) {
-        return getMethod(name, false);
+    private static void add(RouteMap map) {
+        routes.add(map.getMethod(), map.getUri(), map);
     }
 
     public Route findRoute(Method method, String uri) {
-        JSONObject params = new JSONObject();
-        RouteMap map = findRouteMap(method, uri, params);
-        if (map == null)
+        RouteTrie.Match<RouteMap> match = routes.find(method, uri);
+        if (match == null)
             return null;
-        return new Route(map.getProc(), params, map);
-    }
-
-    private RouteMap findRouteMap(Method method, String uri, JSONObject params) {
-        for (RouteMap route : JavaServer.routes) {
-            if (!route.getMethod().equals(method)) {
-                continue;
-            }
-            String[] actualParts = uri.split("/");
-            String[] expectedParts = route.getUri().split("/");
-            if (actualParts.length != expectedParts.length)
-                continue;
-            Map<String, String> tParams = new HashMap<String, String>();
-            boolean found = true;
-            for (int i = 0; i < actualParts.length; i++) {
-                if (expectedParts[i].startsWith(":")) {
-                    tParams.put(expectedParts[i].substring(1), actualParts[i]);
-                } else if (expectedParts[i].equals(actualParts[i]))
-                    continue;
-                else {
-                    found = false;
-                    break;
-                }
-            }
-            if (found) {
-                Set<Entry<String, String>> entrySet = tParams.entrySet();
-                for (Entry<String, String> entry : entrySet) {
-                    params.put(entry.getKey(), entry.getValue());
-                }
-                return route;
-            }
+        JSONObject params = new JSONObject();
+        for (int i = 0; i < match.getParamCount(); i++) {
+            params.put(match.getParamName(i), match.getParamValue(i));
         }
-        return null;
+        RouteMap map = match.getValue();
+        return new Route(map.getProc(), params, map);
     }
 
     @Override public Response serve(String uri, Method method, Map<String, String> header, Map<String, String> parms,
@@ -301,7 +400,8 @@ public class JavaServer extends NanoHTTPD {
         // query = URLDecoder.decode(query, "UTF8");
         // } catch (UnsupportedEncodingException e1) {
         // }
-        logger.info("JavaServer.serve(" + method + " " + uri + "): " + (query != null ? query : "{}"));
+        if (logger.isLoggable(Level.FINE))
+            logger.fine("JavaServer.serve(" + method + " " + uri + "): " + (query != null ? query : "{}"));
         if (query != null) {
             try {
                 jsonQuery = new JSONObject(query);
@@ -310,15 +410,13 @@ public class JavaServer extends NanoHTTPD {
                 return nanoHTTPDnewFixedLengthResponse(Status.BAD_REQUEST, MIME_HTML, e.getMessage());
             }
         }
-        StringBuilder logmsg = new StringBuilder();
-        logmsg.append(method + "(" + uri);
-        if (jsonQuery != null)
-            logmsg.append(", " + jsonQuery);
-        logmsg.append(") = ");
         Response response = serve_internal(uri, method, jsonQuery == null ? new JSONObject() : jsonQuery);
-        logmsg.append(response);
-        if (latestSession != null && !uri.contains("/log")) {
-            latestSession.log(Level.INFO, logmsg.toString());
+        Session session = latestSession;
+        if (session != null && session.isLoggable(Level.INFO) && !uri.contains("/log")) {
+            if (jsonQuery != null)
+                session.log(Level.INFO, "{0}({1}, {2}) = {3}", method, uri, jsonQuery, response.getStatus());
+            else
+                session.log(Level.INFO, "{0}({1}) = {2}", method, uri, response.getStatus());
         }
         return response;
     }
@@ -329,6 +427,9 @@ public class JavaServer extends NanoHTTPD {
             if (route != null && route.getProc() != null) {
                 return handleRoute(route, jsonQuery);
             }
+            if (route == null && routes.hasPath(uri))
+                return nanoHTTPDnewFixedLengthResponse(Status.METHOD_NOT_ALLOWED, MIME_PLAINTEXT,
+                        "Method not allowed: " + method + " " + uri);
             if (route == null)
                 return nanoHTTPDnewFixedLengthResponse(Status.NOT_FOUND, MIME_PLAINTEXT, "Not Implemented: (route is null)");
             if (route.getProc() == null)
@@ -345,22 +446,7 @@ public class JavaServer extends NanoHTTPD {
         r.put("name", route.getProc().getName());
         r.put("status", 0);
         try {
-            JSONObject uriParams = route.getParams();
-            Session session = null;
-            if (uriParams.has("sessionId")) {
-                session = liveSessions.get(uriParams.get("sessionId"));
-                latestSession = session;
-            }
-            if (session != null)
-                r.put("sessionId", session.getID());
-            IJavaFXElement element = null;
-            if (uriParams.has("id"))
-                element = session.findElement(uriParams.getString("id"));
-            JFXWindow window = null;
-            if (uriParams.has("windowHandle"))
-                window = session.getWindow(uriParams.getString("windowHandle"));
-            Object result;
-            result = invoke(route, query, uriParams, session, window, element);
+            Object result = dispatch(route, query, r);
             if (result == null)
                 return nanoHTTPDnewFixedLengthResponse(Status.NO_CONTENT, MIME_HTML, null);
             if (result instanceof Response)
@@ -405,6 +491,24 @@ public class JavaServer extends NanoHTTPD {
         }
     }
 
+    private Object dispatch(Route route, JSONObject query, JSONObject r) {
+        JSONObject uriParams = route.getParams();
+        Session session = null;
+        if (uriParams.has("sessionId")) {
+            session = liveSessions.get(uriParams.get("sessionId"));
+            latestSession = session;
+        }
+        if (session != null && r != null)
+            r.put("sessionId", session.getID());
+        IJavaFXElement element = null;
+        if (uriParams.has("id"))
+            element = session.findElement(uriParams.getString("id"));
+        JFXWindow window = null;
+        if (uriParams.has("windowHandle"))
+            window = session.getWindow(uriParams.getString("windowHandle"));
+        return invoke(route, query, uriParams, session, window, element);
+    }
+
     private void afterEvent() {
     }
 
@@ -426,43 +530,18 @@ public class JavaServer extends NanoHTTPD {
 
     public Object invoke(Route route, JSONObject query, JSONObject uriParams, Session session, JFXWindow window,
             IJavaFXElement element) {
-        Object result;
         try {
-            if (session == null)
-                result = route.getProc().invoke(this, query, uriParams);
-            else if (element != null)
-                result = route.getProc().invoke(this, query, uriParams, session, element);
-            else if (window != null)
-                result = route.getProc().invoke(this, query, uriParams, session, window);
-            else
-                result = route.getProc().invoke(this, query, uriParams, session);
-        } catch (InvocationTargetException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof MissingCommandParametersException)
-                throw ((MissingCommandParametersException) cause);
-            if (cause instanceof JSONException)
-                throw ((JSONException) cause);
-            if (cause instanceof NoSuchElementException)
-                throw ((NoSuchElementException) cause);
-            if (cause instanceof NoSuchWindowException)
-                throw ((NoSuchWindowException) cause);
-            if (cause instanceof UnsupportedCommandException)
-                throw ((UnsupportedCommandException) cause);
-            if (cause instanceof InvalidElementStateException)
-                throw ((InvalidElementStateException) cause);
-            if (cause instanceof StaleElementReferenceException)
-                throw ((StaleElementReferenceException) cause);
-            if (cause instanceof SessionNotCreatedException)
-                throw ((SessionNotCreatedException) cause);
-            if (cause instanceof JavaAgentException)
-                throw ((JavaAgentException) cause);
-            throw new JavaAgentException(cause.getMessage(), cause);
-        } catch (IllegalArgumentException e) {
+            return route.getProc().invoke(this, query, uriParams, session, window, element);
+        } catch (RuntimeException e) {
+            if (e instanceof MissingCommandParametersException || e instanceof JSONException || e instanceof NoSuchElementException
+                    || e instanceof NoSuchWindowException || e instanceof UnsupportedCommandException
+                    || e instanceof InvalidElementStateException || e instanceof StaleElementReferenceException
+                    || e instanceof SessionNotCreatedException || e instanceof JavaAgentException)
+                throw e;
             throw new JavaAgentException(e.getMessage(), e);
-        } catch (IllegalAccessException e) {
+        } catch (Exception e) {
             throw new JavaAgentException(e.getMessage(), e);
         }
-        return result;
     }
 
     public Response createSession(JSONObject query, JSONObject uriParams) {
@@ -480,7 +559,8 @@ public class JavaServer extends NanoHTTPD {
         Session session = new Session(t);
         liveSessions.put(session.getID(), session);
         session.setLogLevel(getLogLevel(query));
-        session.log(Level.INFO, "A new session created. sessionID = " + session.getID());
+        session.setLogCapacity(getLogCapacity(query));
+        session.log(Level.INFO, "A new session created. sessionID = {0}", session.getID());
         try {
             Response r = nanoHTTPDnewFixedLengthResponse(Status.REDIRECT, MIME_HTML, null);
             r.addHeader("Location", new URL("http", "localhost", port, "/session/" + session.getID()).toString());
@@ -516,6 +596,15 @@ public class JavaServer extends NanoHTTPD {
         return Level.ALL;
     }
 
+    private int getLogCapacity(JSONObject query) {
+        if (query.has("requiredCapabilities") && query.getJSONObject("requiredCapabilities").has("loggingCapacity")) {
+            return query.getJSONObject("requiredCapabilities").getInt("loggingCapacity");
+        } else if (query.has("desiredCapabilities") && query.getJSONObject("desiredCapabilities").has("loggingCapacity")) {
+            return query.getJSONObject("desiredCapabilities").getInt("loggingCapacity");
+        }
+        return LogBuffer.DEFAULT_CAPACITY;
+    }
+
     private String hasCapabilities(JSONObject required) {
         @SuppressWarnings("rawtypes")
         Iterator keys = required.keys();
@@ -530,7 +619,7 @@ public class JavaServer extends NanoHTTPD {
                 continue;
             Object lvalue = hasCapabilities.get(key);
             if (!lvalue.equals(rvalue)) {
-                if (key.equals("loggingPrefs")) {
+                if (key.equals("loggingPrefs") || key.equals("loggingCapacity")) {
                     continue;
                 }
                 if (key.equals("platform")) {
@@ -614,6 +703,17 @@ public class JavaServer extends NanoHTTPD {
         v.put("boot-class-path", bean.getBootClassPath());
         v.put("start-time", bean.getStartTime());
         v.put("commandline", System.getProperty("sun.java.command"));
+        JSONObject w = new JSONObject();
+        w.put("max", workers.getMaxWorkers());
+        w.put("pool-size", workers.getPoolSize());
+        w.put("active", workers.getActiveWorkers());
+        w.put("queued", workers.getQueueDepth());
+        w.put("overflow", workers.getOverflowCount());
+        w.put("completed", workers.getCompletedConnections());
+        v.put("workers", w);
+        v.put("selector-cache", SelectorCache.getStatistics());
+        v.put("fx-executor", FXExecutor.getStatistics());
+        v.put("script-cache", ScriptCache.getStatistics());
         return v;
     }
 
@@ -891,6 +991,121 @@ public class JavaServer extends NanoHTTPD {
         element.click(button, clickCount, xoffset, yoffset);
     }
 
+    /**
+     * Executes a list of commands in one request. Each command is a JSON
+     * object with <code>method</code> (defaults to POST), <code>path</code>
+     * relative to the session and an optional <code>query</code>. A path
+     * segment or a query value of the form <code>$n</code> refers to the
+     * element returned by the n-th command of the batch. Execution stops at
+     * the first failing command.
+     *
+     * Consecutive element reads (text, attributes, state, geometry) are run
+     * together in a single visit to the FX application thread.
+     */
+    public JSONArray batch(JSONObject query, JSONObject uriParams, Session session) {
+        checkRequiredArguments(query, "commands");
+        JSONArray commands = query.getJSONArray("commands");
+        JSONArray results = new JSONArray();
+        List<Callable<Object>> reads = new ArrayList<Callable<Object>>();
+        for (int i = 0; i < commands.length(); i++) {
+            JSONObject command = commands.getJSONObject(i);
+            checkRequiredArguments(command, "path");
+            Method method = Method.valueOf(command.optString("method", "POST").toUpperCase());
+            String path = resolveReferences(command.getString("path"), results);
+            Route route = findRoute(method, "/session/" + session.getID() + "/" + path);
+            if (route == null || route.getProc() == null || route.getProc().getName().equals("batch"))
+                throw new UnsupportedCommandException("Unsupported command in batch: " + method + " " + path, null);
+            decodeParams(route.getParams());
+            JSONObject commandQuery = command.optJSONObject("query");
+            if (commandQuery == null)
+                commandQuery = new JSONObject();
+            else
+                commandQuery = resolveReferences(commandQuery, results);
+            if (method == Method.GET && BATCHED_READS.contains(route.getProc().getName())) {
+                IJavaFXElement element;
+                try {
+                    element = session.findElement(route.getParams().getString("id"));
+                } catch (RuntimeException e) {
+                    runReads(reads, results);
+                    throw e;
+                }
+                JSONObject readQuery = commandQuery;
+                reads.add(() -> invoke(route, readQuery, route.getParams(), session, null, element));
+                continue;
+            }
+            runReads(reads, results);
+            Object result = dispatch(route, commandQuery, null);
+            if (result instanceof Response)
+                throw new UnsupportedCommandException("Unsupported command in batch: " + method + " " + path, null);
+            results.put(result == null || result == NULL_OBJECT ? JSONObject.NULL : result);
+        }
+        runReads(reads, results);
+        return results;
+    }
+
+    private void runReads(List<Callable<Object>> reads, JSONArray results) {
+        if (reads.isEmpty())
+            return;
+        List<Callable<Object>> pending = new ArrayList<Callable<Object>>(reads);
+        reads.clear();
+        for (Object result : EventQueueWait.execAll(pending))
+            results.put(result == null || result == NULL_OBJECT ? JSONObject.NULL : result);
+    }
+
+    private String resolveReferences(String path, JSONArray results) {
+        if (path.indexOf('$') == -1)
+            return path;
+        String[] segments = path.split("/");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0)
+                sb.append('/');
+            sb.append(resolveReference(segments[i], results));
+        }
+        return sb.toString();
+    }
+
+    private JSONObject resolveReferences(JSONObject query, JSONArray results) {
+        JSONObject resolved = new JSONObject();
+        @SuppressWarnings("rawtypes")
+        Iterator keys = query.keys();
+        while (keys.hasNext()) {
+            String key = (String) keys.next();
+            Object value = query.get(key);
+            if (value instanceof String)
+                value = resolveReference((String) value, results);
+            resolved.put(key, value);
+        }
+        return resolved;
+    }
+
+    /**
+     * Batch paths are not decoded by the HTTP layer. Parameters are decoded
+     * after the route is matched, so an escaped '/' stays inside its segment.
+     */
+    private void decodeParams(JSONObject params) {
+        String[] names = JSONObject.getNames(params);
+        if (names == null)
+            return;
+        for (String name : names) {
+            try {
+                params.put(name, URLDecoder.decode(params.getString(name), "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new JavaAgentException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private String resolveReference(String s, JSONArray results) {
+        if (!s.matches("\\$[0-9]+"))
+            return s;
+        int index = Integer.parseInt(s.substring(1));
+        if (index >= results.length() || !(results.get(index) instanceof JSONObject)
+                || !results.getJSONObject(index).has("ELEMENT"))
+            throw new MissingCommandParametersException("Batch reference " + s + " does not refer to an element", null);
+        return results.getJSONObject(index).getString("ELEMENT");
+    }
+
     public Object execute(JSONObject query, JSONObject uriParams, Session session) {
         checkRequiredArguments(query, "script", "args");
         JSONScriptRunner scriptRunner = new JSONScriptRunner(query.getString("script"), query.getJSONArray("args"), session,
@@ -921,4 +1136,42 @@ public class JavaServer extends NanoHTTPD {
         return Base64.encodeToString(session.getScreenShot(), false);
     }
 
+    public Response captureWindow(JSONObject query, JSONObject uriParams, Session session) {
+        Stage window = session.getWindow("current").getWindow();
+        return capture(EventQueueWait.exec(() -> ScreenCapture.capture(window)), query);
+    }
+
+    public Response captureElement(JSONObject query, JSONObject uriParams, Session session, IJavaFXElement element) {
+        Node node = element.getComponent();
+        return capture(EventQueueWait.exec(() -> ScreenCapture.capture(node)), query);
+    }
+
+    /**
+     * Streams the image bytes of the snapshot (or a region of it). The query
+     * can have <code>format</code> (png, jpeg or raw),
+     * <code>compression</code> (PNG level 0-9), <code>quality</code> (JPEG
+     * 0.0-1.0) and <code>region</code> ({x, y, width, height} relative to the
+     * window or the node).
+     */
+    private Response capture(Image image, JSONObject query) {
+        String format = query.optString("format", "png");
+        if ("raw".equalsIgnoreCase(format))
+            format = "bmp";
+        Rectangle region = null;
+        if (query.has("region")) {
+            JSONObject r = query.getJSONObject("region");
+            region = new Rectangle(r.getInt("x"), r.getInt("y"), r.getInt("width"), r.getInt("height"));
+        }
+        InputStream data;
+        try {
+            data = ScreenCapture.encodeAsync(image, region, format, query.optInt("compression", -1),
+                    (float) query.optDouble("quality", -1));
+        } catch (IOException e) {
+            throw new JavaAgentException(e.getMessage(), e);
+        }
+        Response response = new Response(Status.OK, ScreenCapture.getMimeType(format), data);
+        response.setChunkedTransfer(true);
+        return response;
+    }
+
 }
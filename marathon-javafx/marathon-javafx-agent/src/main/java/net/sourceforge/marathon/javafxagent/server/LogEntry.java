@@ -15,18 +15,25 @@
  *******************************************************************************/
 package net.sourceforge.marathon.javafxagent.server;
 
-import java.util.Date;
+import java.text.MessageFormat;
 import java.util.logging.Level;
 
+/**
+ * A log record. The message is a {@link MessageFormat} pattern and is only
+ * formatted when it is read.
+ */
 public class LogEntry {
     private final Level level;
     private final long timestamp;
-    private final String message;
+    private final String pattern;
+    private final Object[] params;
+    private String message;
 
-    public LogEntry(Level level, String message) {
+    public LogEntry(Level level, String pattern, Object... params) {
         this.level = level;
-        this.message = message;
-        this.timestamp = new Date().getTime();
+        this.pattern = pattern;
+        this.params = params;
+        this.timestamp = System.currentTimeMillis();
     }
 
     public String getLevel() {
@@ -38,6 +45,12 @@ public class LogEntry {
     }
 
     public String getMessage() {
+        if (message == null) {
+            if (params == null || params.length == 0)
+                message = pattern;
+            else
+                message = MessageFormat.format(pattern, params);
+        }
         return message;
     }
-}
\ No newline at end of file
+}
@@ -18,17 +18,17 @@ package net.sourceforge.marathon.javafxagent.server;
 import org.json.JSONObject;
 
 public class Route {
-    private final java.lang.reflect.Method proc;
+    private final RouteHandler proc;
     private final JSONObject params;
     private final RouteMap map;
 
-    public Route(java.lang.reflect.Method proc, JSONObject params, RouteMap map) {
+    public Route(RouteHandler proc, JSONObject params, RouteMap map) {
         this.proc = proc;
         this.params = params;
         this.map = map;
     }
 
-    public java.lang.reflect.Method getProc() {
+    public RouteHandler getProc() {
         return proc;
     }
 
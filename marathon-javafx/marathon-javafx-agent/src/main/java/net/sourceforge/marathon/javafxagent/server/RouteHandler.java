@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javafxagent.server;
+
+import org.json.JSONObject;
+
+import net.sourceforge.marathon.javafxagent.IJavaFXElement;
+import net.sourceforge.marathon.javafxagent.JavaFXTargetLocator.JFXWindow;
+
+/**
+ * A typed dispatch object bound to a route. The server resolves the session,
+ * window and element from the URI parameters and passes them in - handlers
+ * use whichever they need.
+ */
+public class RouteHandler {
+
+    @FunctionalInterface public interface Invoker {
+        public Object invoke(JavaServer server, JSONObject query, JSONObject uriParams, Session session, JFXWindow window,
+                IJavaFXElement element) throws Exception;
+    }
+
+    private final String name;
+    private final boolean hasEvents;
+    private final Invoker invoker;
+
+    public RouteHandler(String name, Invoker invoker) {
+        this(name, false, invoker);
+    }
+
+    public RouteHandler(String name, boolean hasEvents, Invoker invoker) {
+        this.name = name;
+        this.hasEvents = hasEvents;
+        this.invoker = invoker;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean hasEvents() {
+        return hasEvents;
+    }
+
+    public Object invoke(JavaServer server, JSONObject query, JSONObject uriParams, Session session, JFXWindow window,
+            IJavaFXElement element) throws Exception {
+        return invoker.invoke(server, query, uriParams, session, window, element);
+    }
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javafxagent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.scene.input.KeyEvent;
+
+@Test public class FXExecutorTest extends EventQueueDeviceTest {
+
+    public void runsQueuedWorkInOneVisit() throws Throwable {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        CountDownLatch release = blockFXThread();
+        long visits = FXExecutor.getStatistics().getLong("visits");
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            final int n = i;
+            expected.add(n);
+            FXExecutor.execute(new Runnable() {
+                @Override public void run() {
+                    order.add(n);
+                }
+            });
+        }
+        release.countDown();
+        FXExecutor.invokeAndWait(new Runnable() {
+            @Override public void run() {
+            }
+        });
+        AssertJUnit.assertEquals(expected, order);
+        AssertJUnit.assertEquals(visits + 1, FXExecutor.getStatistics().getLong("visits"));
+    }
+
+    public void invokeAndWaitRunsInlineOnTheFXThread() {
+        final boolean[] ran = new boolean[] { false };
+        final long[] inline = new long[2];
+        EventQueueWait.exec(new Runnable() {
+            @Override public void run() {
+                inline[0] = FXExecutor.getStatistics().getLong("inline");
+                FXExecutor.invokeAndWait(new Runnable() {
+                    @Override public void run() {
+                        ran[0] = true;
+                    }
+                });
+                inline[1] = FXExecutor.getStatistics().getLong("inline");
+            }
+        });
+        AssertJUnit.assertTrue(ran[0]);
+        AssertJUnit.assertEquals(inline[0] + 1, inline[1]);
+    }
+
+    public void execAllReturnsResultsInOrder() {
+        final List<String> threads = new ArrayList<String>();
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        for (final String s : Arrays.asList("one", "two", "three")) {
+            callables.add(new Callable<String>() {
+                @Override public String call() throws Exception {
+                    threads.add(String.valueOf(Platform.isFxApplicationThread()));
+                    return s;
+                }
+            });
+        }
+        AssertJUnit.assertEquals(Arrays.asList("one", "two", "three"), EventQueueWait.execAll(callables));
+        AssertJUnit.assertEquals(Arrays.asList("true", "true", "true"), threads);
+    }
+
+    public void execAllStopsAtTheFirstFailure() {
+        final List<String> called = new ArrayList<String>();
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        callables.add(new Callable<String>() {
+            @Override public String call() throws Exception {
+                called.add("one");
+                return "one";
+            }
+        });
+        callables.add(new Callable<String>() {
+            @Override public String call() throws Exception {
+                called.add("two");
+                throw new IllegalStateException("two failed");
+            }
+        });
+        callables.add(new Callable<String>() {
+            @Override public String call() throws Exception {
+                called.add("three");
+                return "three";
+            }
+        });
+        try {
+            EventQueueWait.execAll(callables);
+            AssertJUnit.fail("Expected the failure to be thrown");
+        } catch (IllegalStateException e) {
+            AssertJUnit.assertEquals("two failed", e.getMessage());
+        }
+        AssertJUnit.assertEquals(Arrays.asList("one", "two"), called);
+    }
+
+    public void inputEventsKeepTheirOrderWithQueuedReads() throws Throwable {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final EventHandler<KeyEvent> handler = new EventHandler<KeyEvent>() {
+            @Override public void handle(KeyEvent event) {
+                order.add("key");
+            }
+        };
+        EventQueueWait.exec(new Runnable() {
+            @Override public void run() {
+                textField.addEventHandler(KeyEvent.KEY_PRESSED, handler);
+            }
+        });
+        try {
+            CountDownLatch release = blockFXThread();
+            FXExecutor.execute(new Runnable() {
+                @Override public void run() {
+                    order.add("read1");
+                }
+            });
+            driver.sendKeys(textField, "a");
+            FXExecutor.execute(new Runnable() {
+                @Override public void run() {
+                    order.add("read2");
+                }
+            });
+            release.countDown();
+            FXExecutor.invokeAndWait(new Runnable() {
+                @Override public void run() {
+                }
+            });
+            AssertJUnit.assertEquals(Arrays.asList("read1", "key", "read2"), order);
+        } finally {
+            EventQueueWait.exec(new Runnable() {
+                @Override public void run() {
+                    textField.removeEventHandler(KeyEvent.KEY_PRESSED, handler);
+                }
+            });
+        }
+    }
+
+    /**
+     * Holds the FX application thread until the returned latch is released so
+     * that the work submitted meanwhile is queued up.
+     */
+    private CountDownLatch blockFXThread() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Platform.runLater(new Runnable() {
+            @Override public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        blocked.await();
+        return release;
+    }
+}
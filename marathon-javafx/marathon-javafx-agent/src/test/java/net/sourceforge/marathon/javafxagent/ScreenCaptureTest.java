@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2016 Jalian Systems Pvt. Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package net.sourceforge.marathon.javafxagent;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.testng.annotations.Test;
+
+import javafx.application.Platform;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import net.sourceforge.marathon.javafxagent.ScreenCapture.ChunkInputStream;
+import net.sourceforge.marathon.javafxagent.ScreenCapture.ChunkOutputStream;
+import net.sourceforge.marathon.javafxagent.components.JavaFXElementTest;
+
+@Test public class ScreenCaptureTest extends JavaFXElementTest {
+
+    public void streamsSnapshot() throws Throwable {
+        WritableImage image = snapshot();
+        byte[] streamed = readAll(ScreenCapture.encodeAsync(image, null, "png", -1, -1));
+        assertTrue("The image should span several chunks", streamed.length > 64 * 1024);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(streamed));
+        assertEquals((int) image.getWidth(), decoded.getWidth());
+        assertEquals((int) image.getHeight(), decoded.getHeight());
+    }
+
+    public void streamsRegionOfSnapshot() throws Throwable {
+        WritableImage image = snapshot();
+        byte[] streamed = readAll(ScreenCapture.encodeAsync(image, new java.awt.Rectangle(10, 20, 50, 40), "bmp", -1, -1));
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(streamed));
+        assertEquals(50, decoded.getWidth());
+        assertEquals(40, decoded.getHeight());
+    }
+
+    public void reportsFailureAfterData() throws Throwable {
+        BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(16);
+        ChunkOutputStream out = new ChunkOutputStream(chunks);
+        ChunkInputStream in = new ChunkInputStream(chunks, out);
+        out.write(new byte[20 * 1024]);
+        out.fail(new IOException("Disk full"));
+        byte[] b = new byte[32 * 1024];
+        int total = 0;
+        try {
+            int n;
+            while ((n = in.read(b)) != -1)
+                total += n;
+            fail("Expected the read to fail");
+        } catch (IOException e) {
+            assertEquals("Disk full", e.getCause().getMessage());
+        }
+        assertEquals(16 * 1024, total);
+    }
+
+    private WritableImage snapshot() throws Exception {
+        FutureTask<WritableImage> task = new FutureTask<WritableImage>(() -> ScreenCapture.capture(getPrimaryStage()));
+        Platform.runLater(task);
+        return task.get(10, TimeUnit.SECONDS);
+    }
+
+    private byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[4096];
+        int n;
+        while ((n = in.read(b)) != -1)
+            out.write(b, 0, n);
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Override protected Pane getMainPane() {
+        Pane pane = new Pane();
+        Random random = new Random(42);
+        for (int x = 0; x < 300; x += 3)
+            for (int y = 0; y < 300; y += 3) {
+                Rectangle r = new Rectangle(x, y, 3, 3);
+                r.setFill(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+                pane.getChildren().add(r);
+            }
+        return pane;
+    }
+}
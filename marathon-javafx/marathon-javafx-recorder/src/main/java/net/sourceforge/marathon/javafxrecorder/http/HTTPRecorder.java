@@ -24,8 +24,6 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -53,18 +51,14 @@ public class HTTPRecorder implements IJSONRecorder {
     private int port;
     private String base;
     private String sessionID;
-    private Timer clickTimer;
-    private static Integer timerinterval;
-    private Timer windowStateTimer;
-
-    static {
-        timerinterval = Integer.valueOf(300);
-    }
+    private RecordingQueue recordingQueue;
+    private final EventScheduler scheduler = new EventScheduler();
 
     public HTTPRecorder(int port) throws IOException {
         base = "http://localhost:" + port;
         this.port = port;
         createSession();
+        recordingQueue = new RecordingQueue(this);
     }
 
     private void createSession() throws IOException {
@@ -128,20 +122,11 @@ public class HTTPRecorder implements IJSONRecorder {
         final JSONObject o = new JSONObject();
         o.put("event", event);
         fill(r, o);
-        if (e.getClickCount() == 1) {
-            clickTimer = new Timer();
-            clickTimer.schedule(new TimerTask() {
-                @Override public void run() {
-                    sendRecordMessage(o);
-                }
-            }, timerinterval.intValue());
-        } else if (e.getClickCount() == 2) {
-            if (clickTimer != null) {
-                clickTimer.cancel();
-                clickTimer = null;
+        scheduler.click(r.getComponent(), e.getClickCount(), new Runnable() {
+            @Override public void run() {
+                sendRecordMessage(o);
             }
-            sendRecordMessage(o);
-        }
+        });
     }
 
     @Override public void recordRawMouseEvent(final RFXComponent r, MouseEvent e) {
@@ -160,20 +145,11 @@ public class HTTPRecorder implements IJSONRecorder {
         final JSONObject o = new JSONObject();
         o.put("event", event);
         fill(r, o);
-        if (e.getClickCount() == 1) {
-            clickTimer = new Timer();
-            clickTimer.schedule(new TimerTask() {
-                @Override public void run() {
-                    sendRecordMessage(o);
-                }
-            }, timerinterval.intValue());
-        } else if (e.getClickCount() == 2) {
-            if (clickTimer != null) {
-                clickTimer.cancel();
-                clickTimer = null;
+        scheduler.click(r.getComponent(), e.getClickCount(), new Runnable() {
+            @Override public void run() {
+                sendRecordMessage(o);
             }
-            sendRecordMessage(o);
-        }
+        });
     }
 
     private String buildModifiersText(MouseEvent e) {
@@ -320,12 +296,7 @@ public class HTTPRecorder implements IJSONRecorder {
     }
 
     private void sendRecordMessage(JSONObject o) {
-        try {
-            postJSON("record", o);
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        }
+        recordingQueue.send(o);
     }
 
     private void fill(RFXComponent r, JSONObject o) {
@@ -360,15 +331,11 @@ public class HTTPRecorder implements IJSONRecorder {
         event.put("bounds", bounds.getMinX() + ":" + bounds.getMinY() + ":" + bounds.getWidth() + ":" + bounds.getHeight());
         final JSONObject o = new JSONObject();
         o.put("event", event);
-        if (windowStateTimer != null)
-            windowStateTimer.cancel();
-        windowStateTimer = new Timer();
-        windowStateTimer.schedule(new TimerTask() {
+        scheduler.windowState(r.getComponent(), new Runnable() {
             @Override public void run() {
                 recordEvent(r, event);
-                windowStateTimer = null;
             }
-        }, 200);
+        });
     }
 
     @Override public JSONOMapConfig getObjectMapConfiguration() throws IOException {
@@ -460,8 +427,9 @@ public class HTTPRecorder implements IJSONRecorder {
 
     @Override public void recordFocusedWindow(RFXComponent r) throws IOException {
         JSONObject o = new JSONObject();
+        o.put("request", "focused-window");
         o.put("container", r.findContextHeirarchy((Parent) r.getComponent()));
-        postJSON("focused_window", o);
+        recordingQueue.send(o);
     }
 
     @Override public void recordWindowClosing(String title) {